@@ -0,0 +1,88 @@
+package com.funguscow.splat.bench;
+
+import com.funguscow.splat.cache.SpriteCache;
+import com.funguscow.splat.data.Specs;
+import com.funguscow.splat.data.SpriteGrid;
+import com.funguscow.splat.io.PngEncoder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SpriteCache} hits against rendering and encoding the same sprite from scratch, from as
+ * many threads as JMH is run with
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheBenchmark {
+
+    /**
+     * Number of distinct sprites requested, all of which fit in the cache
+     */
+    private static final int SPRITES = 64;
+
+    @Param({"64", "256"})
+    public int targetSize;
+
+    private Specs[] specs;
+    private SpriteCache cache;
+
+    @State(Scope.Thread)
+    public static class Worker {
+        private final PngEncoder encoder = new PngEncoder();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private int next;
+
+        @TearDown
+        public void tearDown() {
+            encoder.close();
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        specs = new Specs[SPRITES];
+        for (int i = 0; i < SPRITES; i++) {
+            specs[i] = Preset.DEFAULT.specs(32, 32, targetSize, targetSize, "Eagle2x");
+            specs[i].seed = i;
+        }
+        cache = new SpriteCache(Long.MAX_VALUE);
+        try (PngEncoder encoder = new PngEncoder()) {
+            for (Specs spec : specs) {
+                cache.getPng(spec, CacheBenchmark::render, encoder);
+            }
+        }
+    }
+
+    private static int[] render(Specs specs) {
+        return new SpriteGrid(specs.copy()).draw();
+    }
+
+    @Benchmark
+    public int[] cachedPixels(Worker worker) {
+        return cache.get(specs[worker.next++ & (SPRITES - 1)], CacheBenchmark::render).pixels;
+    }
+
+    @Benchmark
+    public byte[] cachedPng(Worker worker) throws IOException {
+        return cache.getPng(specs[worker.next++ & (SPRITES - 1)], CacheBenchmark::render, worker.encoder);
+    }
+
+    /**
+     * What every request costs without the cache
+     */
+    @Benchmark
+    public int renderAndEncode(Worker worker) throws IOException {
+        worker.bytes.reset();
+        Specs spec = specs[worker.next++ & (SPRITES - 1)];
+        worker.encoder.writeArgb(render(spec), spec.targetWidth, spec.targetHeight, worker.bytes);
+        return worker.bytes.size();
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.funguscow.splat.bench;
+
+import com.funguscow.splat.data.Specs;
+import com.funguscow.splat.data.SpriteGrid;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end {@link SpriteGrid#draw()}, allocating and reusing the output, and
+ * {@link SpriteGrid#drawIndexed(byte[])}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DrawBenchmark {
+
+    @Param({"8", "16", "32", "64", "128", "256", "512"})
+    public int gridSize;
+
+    @Param({"DEFAULT", "DENSE", "SPARSE", "RANDOMIZED"})
+    public Preset preset;
+
+    /**
+     * Output size as a multiple of {@link #gridSize}
+     */
+    @Param({"1", "4", "8"})
+    public int targetScale;
+
+    @Param({"NearestNeighbor", "Scale2x", "Scale3x", "Eagle2x", "Eagle3x"})
+    public String scaleName;
+
+    private SpriteGrid grid;
+    private int[] out;
+    private byte[] indices;
+
+    @Setup
+    public void setup() {
+        int target = gridSize * targetScale;
+        Specs specs = preset.specs(gridSize, gridSize, target, target, scaleName);
+        grid = new SpriteGrid(specs);
+        out = new int[target * target];
+        indices = new byte[target * target];
+    }
+
+    @Benchmark
+    public int[] draw() {
+        return grid.draw();
+    }
+
+    /**
+     * Reuses the output array and the grid's scratch buffers, so gc.alloc.rate.norm should be ~0
+     */
+    @Benchmark
+    public int[] drawReused() {
+        grid.draw(out);
+        return out;
+    }
+
+    /**
+     * Scales palette indices instead of ARGB pixels
+     */
+    @Benchmark
+    public byte[] drawIndexed() {
+        grid.drawIndexed(indices);
+        return indices;
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.funguscow.splat.bench;
+
+import com.funguscow.splat.data.SpriteGrid;
+import com.funguscow.splat.io.PngEncoder;
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * PNG encoding of one sprite, through a {@link BufferedImage} and ImageIO or straight from its
+ * pixels by {@link PngEncoder}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EncodeBenchmark {
+
+    @Param({"64", "256", "1000"})
+    public int targetSize;
+
+    @Param({"NONE", "SUB", "UP", "PAETH", "ADAPTIVE"})
+    public PngEncoder.Filter filter;
+
+    @Param({"1", "6"})
+    public int level;
+
+    private int[] pixels;
+    private BufferedImage image;
+    private PngEncoder encoder;
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    @Setup
+    public void setup() {
+        pixels = new SpriteGrid(Preset.DEFAULT.specs(32, 32, targetSize, targetSize, "Eagle2x")).draw();
+        image = new BufferedImage(targetSize, targetSize, BufferedImage.TYPE_INT_ARGB);
+        encoder = new PngEncoder(filter, level == 6 ? Deflater.DEFAULT_COMPRESSION : level);
+    }
+
+    @TearDown
+    public void tearDown() {
+        encoder.close();
+    }
+
+    /**
+     * What the CLI used to do per sprite. Independent of {@link #filter} and {@link #level}
+     */
+    @Benchmark
+    public int imageIO() throws IOException {
+        bytes.reset();
+        int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        System.arraycopy(pixels, 0, data, 0, pixels.length);
+        ImageIO.write(image, "png", bytes);
+        return bytes.size();
+    }
+
+    @Benchmark
+    public int pngEncoder() throws IOException {
+        bytes.reset();
+        encoder.writeArgb(pixels, targetSize, targetSize, bytes);
+        return bytes.size();
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.funguscow.splat.bench;
+
+import com.funguscow.splat.data.SpriteGrid;
+import com.funguscow.splat.io.Palettizer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Palettizer} against copying the same pixels, which is as cheap as palettizing can get
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PalettizeBenchmark {
+
+    @Param({"64", "256", "1000"})
+    public int targetSize;
+
+    @Param({"DEFAULT", "RANDOMIZED"})
+    public Preset preset;
+
+    private int[] pixels, copy;
+    private byte[] indices, packed;
+    private Palettizer palettizer;
+
+    @Setup
+    public void setup() {
+        pixels = new SpriteGrid(preset.specs(32, 32, targetSize, targetSize, "Eagle2x")).draw();
+        copy = new int[pixels.length];
+        indices = new byte[pixels.length];
+        packed = new byte[pixels.length];
+        palettizer = new Palettizer();
+    }
+
+    @Benchmark
+    public int[] arraycopy() {
+        System.arraycopy(pixels, 0, copy, 0, pixels.length);
+        return copy;
+    }
+
+    @Benchmark
+    public byte[] palettize() {
+        palettizer.palettize(pixels, pixels.length, indices);
+        return indices;
+    }
+
+    /**
+     * Palettize and pack 4 bits per index, as for a byte-binary raster
+     */
+    @Benchmark
+    public byte[] palettizeAndPack() {
+        palettizer.palettize(pixels, pixels.length, indices);
+        Palettizer.pack(indices, targetSize, targetSize, 4, packed);
+        return packed;
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.funguscow.splat.bench;
+
+import com.funguscow.splat.data.Specs;
+
+import java.util.Random;
+
+/**
+ * Named {@link Specs} configurations to benchmark against
+ */
+public enum Preset {
+
+    /**
+     * Library defaults
+     */
+    DEFAULT {
+        @Override
+        void apply(Specs specs) {
+        }
+    },
+    /**
+     * Mostly-filled grids with few color seeds, so colorize must propagate far
+     */
+    DENSE {
+        @Override
+        void apply(Specs specs) {
+            specs.minProb = 0.5f;
+            specs.maxProb = 1f;
+            specs.seeds = 2;
+            specs.variance = 0.25f;
+        }
+    },
+    /**
+     * Mostly-empty grids with many color seeds
+     */
+    SPARSE {
+        @Override
+        void apply(Specs specs) {
+            specs.minProb = 0f;
+            specs.maxProb = 0.4f;
+            specs.seeds = Math.max(1, specs.width / 2);
+            specs.variance = 0.9f;
+        }
+    },
+    /**
+     * Parameters as chosen by {@link Specs#randomize(Random)} with a fixed seed
+     */
+    RANDOMIZED {
+        @Override
+        void apply(Specs specs) {
+            specs.randomize(new Random(0x5EED));
+        }
+    };
+
+    /**
+     * Adjust {@code specs} to this preset. Dimensions should already be set
+     *
+     * @param specs Specs to modify
+     */
+    abstract void apply(Specs specs);
+
+    /**
+     * Build specs for this preset
+     *
+     * @param width        Grid width
+     * @param height       Grid height
+     * @param targetWidth  Output width
+     * @param targetHeight Output height
+     * @param scaleName    Name of scaler to use
+     * @return New specs with a fixed seed
+     */
+    public Specs specs(int width, int height, int targetWidth, int targetHeight, String scaleName) {
+        Specs specs = new Specs();
+        specs.width = width;
+        specs.height = height;
+        apply(specs);
+        specs.targetWidth = targetWidth;
+        specs.targetHeight = targetHeight;
+        specs.scaleName = scaleName;
+        specs.seed = 0x5EED;
+        return specs;
+    }
+
+}
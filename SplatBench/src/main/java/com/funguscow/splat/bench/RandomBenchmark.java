@@ -0,0 +1,69 @@
+package com.funguscow.splat.bench;
+
+import com.funguscow.splat.data.Specs;
+import com.funguscow.splat.data.SpriteGrid;
+import com.funguscow.splat.random.RandomSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each kind of {@link RandomSource}, drawing floats one at a time and in bulk, and end to end
+ * {@link SpriteGrid#draw(int[])} with it
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RandomBenchmark {
+
+    @Param({"LEGACY", "XOROSHIRO", "SPLITMIX"})
+    public RandomSource.Kind kind;
+
+    @Param({"16", "64", "256"})
+    public int gridSize;
+
+    private RandomSource random;
+    private float[] floats;
+    private SpriteGrid grid;
+    private int[] out;
+
+    @Setup
+    public void setup() {
+        random = kind.create(0x5EED);
+        floats = new float[gridSize * gridSize];
+        Specs specs = Preset.DEFAULT.specs(gridSize, gridSize, gridSize, gridSize, "NearestNeighbor");
+        specs.randomKind = kind;
+        grid = new SpriteGrid(specs);
+        out = new int[gridSize * gridSize];
+    }
+
+    /**
+     * One float per cell, as fillCells used to draw them
+     */
+    @Benchmark
+    public float[] nextFloat() {
+        for (int i = 0; i < floats.length; i++) {
+            floats[i] = random.nextFloat();
+        }
+        return floats;
+    }
+
+    /**
+     * One float per cell in a single call
+     */
+    @Benchmark
+    public float[] fillFloats() {
+        random.fillFloats(floats, 0, floats.length);
+        return floats;
+    }
+
+    @Benchmark
+    public int[] draw() {
+        grid.draw(out);
+        return out;
+    }
+
+}
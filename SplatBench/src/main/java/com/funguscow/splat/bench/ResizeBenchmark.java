@@ -0,0 +1,40 @@
+package com.funguscow.splat.bench;
+
+import com.funguscow.splat.data.SpriteGrid;
+import com.funguscow.splat.scale.ImageScaler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Arbitrary-ratio {@link ImageScaler#scaleNearestNeighbor(int[], int, int, int, int)}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ResizeBenchmark {
+
+    @Param({"8", "16", "32", "64", "128", "256", "512"})
+    public int gridSize;
+
+    @Param({"24", "100", "256", "1000"})
+    public int targetSize;
+
+    private int[] input;
+
+    @Setup
+    public void setup() {
+        input = new SpriteGrid(Preset.DEFAULT.specs(gridSize, gridSize, gridSize, gridSize, "NearestNeighbor"))
+                .draw()
+                .clone();
+    }
+
+    @Benchmark
+    public int[] scaleNearestNeighbor() {
+        return ImageScaler.scaleNearestNeighbor(input, gridSize, gridSize, targetSize, targetSize);
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.funguscow.splat.bench;
+
+import com.funguscow.splat.data.SpriteGrid;
+import com.funguscow.splat.scale.ImageScaler;
+import com.funguscow.splat.scale.ScaleChain;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole scale chain from grid to target size, with intermediates materialized or fused
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScaleChainBenchmark {
+
+    @Param({"16", "64", "128"})
+    public int gridSize;
+
+    @Param({"NearestNeighbor", "Scale2x", "Scale3x", "Eagle2x", "Eagle3x"})
+    public String scaleName;
+
+    @Param({"256", "1000", "2048"})
+    public int targetSize;
+
+    private ImageScaler scaler;
+    private ScaleChain chain;
+    private int[] input, output;
+
+    @Setup
+    public void setup() {
+        input = new SpriteGrid(Preset.DEFAULT.specs(gridSize, gridSize, gridSize, gridSize, scaleName)).draw();
+        scaler = ImageScaler.forName(scaleName);
+        chain = new ScaleChain();
+        output = new int[targetSize * targetSize];
+    }
+
+    @Benchmark
+    public int[] materialized() {
+        chain.scale(scaler, input, gridSize, gridSize, output, targetSize, targetSize);
+        return output;
+    }
+
+    @Benchmark
+    public int[] fused() {
+        chain.scaleFused(scaler, input, gridSize, gridSize, output, targetSize, targetSize);
+        return output;
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.funguscow.splat.bench;
+
+import com.funguscow.splat.data.SpriteGrid;
+import com.funguscow.splat.scale.ImageScaler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single pass of each {@link ImageScaler} over a generated sprite
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScalerBenchmark {
+
+    @Param({"8", "16", "32", "64", "128", "256", "512"})
+    public int gridSize;
+
+    @Param({"DEFAULT", "RANDOMIZED"})
+    public Preset preset;
+
+    /**
+     * "NearestNeighbor" is {@link com.funguscow.splat.scale.NearestNeighborI} with a ratio of 2
+     */
+    @Param({"NearestNeighbor", "Scale2x", "Scale3x", "Eagle2x", "Eagle3x"})
+    public String scaleName;
+
+    private ImageScaler scaler;
+    private int[] input;
+
+    @Setup
+    public void setup() {
+        // Target size equal to the grid size skips scaling, so this is the raw colorized grid
+        input = new SpriteGrid(preset.specs(gridSize, gridSize, gridSize, gridSize, scaleName)).draw().clone();
+        scaler = ImageScaler.getScalers().get(scaleName).get();
+    }
+
+    @Benchmark
+    public int[] scale() {
+        return scaler.scale(input, gridSize, gridSize);
+    }
+
+}
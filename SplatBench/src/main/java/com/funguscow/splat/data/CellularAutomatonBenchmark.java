@@ -0,0 +1,60 @@
+package com.funguscow.splat.data;
+
+import com.funguscow.splat.bench.Preset;
+import com.funguscow.splat.random.RandomSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CellularAutomaton} generations in each {@link CellularAutomaton.Mode} and with each kind
+ * of {@link RandomSource}, over one or many generations, excluding packing
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CellularAutomatonBenchmark {
+
+    @Param({"8", "16", "32", "64", "128", "256", "512"})
+    public int gridSize;
+
+    @Param({"DEFAULT", "RANDOMIZED"})
+    public Preset preset;
+
+    @Param({"EXACT", "FAST", "INCREMENTAL"})
+    public CellularAutomaton.Mode mode;
+
+    @Param({"LEGACY", "XOROSHIRO"})
+    public RandomSource.Kind kind;
+
+    @Param({"1", "16"})
+    public int generations;
+
+    private CellularAutomaton automaton;
+    private Specs specs;
+    private RandomSource random;
+    private int[] filled;
+
+    @Setup
+    public void setup() {
+        specs = preset.specs(gridSize, gridSize, gridSize, gridSize, "NearestNeighbor");
+        SpriteGrid grid = new SpriteGrid(specs);
+        grid.fillCells();
+        filled = grid.cells().clone();
+        automaton = new CellularAutomaton(gridSize, gridSize);
+        random = kind.create(specs.seed);
+    }
+
+    @Benchmark
+    public CellularAutomaton step() {
+        automaton.load(filled);
+        for (int i = 0; i < generations; i++) {
+            automaton.step(specs.caProbs, random, mode);
+        }
+        return automaton;
+    }
+
+}
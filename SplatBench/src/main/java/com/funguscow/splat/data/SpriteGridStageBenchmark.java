@@ -0,0 +1,81 @@
+package com.funguscow.splat.data;
+
+import com.funguscow.splat.bench.Preset;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each stage of {@link SpriteGrid#draw()} on its own. Lives in the same package as
+ * {@link SpriteGrid} to reach the package-private stages
+ * <p>
+ * Stages that depend on the state left by earlier stages first restore a snapshot of that state,
+ * so their scores include one {@link System#arraycopy}; {@link #restore()} measures that cost alone
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SpriteGridStageBenchmark {
+
+    @Param({"8", "16", "32", "64", "128", "256", "512"})
+    public int gridSize;
+
+    @Param({"DEFAULT", "DENSE", "SPARSE", "RANDOMIZED"})
+    public Preset preset;
+
+    private SpriteGrid grid;
+    private int[] filled, automated;
+
+    @Setup
+    public void setup() {
+        grid = new SpriteGrid(preset.specs(gridSize, gridSize, gridSize, gridSize, "NearestNeighbor"));
+        grid.chooseMirrors();
+        grid.populatePalette();
+        grid.fillCells();
+        filled = grid.cells().clone();
+        grid.simulateCA();
+        automated = grid.cells().clone();
+    }
+
+    @Benchmark
+    public int[] restore() {
+        grid.loadCells(automated);
+        return grid.cells();
+    }
+
+    @Benchmark
+    public SpriteGrid populatePalette() {
+        grid.populatePalette();
+        return grid;
+    }
+
+    @Benchmark
+    public int[] fillCells() {
+        grid.fillCells();
+        return grid.cells();
+    }
+
+    @Benchmark
+    public int[] simulateCA() {
+        grid.loadCells(filled);
+        grid.simulateCA();
+        return grid.cells();
+    }
+
+    @Benchmark
+    public int[] colorize() {
+        grid.loadCells(automated);
+        grid.colorize();
+        return grid.cells();
+    }
+
+    @Benchmark
+    public int[] mirror() {
+        grid.mirror();
+        return grid.cells();
+    }
+
+}
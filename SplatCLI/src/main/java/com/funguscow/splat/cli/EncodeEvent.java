@@ -0,0 +1,32 @@
+package com.funguscow.splat.cli;
+
+import com.funguscow.splat.jfr.SplatEvent;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.funguscow.splat.Encode")
+@Label("Encode")
+@Description("Encoding one sprite to an image format in memory")
+@Category({"Splat", "CLI"})
+class EncodeEvent extends SplatEvent {
+
+    @Label("Format")
+    String format;
+
+    @Label("Width")
+    int width;
+
+    @Label("Height")
+    int height;
+
+    @Label("Paletted")
+    boolean paletted;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+}
@@ -2,122 +2,523 @@ package com.funguscow.splat.cli;
 
 import com.funguscow.splat.data.Specs;
 import com.funguscow.splat.data.SpriteGrid;
+import com.funguscow.splat.dedup.SpriteDeduplicator;
+import com.funguscow.splat.io.AtlasWriter;
+import com.funguscow.splat.io.Palettizer;
+import com.funguscow.splat.io.PngEncoder;
+import com.funguscow.splat.pack.SpritePack;
+import com.funguscow.splat.pack.SpritePackWriter;
+import com.funguscow.splat.stats.DrawListener;
+import com.funguscow.splat.stats.DrawStats;
 
 import javax.imageio.ImageIO;
-import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
 import java.awt.image.DataBufferInt;
 import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Random;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class SplatCli {
 
+    /**
+     * Number of images that may be in flight per thread before the writer catches up
+     */
+    private static final int QUEUE_PER_THREAD = 4;
+
     public static void main(String[] args) {
         SplatParser parser = new SplatParser();
         parser.parse(args);
         Specs specs = parser.toSpecs();
-        SpriteGrid grid = new SpriteGrid(specs);
-        BufferedImage image = new BufferedImage(specs.targetWidth, specs.targetHeight, BufferedImage.TYPE_INT_ARGB);
-        BufferedImage gridImage = null;
-        Graphics2D gridGraphics = null;
-        int gridW = 1, gridH = 1;
-        if (parser.isGrid() && parser.getNumImages() > 1) {
-            gridW = (int) (Math.sqrt(parser.getNumImages()) + 0.99);
-            gridH = (parser.getNumImages() + gridW - 1) / gridW;
-            gridImage = new BufferedImage(specs.targetWidth * gridW,
-                    specs.targetHeight * gridH,
-                    BufferedImage.TYPE_INT_ARGB);
-            gridGraphics = (Graphics2D) gridImage.getGraphics();
-        }
-        DataBufferInt buffer = ((DataBufferInt) image.getRaster().getDataBuffer());
-        OutputStream os = null;
-        if (parser.getOutputDir() == null) {
-            os = System.out;
+        DrawStats stats = parser.isStats() ? new DrawStats() : null;
+        SpriteDeduplicator dedup = parser.getDedup() >= 0 ? new SpriteDeduplicator(parser.getDedup()) : null;
+        if (dedup != null && parser.isGrid() && parser.getNumImages() > 1) {
+            throw new IllegalArgumentException("Grids cannot drop duplicates, every cell must be filled");
         }
-        Random random = new Random();
+        InOrderDedup inOrderDedup = dedup == null ? null : new InOrderDedup(dedup);
+        // Each thread owns its own specs, grid, and image, so workers share only the thread-safe
+        // stats and dedup index
+        ThreadLocal<Worker> workers = ThreadLocal.withInitial(() -> new Worker(specs, parser, stats, inOrderDedup));
+        ExecutorService pool = Executors.newFixedThreadPool(parser.getThreads());
+        long start = System.nanoTime();
         try {
-            for (int i = 0; i < parser.getNumImages(); i++) {
-                int[] pixels = grid.draw();
-                System.arraycopy(pixels, 0, buffer.getData(), 0, pixels.length);
-                if (gridImage != null) {
-                    gridGraphics.drawImage(image,
-                            specs.targetWidth * (i % gridW),
-                            specs.targetHeight * (i / gridH),
-                            null);
-                } else {
-                    if (parser.getOutputDir() != null) {
-                        String fileName = parser.getOutputDir();
-                        if (parser.getNumImages() > 1) {
-                            fileName += "_" + i;
-                        }
-                        fileName += "." + parser.getFormat().toLowerCase();
-                        os = new FileOutputStream(fileName);
-                    } else if (os == null) {
-                        os = System.out;
-                    }
-                    ImageIO.write(parser.getBits() == -1 ? image : palettize(parser.getBits(), image),
-                            parser.getFormat(),
-                            os);
-                    if (parser.getOutputDir() != null) {
-                        os.close();
+            if (parser.isGrid() && parser.getNumImages() > 1) {
+                writeGrid(parser, specs, workers, pool);
+                return;
+            }
+            if (parser.isPack()) {
+                writePack(parser, specs, workers, pool);
+                return;
+            }
+            OutputStream os = parser.getOutputDir() == null ? System.out : null;
+            inOrder(parser, pool, index -> workers.get().render(index), encoded -> {
+                if (encoded != null) {
+                    WriteEvent event = new WriteEvent();
+                    event.begin();
+                    os.write(encoded);
+                    if (event.shouldCommit()) {
+                        event.path = "-";
+                        event.bytes = encoded.length;
+                        event.commit();
                     }
                 }
-                if (specs.randomColor) {
-                    specs.hue = random.nextFloat();
-                    specs.saturation = random.nextFloat();
-                    specs.value = random.nextFloat();
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            pool.shutdownNow();
+            if (stats != null) {
+                System.err.print(stats.report(System.nanoTime() - start));
+            }
+            if (dedup != null) {
+                System.err.printf("dedup: %d seen, %d exact and %d near duplicates dropped (%.1f%%), index %.1f KiB%n",
+                        dedup.getSeen(), dedup.getExactDuplicates(), dedup.getNearDuplicates(),
+                        dedup.getDuplicateRatio() * 100, dedup.getIndexBytes() / 1024.0);
+            }
+        }
+    }
+
+    /**
+     * Renders one image of the batch
+     *
+     * @param <T> Type of image
+     */
+    private interface Render<T> {
+        T render(int index) throws Exception;
+    }
+
+    /**
+     * Consumes images in the order of the batch
+     *
+     * @param <T> Type of image
+     */
+    private interface Sink<T> {
+        void accept(T image) throws IOException;
+    }
+
+    /**
+     * Render every image of the batch on the pool and consume them in order, with a bounded
+     * number in flight
+     *
+     * @param parser Parsed arguments
+     * @param pool   Executor to render on
+     * @param render Renders the image at an index
+     * @param sink   Consumes each image, in order of index
+     * @param <T>    Type of image
+     * @throws Exception If rendering or consuming fails
+     */
+    private static <T> void inOrder(SplatParser parser,
+                                    ExecutorService pool,
+                                    Render<T> render,
+                                    Sink<T> sink) throws Exception {
+        Deque<Future<T>> pending = new ArrayDeque<>();
+        int maxPending = parser.getThreads() * QUEUE_PER_THREAD;
+        int submitted = 0;
+        for (int i = 0; i < parser.getNumImages(); i++) {
+            while (submitted < parser.getNumImages() && pending.size() < maxPending) {
+                final int index = submitted++;
+                pending.add(pool.submit(() -> render.render(index)));
+            }
+            sink.accept(pending.remove().get());
+        }
+    }
+
+    /**
+     * Write all images to one sprite pack, keyed by seed
+     *
+     * @param parser  Parsed arguments
+     * @param specs   Specs of the batch
+     * @param workers Per-thread workers
+     * @param pool    Executor to render on
+     * @throws Exception If rendering or writing fails
+     */
+    private static void writePack(SplatParser parser,
+                                  Specs specs,
+                                  ThreadLocal<Worker> workers,
+                                  ExecutorService pool) throws Exception {
+        if (parser.getOutputDir() == null) {
+            throw new IllegalArgumentException("Sprite packs must be written to a file");
+        }
+        SpritePack.Format format = parser.getBits() != -1 ? SpritePack.Format.INDEXED : SpritePack.Format.ARGB;
+        Path path = Paths.get(parser.getOutputDir() + ".pack");
+        try (SpritePackWriter pack = new SpritePackWriter(path, format, specs.targetWidth, specs.targetHeight)) {
+            try {
+                inOrder(parser, pool, index -> workers.get().pack(index), image -> {
+                    if (image == null) {
+                        return;
+                    }
+                    if (image.indices != null) {
+                        pack.append(image.seed, image.indices, image.palette);
+                    } else {
+                        pack.append(image.seed, image.pixels);
+                    }
+                });
+            } catch (Exception | Error e) {
+                // Leave no partial pack behind
+                try {
+                    pack.abort();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
                 }
-                if (specs.randomSeed) {
-                    grid.reseed(random.nextLong());
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Write all images as one sheet. PNG sheets are streamed a band of sprites at a time, other
+     * formats are assembled in memory for ImageIO
+     *
+     * @param parser  Parsed arguments
+     * @param specs   Specs of the batch
+     * @param workers Per-thread workers
+     * @param pool    Executor to render on
+     * @throws IOException If rendering or writing fails
+     */
+    private static void writeGrid(SplatParser parser,
+                                  Specs specs,
+                                  ThreadLocal<Worker> workers,
+                                  ExecutorService pool) throws IOException {
+        AtlasWriter atlas = new AtlasWriter(specs.targetWidth, specs.targetHeight, parser.getNumImages());
+        AtlasWriter.Sprites sprites = (index, out) -> workers.get().renderInto(index, out);
+        OutputStream os = System.out;
+        if (parser.getOutputDir() != null) {
+            os = new FileOutputStream(parser.getOutputDir() + "." + parser.getFormat().toLowerCase());
+        }
+        try {
+            if (isPng(parser)) {
+                try (PngEncoder encoder = new PngEncoder()) {
+                    atlas.write(sprites, pool, encoder, os);
                 }
+                return;
+            }
+            BufferedImage sheet = new BufferedImage(atlas.getWidth(), atlas.getHeight(), BufferedImage.TYPE_INT_ARGB);
+            int[] sheetPixels = ((DataBufferInt) sheet.getRaster().getDataBuffer()).getData();
+            int[] row = new int[atlas.getWidth()];
+            PngEncoder.Rows rows = atlas.rows(sprites, pool);
+            for (int y = 0; y < atlas.getHeight(); y++) {
+                rows.row(y, row);
+                System.arraycopy(row, 0, sheetPixels, y * row.length, row.length);
+            }
+            ImageIO.write(sheet, parser.getFormat(), os);
+        } finally {
+            if (parser.getOutputDir() != null) {
+                os.close();
+            } else {
+                os.flush();
             }
-            if (gridImage != null) {
-                if (parser.getOutputDir() != null) {
-                    String fileName = parser.getOutputDir();
-                    fileName += "." + parser.getFormat().toLowerCase();
-                    os = new FileOutputStream(fileName);
-                } else if (os == null) {
-                    os = System.out;
+        }
+    }
+
+    /**
+     * @param parser Parsed arguments
+     * @return {@code true} if RGBA images should be written by {@link PngEncoder} rather than
+     * ImageIO
+     */
+    private static boolean isPng(SplatParser parser) {
+        return "png".equalsIgnoreCase(parser.getFormat());
+    }
+
+    /**
+     * Checks sprites against a {@link SpriteDeduplicator} in order of index, whatever order they
+     * are generated in, so the same sprites are kept for any thread count. Workers hash in
+     * parallel and wait only for the check itself. Images are submitted to a FIFO pool in order
+     * of index, so every earlier image is already being rendered by the time one waits
+     */
+    private static class InOrderDedup {
+
+        private final SpriteDeduplicator dedup;
+        // Index of the next image to check
+        private int next;
+
+        private InOrderDedup(SpriteDeduplicator dedup) {
+            this.dedup = dedup;
+        }
+
+        /**
+         * @param index Index of the image the grid has generated
+         * @param grid  Grid between {@link SpriteGrid#generate()} and finishing
+         * @return {@code true} if the image should be kept
+         * @throws InterruptedException If interrupted while earlier images are checked, such as
+         *                              when one of them failed
+         */
+        private boolean accept(int index, SpriteGrid grid) throws InterruptedException {
+            long cellHash = grid.cellHash();
+            long perceptualHash = dedup.getMaxDistance() > 0 ? grid.perceptualHash() : 0;
+            synchronized (this) {
+                while (next != index) {
+                    wait();
                 }
-                ImageIO.write(gridImage, parser.getFormat(), os);
-                if (parser.getOutputDir() != null) {
-                    os.close();
+                try {
+                    return dedup.accept(cellHash, perceptualHash);
+                } finally {
+                    next++;
+                    notifyAll();
                 }
             }
-        } catch (Exception e) {
-            e.printStackTrace();
         }
     }
 
-    public static BufferedImage palettize(int bits, BufferedImage source) {
-        Map<Integer, Integer> palette = new HashMap<>();
-        palette.put(0, 0);
-        DataBufferInt srcBuffer = (DataBufferInt) source.getRaster().getDataBuffer();
-        int[] srcData = srcBuffer.getData();
-        for (int pixel : srcData) {
-            if ((pixel >>> 24) != 0xff) {
-                pixel = 0;
-            }
-            final int size = palette.size();
-            palette.putIfAbsent(pixel, size);
-        }
-        int[] cmap = new int[palette.size()];
-        for (int i : palette.keySet()) {
-            cmap[palette.get(i)] = i;
-        }
-        IndexColorModel icm = new IndexColorModel(bits, cmap.length, cmap, 0, DataBuffer.TYPE_BYTE, null);
-        BufferedImage p = new BufferedImage(source.getWidth(),
-                source.getHeight(),
-                cmap.length <= 16 ? BufferedImage.TYPE_BYTE_BINARY : BufferedImage.TYPE_BYTE_INDEXED,
-                icm);
-        Graphics2D pg = (Graphics2D) p.getGraphics();
-        pg.drawImage(source, 0, 0, null);
-        return p;
+    /**
+     * One image on its way to a sprite pack
+     */
+    private static class Packed {
+
+        private final long seed;
+        private final int[] pixels;
+        private final byte[] indices;
+        private final int[] palette;
+
+        private Packed(long seed, int[] pixels, byte[] indices, int[] palette) {
+            this.seed = seed;
+            this.pixels = pixels;
+            this.indices = indices;
+            this.palette = palette;
+        }
+    }
+
+    /**
+     * Per-thread generation state
+     */
+    private static class Worker {
+
+        private final Specs specs;
+        private final SplatParser parser;
+        private final SpriteGrid grid;
+        private final BufferedImage image;
+        private final int[] imagePixels;
+        // Only set when writing PNGs
+        private final PngEncoder encoder;
+        // Only set when writing paletted images
+        private final byte[] indices;
+        // Packed index rasters for non-PNG formats, by bits per pixel
+        private final WritableRaster[] rasters = new WritableRaster[9];
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        // Only set with --stats
+        private final DrawStats stats;
+        private long allocatedStart;
+        // Only set with --dedup
+        private final InOrderDedup dedup;
+
+        private Worker(Specs base, SplatParser parser, DrawStats stats, InOrderDedup dedup) {
+            this.parser = parser;
+            this.stats = stats;
+            this.dedup = dedup;
+            specs = base.copy();
+            grid = new SpriteGrid(specs);
+            grid.setListener(stats);
+            image = new BufferedImage(specs.targetWidth, specs.targetHeight, BufferedImage.TYPE_INT_ARGB);
+            imagePixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            encoder = isPng(parser) ? new PngEncoder() : null;
+            indices = parser.getBits() != -1 ? new byte[specs.targetWidth * specs.targetHeight] : null;
+        }
+
+        /**
+         * Generate one image of the batch into an array
+         *
+         * @param index Index in the batch
+         * @param out   Array to write the ARGB pixels to
+         */
+        private void renderInto(int index, int[] out) {
+            long start = begin();
+            grid.seek(index);
+            grid.draw(out);
+            end(start);
+        }
+
+        /**
+         * Generate one image of the batch for a sprite pack
+         *
+         * @param index Index in the batch
+         * @return The image, as palette indices if paletted and as ARGB otherwise, or {@code null}
+         * if it was dropped as a duplicate
+         * @throws InterruptedException If interrupted while waiting to check for duplicates
+         */
+        private Packed pack(int index) throws InterruptedException {
+            long start = begin();
+            grid.seek(index);
+            if (!generate(index)) {
+                end(start);
+                return null;
+            }
+            Packed packed;
+            int size = specs.targetWidth * specs.targetHeight;
+            if (indices != null) {
+                byte[] packedIndices = new byte[size];
+                grid.finishIndexed(packedIndices);
+                packed = new Packed(specs.seed, null, packedIndices, grid.getPalette());
+            } else {
+                int[] packedPixels = new int[size];
+                grid.finish(packedPixels);
+                packed = new Packed(specs.seed, packedPixels, null, null);
+            }
+            end(start);
+            return packed;
+        }
+
+        /**
+         * Generate and output one image
+         *
+         * @param index Index in the batch
+         * @return The encoded image for the writer, or {@code null} if it was written to its own
+         * file or dropped as a duplicate
+         * @throws IOException          If writing fails
+         * @throws InterruptedException If interrupted while waiting to check for duplicates
+         */
+        private byte[] render(int index) throws IOException, InterruptedException {
+            long start = begin();
+            grid.seek(index);
+            if (!generate(index)) {
+                end(start);
+                return null;
+            }
+            bytes.reset();
+            finishAndEncode();
+            if (parser.getOutputDir() != null) {
+                String fileName = parser.getOutputDir();
+                if (parser.getNumImages() > 1) {
+                    fileName += "_" + index;
+                }
+                fileName += "." + parser.getFormat().toLowerCase();
+                WriteEvent event = new WriteEvent();
+                event.begin();
+                try (OutputStream os = new FileOutputStream(fileName)) {
+                    bytes.writeTo(os);
+                }
+                if (event.shouldCommit()) {
+                    event.path = fileName;
+                    event.bytes = bytes.size();
+                    event.commit();
+                }
+                end(start);
+                return null;
+            }
+            byte[] encoded = bytes.toByteArray();
+            end(start);
+            return encoded;
+        }
+
+        /**
+         * Generate the next image up to scaling, and check it against the sprites kept before it
+         *
+         * @param index Index of the image in the batch
+         * @return {@code false} if the image duplicates one kept before and should be dropped
+         * @throws InterruptedException If interrupted while waiting to check for duplicates
+         */
+        private boolean generate(int index) throws InterruptedException {
+            grid.generate();
+            return dedup == null || dedup.accept(index, grid);
+        }
+
+        /**
+         * @return When a sprite started, or 0 without --stats
+         */
+        private long begin() {
+            if (stats == null) {
+                return 0;
+            }
+            allocatedStart = DrawStats.allocatedBytes();
+            return System.nanoTime();
+        }
+
+        /**
+         * Record a sprite that has been drawn and encoded
+         *
+         * @param start Result of {@link #begin()}
+         */
+        private void end(long start) {
+            if (stats == null) {
+                return;
+            }
+            long nanos = System.nanoTime() - start;
+            long allocated = allocatedStart < 0 ? -1 : DrawStats.allocatedBytes() - allocatedStart;
+            stats.sprite(nanos, allocated);
+        }
+
+        /**
+         * Record the encoding stage
+         *
+         * @param start    When encoding started, or 0 without --stats
+         * @param event    Event begun when encoding started
+         * @param paletted Whether the image was encoded with a palette
+         */
+        private void encoded(long start, EncodeEvent event, boolean paletted) {
+            if (stats != null) {
+                stats.stage(DrawListener.Stage.ENCODE, System.nanoTime() - start);
+            }
+            if (event.shouldCommit()) {
+                event.format = parser.getFormat();
+                event.width = specs.targetWidth;
+                event.height = specs.targetHeight;
+                event.paletted = paletted;
+                event.bytes = bytes.size();
+                event.commit();
+            }
+        }
+
+        /**
+         * Finish the generated image straight into the form the requested format is encoded from,
+         * and encode it into {@link #bytes}
+         *
+         * @throws IOException If encoding fails
+         */
+        private void finishAndEncode() throws IOException {
+            OutputStream os = bytes;
+            int width = specs.targetWidth, height = specs.targetHeight;
+            if (indices != null) {
+                grid.finishIndexed(indices);
+                int[] palette = grid.getPalette();
+                long start = stats == null ? 0 : System.nanoTime();
+                EncodeEvent event = new EncodeEvent();
+                event.begin();
+                if (encoder != null) {
+                    encoder.writeIndexed(indices, width, height, palette, os);
+                } else {
+                    ImageIO.write(indexedImage(palette), parser.getFormat(), os);
+                }
+                encoded(start, event, true);
+                return;
+            }
+            grid.finish(imagePixels);
+            long start = stats == null ? 0 : System.nanoTime();
+            EncodeEvent event = new EncodeEvent();
+            event.begin();
+            if (encoder != null) {
+                encoder.writeArgb(imagePixels, width, height, os);
+            } else {
+                ImageIO.write(image, parser.getFormat(), os);
+            }
+            encoded(start, event, false);
+        }
+
+        /**
+         * Wrap the current palette indices in an image, packed as AWT would for that palette size
+         *
+         * @param palette ARGB palette, entry 0 transparent
+         * @return A byte-indexed or byte-binary image sharing this worker's raster
+         */
+        private BufferedImage indexedImage(int[] palette) {
+            int depth = PngEncoder.bitDepth(palette.length);
+            IndexColorModel icm = new IndexColorModel(depth, palette.length, palette, 0, DataBuffer.TYPE_BYTE, null);
+            if (rasters[depth] == null) {
+                rasters[depth] = icm.createCompatibleWritableRaster(specs.targetWidth, specs.targetHeight);
+            }
+            WritableRaster raster = rasters[depth];
+            byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+            Palettizer.pack(indices, specs.targetWidth, specs.targetHeight, depth, data);
+            return new BufferedImage(icm, raster, false, null);
+        }
     }
 
 }
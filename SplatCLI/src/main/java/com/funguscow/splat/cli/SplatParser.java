@@ -2,7 +2,9 @@ package com.funguscow.splat.cli;
 
 import com.funguscow.clim.CliParser;
 import com.funguscow.clim.Option;
+import com.funguscow.splat.data.CellularAutomaton;
 import com.funguscow.splat.data.Specs;
+import com.funguscow.splat.random.RandomSource;
 
 import java.util.Random;
 
@@ -12,8 +14,12 @@ public class SplatParser extends CliParser {
     private String outputDir = null;
     private String format = "png";
     private boolean grid = false;
+    private boolean pack = false;
+    private boolean stats = false;
     private int numImages = 1;
     private int bits = -1;
+    private int threads = 1;
+    private int dedup = -1;
 
     public SplatParser() {
         super();
@@ -161,6 +167,42 @@ public class SplatParser extends CliParser {
                 Option.ArgumentType.REQUIRED,
                 Option.ArgumentAction.SET
         )); // Devoid
+        addArgument(new Option(
+                null,
+                "fast_ca",
+                null,
+                "set",
+                "Draw cellular automaton randomness in bulk. Faster, but seeds give different sprites",
+                Option.ArgumentType.NONE,
+                Option.ArgumentAction.SET
+        )); // Fast CA
+        addArgument(new Option(
+                null,
+                "incremental_ca",
+                null,
+                "set",
+                "As --fast_ca, giving the same sprites, but later generations only revisit cells near changes",
+                Option.ArgumentType.NONE,
+                Option.ArgumentAction.SET
+        ));
+        addArgument(new Option(
+                null,
+                "ca_generations",
+                null,
+                null,
+                "Number of cellular automaton generations to run, 0 for none",
+                Option.ArgumentType.REQUIRED,
+                Option.ArgumentAction.SET
+        ));
+        addArgument(new Option(
+                null,
+                "rng",
+                null,
+                null,
+                "Random generator: legacy (default), xoroshiro, or splitmix. Others are faster, but seeds give different sprites",
+                Option.ArgumentType.REQUIRED,
+                Option.ArgumentAction.SET
+        )); // RNG
         addArgument(new Option(
                 'h',
                 "hue",
@@ -296,15 +338,24 @@ public class SplatParser extends CliParser {
                 Option.ArgumentType.NONE,
                 Option.ArgumentAction.SET
         )); // Scaling function
+        addArgument(new Option(
+                null,
+                "fused_scale",
+                null,
+                "set",
+                "Scale tile by tile without full-size intermediate images",
+                Option.ArgumentType.NONE,
+                Option.ArgumentAction.SET
+        )); // Fused scaling
         addArgument(new Option(
                 null,
                 "random_seed",
                 null,
                 "set",
-                "Use a new seed for each image",
+                "Deprecated, has no effect: every image already gets its own seed, derived from -z and its index",
                 Option.ArgumentType.NONE,
                 Option.ArgumentAction.SET
-        )); // Randomize seed
+        )); // Randomize seed, kept so existing scripts still parse
         addArgument(new Option(
                 null,
                 "random_color",
@@ -359,6 +410,15 @@ public class SplatParser extends CliParser {
                 Option.ArgumentType.NONE,
                 Option.ArgumentAction.SET
         ));
+        addArgument(new Option(
+                null,
+                "pack",
+                null,
+                "set",
+                "Save many images to one sprite pack file, paletted if -p is given",
+                Option.ArgumentType.NONE,
+                Option.ArgumentAction.SET
+        ));
         addArgument(new Option(
                 'p',
                 "paletted",
@@ -369,6 +429,34 @@ public class SplatParser extends CliParser {
                 Option.ArgumentAction.SET
         ));
 
+        addArgument(new Option(
+                't',
+                "threads",
+                null,
+                null,
+                "Number of threads to generate and encode images on",
+                Option.ArgumentType.REQUIRED,
+                Option.ArgumentAction.SET
+        )); // Worker threads
+        addArgument(new Option(
+                null,
+                "stats",
+                null,
+                "set",
+                "Print p50/p99 of each stage and sprites per second to stderr at the end",
+                Option.ArgumentType.NONE,
+                Option.ArgumentAction.SET
+        ));
+        addArgument(new Option(
+                null,
+                "dedup",
+                null,
+                "0",
+                "Drop sprites that repeat one before, or differ from one in at most this many bits of a 64-bit perceptual hash. Not for grids",
+                Option.ArgumentType.OPTIONAL,
+                Option.ArgumentAction.SET
+        ));
+
         addArgument(new Option(
                 '?',
                 "help",
@@ -404,6 +492,15 @@ public class SplatParser extends CliParser {
         return floatOf(key, failure, 0, 1);
     }
 
+    private static RandomSource.Kind kindOf(String name) {
+        for (RandomSource.Kind kind : RandomSource.Kind.values()) {
+            if (kind.name().equalsIgnoreCase(name)) {
+                return kind;
+            }
+        }
+        throw new IllegalArgumentException("Unknown random generator " + name);
+    }
+
     @Override
     public void parse(String... args) {
         super.parse(args);
@@ -413,6 +510,16 @@ public class SplatParser extends CliParser {
         outputDir = getString("output");
         numImages = getInt("num_images", 1);
         grid = wasSet("grid");
+        pack = wasSet("pack");
+        stats = wasSet("stats");
+        dedup = wasSet("dedup") ? getInt("dedup", 0) : -1;
+        if (wasSet("dedup") && (dedup < 0 || dedup > 63)) {
+            throw new IllegalArgumentException("Dedup distance must be in [0, 63], got " + dedup);
+        }
+        threads = getInt("threads", 1);
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive, got " + threads);
+        }
         if (wasSet("format")) {
             format = getString("format");
         } else if (outputDir != null) {
@@ -434,6 +541,10 @@ public class SplatParser extends CliParser {
         specs.height = getInt("height", specs.height);
         specs.targetWidth = getInt("scaled_width", specs.width);
         specs.targetHeight = getInt("scaled_height", specs.height);
+        if (wasSet("function")) {
+            specs.scaleName = getString("function");
+        }
+        specs.fusedScale = wasSet("fused_scale");
         specs.colors = intOf("colors", specs.colors, 2, 15);
         specs.seeds = intOf("seeds", specs.seeds, 4, 16);
 
@@ -457,12 +568,24 @@ public class SplatParser extends CliParser {
         specs.caProbs[1] = floatOf("despur", specs.caProbs[1]);
         specs.caProbs[2] = floatOf("relax", specs.caProbs[2]);
         specs.caProbs[3] = floatOf("devoid", specs.caProbs[3]);
+        if (wasSet("fast_ca")) {
+            specs.caMode = CellularAutomaton.Mode.FAST;
+        }
+        if (wasSet("incremental_ca")) {
+            specs.caMode = CellularAutomaton.Mode.INCREMENTAL;
+        }
+        specs.caGenerations = getInt("ca_generations", specs.caGenerations);
+        if (specs.caGenerations < 0) {
+            throw new IllegalArgumentException("Generation count must not be negative, got " + specs.caGenerations);
+        }
+        if (wasSet("rng")) {
+            specs.randomKind = kindOf(getString("rng"));
+        }
         specs.seed = random.nextLong();
         if (wasSet("seed")) {
             specs.seed = Long.parseLong(getString("seed"));
         }
 
-        specs.randomSeed = wasSet("random_seed");
         specs.randomColor = wasSet("random_color");
 
         if (wasSet("paletted")) {
@@ -492,7 +615,27 @@ public class SplatParser extends CliParser {
         return grid;
     }
 
+    public boolean isPack() {
+        return pack;
+    }
+
+    public boolean isStats() {
+        return stats;
+    }
+
+    /**
+     * @return Most bits the perceptual hashes of two kept sprites may differ in, or -1 to keep
+     * duplicates
+     */
+    public int getDedup() {
+        return dedup;
+    }
+
     public int getBits() {
         return bits;
     }
+
+    public int getThreads() {
+        return threads;
+    }
 }
@@ -0,0 +1,24 @@
+package com.funguscow.splat.cli;
+
+import com.funguscow.splat.jfr.SplatEvent;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.funguscow.splat.Write")
+@Label("Write")
+@Description("Writing one encoded sprite to its file or to standard output")
+@Category({"Splat", "CLI"})
+class WriteEvent extends SplatEvent {
+
+    @Label("Path")
+    @Description("File written to, or - for standard output")
+    String path;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+}
@@ -138,6 +138,17 @@ public class Utils {
         return Math.min(Math.max(x, min), max);
     }
 
+    /**
+     * Approximate perceived brightness of a color, weighted as in Rec. 601
+     *
+     * @param argb Color, alpha ignored
+     * @return Brightness in [0, 255]
+     */
+    public static int luma(int argb) {
+        int r = (argb >>> 16) & 0xff, g = (argb >>> 8) & 0xff, b = argb & 0xff;
+        return (r * 77 + g * 150 + b * 29) >>> 8;
+    }
+
     /**
      * Sample a clamped pixel
      *
@@ -155,4 +166,21 @@ public class Utils {
         return image[y * width + x];
     }
 
+    /**
+     * Sample a clamped palette index
+     *
+     * @param image  Indexed image from which to sample
+     * @param width  Width in pixels of {@code image}
+     * @param height Height in pixels of {@code image}
+     * @param x      X index in pixels to sample
+     * @param y      Y index in pixels to sample
+     * @return Index in {@code image} at {@code y} * {@code width} + {@code x}, or the nearest
+     * border index if out of bounds.
+     */
+    public static byte clampedPixelAt(byte[] image, int width, int height, int x, int y) {
+        x = clamp(x, 0, width - 1);
+        y = clamp(y, 0, height - 1);
+        return image[y * width + x];
+    }
+
 }
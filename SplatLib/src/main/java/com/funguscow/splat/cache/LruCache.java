@@ -0,0 +1,75 @@
+package com.funguscow.splat.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A thread-safe map bounded by entry count, evicting the least recently used entry
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public class LruCache<K, V> {
+
+    private final LinkedHashMap<K, V> map;
+
+    /**
+     * @param capacity Maximum number of entries to keep
+     */
+    public LruCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive, got " + capacity);
+        }
+        map = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @param key Key to look up
+     * @return The cached value, or {@code null} if absent
+     */
+    public synchronized V get(K key) {
+        return map.get(key);
+    }
+
+    /**
+     * Get the cached value for {@code key}, computing and caching it if absent. The value is
+     * computed outside the lock, so concurrent callers may compute it more than once, but all of
+     * them receive the same cached instance
+     *
+     * @param key     Key to look up
+     * @param compute Function to compute a missing value
+     * @return The cached value
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> compute) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        value = compute.apply(key);
+        synchronized (this) {
+            V raced = map.putIfAbsent(key, value);
+            return raced == null ? value : raced;
+        }
+    }
+
+    /**
+     * @return Number of cached entries
+     */
+    public synchronized int size() {
+        return map.size();
+    }
+
+    /**
+     * Remove all entries
+     */
+    public synchronized void clear() {
+        map.clear();
+    }
+
+}
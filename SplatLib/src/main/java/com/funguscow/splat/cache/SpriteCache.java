@@ -0,0 +1,428 @@
+package com.funguscow.splat.cache;
+
+import com.funguscow.splat.data.Specs;
+import com.funguscow.splat.io.PngEncoder;
+import com.funguscow.splat.random.SplitMix64;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A thread-safe cache of rendered sprites, bounded by the bytes it holds and evicting the least
+ * recently used sprites
+ * <p>
+ * Sprites are keyed by a 128-bit hash of every spec that changes the rendered pixels, including
+ * the seed, target size, and scaler name. The cache is split into stripes by key, each with its
+ * own lock and an equal share of the byte budget, so lookups of different sprites rarely contend.
+ * A sprite's encoded PNG can be cached alongside its pixels, and counts against the same budget
+ */
+public class SpriteCache {
+
+    /**
+     * Default number of independently locked stripes
+     */
+    public static final int DEFAULT_STRIPES = 16;
+
+    /**
+     * A canonical 128-bit hash of specs. Two keys are equal if and only if their hashes are, so
+     * distinct specs share a key only by a 128-bit collision
+     */
+    public static final class Key {
+
+        public final long high, low;
+
+        public Key(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return high == key.high && low == key.low;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (low ^ (low >>> 32));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%016x%016x", high, low);
+        }
+    }
+
+    /**
+     * A rendered sprite. Its pixels are shared by every caller that looks it up, and must not be
+     * modified
+     */
+    public static final class Entry {
+
+        public final Key key;
+        public final int width, height;
+        public final int[] pixels;
+        private volatile byte[] png;
+
+        private Entry(Key key, int width, int height, int[] pixels) {
+            this.key = key;
+            this.width = width;
+            this.height = height;
+            this.pixels = pixels;
+        }
+
+        /**
+         * @return The cached PNG of this sprite, or {@code null} if it has not been encoded
+         */
+        public byte[] getPng() {
+            return png;
+        }
+
+        /**
+         * @return Bytes this entry counts against the budget
+         */
+        private long bytes() {
+            byte[] encoded = png;
+            return pixels.length * 4L + (encoded == null ? 0 : encoded.length);
+        }
+    }
+
+    private final long maxBytes;
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    private final LongAdder hits = new LongAdder(), misses = new LongAdder(), evictions = new LongAdder();
+
+    /**
+     * @param maxBytes Most bytes of pixels and PNGs to keep
+     */
+    public SpriteCache(long maxBytes) {
+        this(maxBytes, DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param maxBytes Most bytes of pixels and PNGs to keep
+     * @param stripes  Number of independently locked stripes, rounded up to a power of 2. Each may
+     *                 hold up to {@code maxBytes / stripes} bytes, so no sprite larger than that is
+     *                 cached
+     */
+    public SpriteCache(long maxBytes, int stripes) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("Capacity must be positive, got " + maxBytes);
+        }
+        if (stripes < 1 || stripes > 1 << 16) {
+            throw new IllegalArgumentException("Stripe count must be in [1, 65536], got " + stripes);
+        }
+        int count = 1;
+        while (count < stripes) {
+            count <<= 1;
+        }
+        this.maxBytes = maxBytes;
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            this.stripes[i] = new Stripe(maxBytes / count);
+        }
+        stripeMask = count - 1;
+    }
+
+    /**
+     * Hash every spec that changes the rendered sprite. {@link Specs#fusedScale} is left out, as
+     * fused and materialized scaling give the same pixels, as are {@link Specs#randomSeed}, which
+     * is no longer read, and {@link Specs#randomColor}, which only matters when choosing the specs
+     * of a batch
+     *
+     * @param specs Specs to hash
+     * @return Key of the sprite those specs render
+     */
+    public static Key keyOf(Specs specs) {
+        Hasher hasher = new Hasher();
+        hasher.put(specs.width);
+        hasher.put(specs.height);
+        hasher.put(specs.colors);
+        hasher.put(specs.seeds);
+        hasher.put(specs.targetWidth);
+        hasher.put(specs.targetHeight);
+        hasher.put(specs.scaleName);
+        hasher.put(specs.seed);
+        hasher.put(specs.minProb);
+        hasher.put(specs.maxProb);
+        hasher.put(specs.bias);
+        hasher.put(specs.gain);
+        hasher.put(specs.xMirror);
+        hasher.put(specs.yMirror);
+        hasher.put(specs.pMirror);
+        hasher.put(specs.nMirror);
+        hasher.put(specs.variance);
+        hasher.put(specs.mutation);
+        hasher.put(specs.hue);
+        hasher.put(specs.saturation);
+        hasher.put(specs.value);
+        hasher.put(specs.hue_sigma);
+        hasher.put(specs.saturation_sigma);
+        hasher.put(specs.value_sigma);
+        hasher.put(specs.caProbs);
+        hasher.put(specs.caGenerations);
+        hasher.put(specs.caMode.ordinal());
+        hasher.put(specs.randomKind.ordinal());
+        hasher.put(specs.densityMask);
+        return new Key(hasher.high, hasher.low);
+    }
+
+    /**
+     * @param key Key to look up
+     * @return The cached sprite, or {@code null} if absent
+     */
+    public Entry get(Key key) {
+        Entry entry = stripeOf(key).get(key);
+        (entry == null ? misses : hits).increment();
+        return entry;
+    }
+
+    /**
+     * Get the sprite for some specs, rendering and caching it if absent. The sprite is rendered
+     * outside any lock, so concurrent callers may render it more than once, but all of them
+     * receive the same cached entry unless it was evicted in between
+     *
+     * @param specs  Specs of the sprite
+     * @param render Function to render the {@code targetWidth} x {@code targetHeight} ARGB pixels
+     *               of missing specs
+     * @return The cached sprite
+     */
+    public Entry get(Specs specs, Function<? super Specs, int[]> render) {
+        Key key = keyOf(specs);
+        Entry entry = get(key);
+        if (entry != null) {
+            return entry;
+        }
+        int[] pixels = render.apply(specs);
+        if (pixels.length < specs.targetWidth * specs.targetHeight) {
+            throw new IllegalArgumentException("Rendered " + pixels.length + " pixels, need "
+                    + specs.targetWidth + " x " + specs.targetHeight);
+        }
+        return stripeOf(key).putIfAbsent(new Entry(key, specs.targetWidth, specs.targetHeight, pixels));
+    }
+
+    /**
+     * Get the PNG of a sprite, rendering and encoding it as needed, and caching both
+     *
+     * @param specs   Specs of the sprite
+     * @param render  Function to render the ARGB pixels of missing specs
+     * @param encoder Encoder to use if the PNG is not cached, which must not be in use by another
+     *                thread
+     * @return The encoded sprite, which must not be modified
+     * @throws IOException If encoding fails
+     */
+    public byte[] getPng(Specs specs, Function<? super Specs, int[]> render, PngEncoder encoder) throws IOException {
+        Entry entry = get(specs, render);
+        byte[] png = entry.png;
+        if (png != null) {
+            return png;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.writeArgb(entry.pixels, entry.width, entry.height, out);
+        png = out.toByteArray();
+        stripeOf(entry.key).attach(entry, png);
+        return png;
+    }
+
+    /**
+     * @param key Key of the sprite to drop
+     */
+    public void remove(Key key) {
+        stripeOf(key).remove(key);
+    }
+
+    /**
+     * Remove all entries
+     */
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    /**
+     * @return Number of lookups that found a sprite
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Number of lookups that found nothing
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Number of sprites evicted to stay within the budget
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return Number of cached sprites
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return Bytes of pixels and PNGs held
+     */
+    public long getBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            bytes += stripe.bytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * @return Most bytes this cache holds
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    private Stripe stripeOf(Key key) {
+        // The high bits, as the low ones pick the bucket within a stripe
+        return stripes[(int) (key.high >>> 40) & stripeMask];
+    }
+
+    /**
+     * One independently locked part of the cache
+     */
+    private class Stripe {
+
+        private final long maxBytes;
+        private final LinkedHashMap<Key, Entry> map = new LinkedHashMap<>(16, 0.75f, true);
+        private long bytes;
+
+        private Stripe(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        private synchronized Entry get(Key key) {
+            return map.get(key);
+        }
+
+        private synchronized Entry putIfAbsent(Entry entry) {
+            Entry raced = map.get(entry.key);
+            if (raced != null) {
+                return raced;
+            }
+            long size = entry.bytes();
+            if (size > maxBytes) {
+                return entry;
+            }
+            map.put(entry.key, entry);
+            bytes += size;
+            trim();
+            return entry;
+        }
+
+        /**
+         * Store the PNG of an entry, if the entry is still cached
+         */
+        private synchronized void attach(Entry entry, byte[] png) {
+            if (entry.png != null || map.get(entry.key) != entry) {
+                return;
+            }
+            if (entry.bytes() + png.length > maxBytes) {
+                return;
+            }
+            entry.png = png;
+            bytes += png.length;
+            trim();
+        }
+
+        private synchronized void remove(Key key) {
+            Entry entry = map.remove(key);
+            if (entry != null) {
+                bytes -= entry.bytes();
+            }
+        }
+
+        private synchronized void clear() {
+            map.clear();
+            bytes = 0;
+        }
+
+        private synchronized int size() {
+            return map.size();
+        }
+
+        private synchronized long bytes() {
+            return bytes;
+        }
+
+        /**
+         * Evict least recently used entries until within budget
+         */
+        private void trim() {
+            Iterator<Map.Entry<Key, Entry>> eldest = map.entrySet().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                bytes -= eldest.next().getValue().bytes();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Two independently seeded 64-bit lanes over a stream of values
+     */
+    private static class Hasher {
+
+        private long high = 0x243f6a8885a308d3L, low = 0x13198a2e03707344L;
+
+        private void put(long value) {
+            low = SplitMix64.mix(low ^ value) + SplitMix64.GOLDEN_GAMMA;
+            high = SplitMix64.mix(high + value * 0xc2b2ae3d27d4eb4fL) ^ (high >>> 29);
+        }
+
+        private void put(float value) {
+            put((long) Float.floatToIntBits(value));
+        }
+
+        private void put(String value) {
+            if (value == null) {
+                put(-1L);
+                return;
+            }
+            put((long) value.length());
+            for (int i = 0; i < value.length(); i++) {
+                put((long) value.charAt(i));
+            }
+        }
+
+        private void put(float[] values) {
+            if (values == null) {
+                put(-1L);
+                return;
+            }
+            put((long) values.length);
+            for (float value : values) {
+                put(value);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,358 @@
+package com.funguscow.splat.data;
+
+import com.funguscow.splat.random.RandomSource;
+
+import java.util.Arrays;
+
+/**
+ * Bit-packed engine for the despeckle/despur/relax/devoid automaton
+ * <p>
+ * Each row is stored as {@code long} bitboards, with cell x of a row at bit {@code x % 64} of word
+ * {@code x / 64}. Neighbor counts are computed for 64 cells at a time by summing the eight shifted
+ * neighbor boards through bit-sliced adders into a 4-bit count. Cells outside the grid count as
+ * empty
+ * <p>
+ * In {@link Mode#INCREMENTAL}, the cells that may change are remembered per word between
+ * generations, and only words next to a word that changed are counted again
+ */
+public class CellularAutomaton {
+
+    /**
+     * How random numbers are drawn for cells that may change
+     */
+    public enum Mode {
+        /**
+         * One {@link RandomSource#nextFloat()} per cell with 0, 1, 7, or 8 neighbors, in row-major
+         * order, exactly as the original per-cell automaton did, so seeds reproduce the same sprites
+         */
+        EXACT,
+        /**
+         * Bernoulli masks for 64 cells at a time, built from {@link RandomSource#fillBits} with 16 bits
+         * of probability precision, and only for words that have a cell which can change. Faster,
+         * but does not reproduce sprites generated with {@link #EXACT}
+         */
+        FAST,
+        /**
+         * As {@link #FAST}, drawing the same numbers so seeds reproduce the same sprites, but after
+         * the first generation only words that had a cell which could change, or are next to one
+         * that changed, are visited. Many generations then cost in proportion to the activity
+         * rather than the area
+         */
+        INCREMENTAL
+    }
+
+    /**
+     * Bits of precision used when building Bernoulli masks in {@link Mode#FAST}
+     */
+    private static final int MASK_PRECISION = 16;
+
+    private final int width, height, words;
+    private final long lastMask;
+    private long[] cells, next;
+    // Random words for one Bernoulli mask
+    private final long[] randomWords = new long[MASK_PRECISION];
+
+    // Only allocated for Mode.INCREMENTAL
+    // Per word, the filled cells with 0 and 1 neighbors and the empty cells with 7 and 8
+    private long[] empty0, empty1, fill7, fill8;
+    // One bit per word: words with a cell that may change, and words whose counts are stale
+    private long[] live, dirty;
+    // Words changed by the current generation, and their new cells
+    private int[] changedWords;
+    private long[] changedCells;
+    // Whether the incremental state matches the cells
+    private boolean tracking;
+
+    /**
+     * @param width  Width in cells
+     * @param height Height in cells
+     */
+    public CellularAutomaton(int width, int height) {
+        this.width = width;
+        this.height = height;
+        words = (width + 63) >>> 6;
+        lastMask = (width & 63) == 0 ? -1L : (1L << (width & 63)) - 1;
+        cells = new long[words * height];
+        next = new long[words * height];
+    }
+
+    /**
+     * Pack a grid into bitboards
+     *
+     * @param grid Row-major cells, where any nonzero value is filled
+     */
+    public void load(int[] grid) {
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int w = 0; w < words; w++) {
+                long word = 0;
+                int end = Math.min(64, width - (w << 6));
+                for (int b = 0; b < end; b++) {
+                    if (grid[row + (w << 6) + b] != 0) {
+                        word |= 1L << b;
+                    }
+                }
+                cells[y * words + w] = word;
+            }
+        }
+        tracking = false;
+    }
+
+    /**
+     * Unpack the bitboards to a grid
+     *
+     * @param grid Row-major cells to write 1 for filled and 0 for empty cells to
+     */
+    public void store(int[] grid) {
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int w = 0; w < words; w++) {
+                long word = cells[y * words + w];
+                int end = Math.min(64, width - (w << 6));
+                for (int b = 0; b < end; b++) {
+                    grid[row + (w << 6) + b] = (int) (word >>> b) & 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Run one generation
+     *
+     * @param probs  Probabilities to empty a cell with 0 or 1 neighbors, and to fill a cell with
+     *               7 or 8 neighbors, in that order
+     * @param random RNG to draw from
+     * @param mode   How to draw from {@code random}
+     */
+    public void step(float[] probs, RandomSource random, Mode mode) {
+        if (mode == Mode.INCREMENTAL) {
+            stepIncremental(probs, random);
+            return;
+        }
+        tracking = false;
+        for (int y = 0; y < height; y++) {
+            int row = y * words;
+            int above = y > 0 ? row - words : -1;
+            int below = y < height - 1 ? row + words : -1;
+            for (int w = 0; w < words; w++) {
+                long a = word(above, w), aW = west(above, w), aE = east(above, w);
+                long cW = west(row, w), cE = east(row, w);
+                long b = word(below, w), bW = west(below, w), bE = east(below, w);
+                // Bit-sliced sum of the eight neighbors into the 4-bit count {b3 b2 b1 b0}
+                long s1 = aW ^ a ^ aE, c1 = (aW & a) | (aE & (aW ^ a));
+                long s2 = cW ^ cE ^ bW, c2 = (cW & cE) | (bW & (cW ^ cE));
+                long s3 = b ^ bE, c3 = b & bE;
+                long b0 = s1 ^ s2 ^ s3, c4 = (s1 & s2) | (s3 & (s1 ^ s2));
+                long t1 = c1 ^ c2 ^ c3, k1 = (c1 & c2) | (c3 & (c1 ^ c2));
+                long b1 = t1 ^ c4, k2 = t1 & c4;
+                long b2 = k1 ^ k2, b3 = k1 & k2;
+                long valid = w == words - 1 ? lastMask : -1L;
+                long n0 = ~(b0 | b1 | b2 | b3) & valid;
+                long n1 = b0 & ~(b1 | b2 | b3) & valid;
+                long n7 = b0 & b1 & b2 & ~b3 & valid;
+                long n8 = b3 & valid;
+                long current = cells[row + w];
+                long clear, set;
+                if (mode == Mode.EXACT) {
+                    clear = 0;
+                    set = 0;
+                    long candidates = n0 | n1 | n7 | n8;
+                    while (candidates != 0) {
+                        long bit = candidates & -candidates;
+                        candidates ^= bit;
+                        float roll = random.nextFloat();
+                        if ((n0 & bit) != 0) {
+                            clear |= roll < probs[0] ? bit : 0;
+                        } else if ((n1 & bit) != 0) {
+                            clear |= roll < probs[1] ? bit : 0;
+                        } else if ((n7 & bit) != 0) {
+                            set |= roll < probs[2] ? bit : 0;
+                        } else {
+                            set |= roll < probs[3] ? bit : 0;
+                        }
+                    }
+                } else {
+                    // Only filled cells can be emptied and only empty cells can be filled
+                    clear = bernoulli(n0 & current, probs[0], random)
+                            | bernoulli(n1 & current, probs[1], random);
+                    set = bernoulli(n7 & ~current, probs[2], random)
+                            | bernoulli(n8 & ~current, probs[3], random);
+                }
+                next[row + w] = (current & ~clear) | set;
+            }
+        }
+        long[] swap = cells;
+        cells = next;
+        next = swap;
+    }
+
+    /**
+     * Run one generation in {@link Mode#INCREMENTAL}. Live words are visited in row-major order
+     * and words without a cell that may change draw nothing in {@link Mode#FAST} either, so both
+     * draw the same numbers
+     *
+     * @param probs  Probabilities as for {@link #step}
+     * @param random RNG to draw from
+     */
+    private void stepIncremental(float[] probs, RandomSource random) {
+        int total = words * height;
+        if (empty0 == null) {
+            empty0 = new long[total];
+            empty1 = new long[total];
+            fill7 = new long[total];
+            fill8 = new long[total];
+            live = new long[(total + 63) >>> 6];
+            dirty = new long[live.length];
+            changedWords = new int[total];
+            changedCells = new long[total];
+        }
+        if (!tracking) {
+            Arrays.fill(dirty, -1L);
+            if ((total & 63) != 0) {
+                dirty[dirty.length - 1] = (1L << (total & 63)) - 1;
+            }
+            tracking = true;
+        }
+        // Count again around the last generation's changes, before any cell changes
+        for (int i = 0; i < dirty.length; i++) {
+            long bits = dirty[i];
+            dirty[i] = 0;
+            while (bits != 0) {
+                int index = (i << 6) | Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (classify(index)) {
+                    live[i] |= 1L << index;
+                } else {
+                    live[i] &= ~(1L << index);
+                }
+            }
+        }
+        int changed = 0;
+        for (int i = 0; i < live.length; i++) {
+            for (long bits = live[i]; bits != 0; bits &= bits - 1) {
+                int index = (i << 6) | Long.numberOfTrailingZeros(bits);
+                long clear = bernoulli(empty0[index], probs[0], random)
+                        | bernoulli(empty1[index], probs[1], random);
+                long set = bernoulli(fill7[index], probs[2], random)
+                        | bernoulli(fill8[index], probs[3], random);
+                if ((clear | set) != 0) {
+                    changedWords[changed] = index;
+                    changedCells[changed++] = (cells[index] & ~clear) | set;
+                }
+            }
+        }
+        for (int i = 0; i < changed; i++) {
+            int index = changedWords[i];
+            long delta = cells[index] ^ changedCells[i];
+            cells[index] = changedCells[i];
+            int y = index / words, w = index - y * words;
+            // A change in an edge bit also changes the counts of the next word over
+            int wFrom = (delta & 1) != 0 && w > 0 ? w - 1 : w;
+            int wTo = delta < 0 && w < words - 1 ? w + 1 : w;
+            for (int ny = Math.max(0, y - 1); ny <= Math.min(height - 1, y + 1); ny++) {
+                for (int nw = wFrom; nw <= wTo; nw++) {
+                    int neighbor = ny * words + nw;
+                    dirty[neighbor >>> 6] |= 1L << neighbor;
+                }
+            }
+        }
+    }
+
+    /**
+     * Count the neighbors of one word, as {@link #step} does, and remember which of its cells may
+     * change
+     *
+     * @param index Index of the word
+     * @return Whether any of its cells may change
+     */
+    private boolean classify(int index) {
+        int y = index / words, w = index - y * words;
+        int row = y * words;
+        int above = y > 0 ? row - words : -1;
+        int below = y < height - 1 ? row + words : -1;
+        long a = word(above, w), aW = west(above, w), aE = east(above, w);
+        long cW = west(row, w), cE = east(row, w);
+        long b = word(below, w), bW = west(below, w), bE = east(below, w);
+        long s1 = aW ^ a ^ aE, c1 = (aW & a) | (aE & (aW ^ a));
+        long s2 = cW ^ cE ^ bW, c2 = (cW & cE) | (bW & (cW ^ cE));
+        long s3 = b ^ bE, c3 = b & bE;
+        long b0 = s1 ^ s2 ^ s3, c4 = (s1 & s2) | (s3 & (s1 ^ s2));
+        long t1 = c1 ^ c2 ^ c3, k1 = (c1 & c2) | (c3 & (c1 ^ c2));
+        long b1 = t1 ^ c4, k2 = t1 & c4;
+        long b2 = k1 ^ k2, b3 = k1 & k2;
+        long valid = w == words - 1 ? lastMask : -1L;
+        long current = cells[index];
+        empty0[index] = ~(b0 | b1 | b2 | b3) & valid & current;
+        empty1[index] = b0 & ~(b1 | b2 | b3) & valid & current;
+        fill7[index] = b0 & b1 & b2 & ~b3 & valid & ~current;
+        fill8[index] = b3 & valid & ~current;
+        return (empty0[index] | empty1[index] | fill7[index] | fill8[index]) != 0;
+    }
+
+    /**
+     * @param row Offset of a row, or -1 for outside the grid
+     * @param w   Word index in the row
+     * @return The cells of that word, or 0 if out of bounds
+     */
+    private long word(int row, int w) {
+        return row < 0 ? 0 : cells[row + w];
+    }
+
+    /**
+     * @param row Offset of a row, or -1 for outside the grid
+     * @param w   Word index in the row
+     * @return For each cell in the word, its western neighbor
+     */
+    private long west(int row, int w) {
+        if (row < 0) {
+            return 0;
+        }
+        long word = cells[row + w] << 1;
+        return w > 0 ? word | (cells[row + w - 1] >>> 63) : word;
+    }
+
+    /**
+     * @param row Offset of a row, or -1 for outside the grid
+     * @param w   Word index in the row
+     * @return For each cell in the word, its eastern neighbor
+     */
+    private long east(int row, int w) {
+        if (row < 0) {
+            return 0;
+        }
+        long word = cells[row + w] >>> 1;
+        return w < words - 1 ? word | (cells[row + w + 1] << 63) : word;
+    }
+
+    /**
+     * Select each cell of a mask with some probability
+     *
+     * @param mask   Cells that may be selected
+     * @param prob   Probability of selecting each cell
+     * @param random RNG to draw from
+     * @return A subset of {@code mask}
+     */
+    private long bernoulli(long mask, float prob, RandomSource random) {
+        if (mask == 0 || prob <= 0) {
+            return 0;
+        }
+        if (prob >= 1) {
+            return mask;
+        }
+        // Each random word halves the probability, then ORing adds one half, from the least
+        // significant bit of the fixed-point probability up
+        int fixed = (int) (prob * (1 << MASK_PRECISION));
+        if (fixed == 0) {
+            return 0;
+        }
+        int first = Integer.numberOfTrailingZeros(fixed);
+        random.fillBits(randomWords, first, MASK_PRECISION - first);
+        long bits = 0;
+        for (int i = first; i < MASK_PRECISION; i++) {
+            long r = randomWords[i];
+            bits = ((fixed >>> i) & 1) != 0 ? bits | r : bits & r;
+        }
+        return mask & bits;
+    }
+
+}
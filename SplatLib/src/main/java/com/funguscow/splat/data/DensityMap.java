@@ -0,0 +1,139 @@
+package com.funguscow.splat.data;
+
+import com.funguscow.splat.Utils;
+import com.funguscow.splat.cache.LruCache;
+
+import java.util.Objects;
+
+/**
+ * Per-cell probability that a cell starts filled, falling off radially from the center by the
+ * Perlin bias and gain functions
+ * <p>
+ * The map only depends on the grid dimensions and the shape parameters of {@link Specs}, so maps
+ * are cached and shared between grids. Instances are immutable
+ */
+public final class DensityMap {
+
+    /**
+     * Maximum number of distinct shape-parameter sets to keep maps for
+     */
+    public static final int CACHE_CAPACITY = 32;
+
+    private static final LruCache<Key, DensityMap> Cache = new LruCache<>(CACHE_CAPACITY);
+
+    private final Key key;
+    private final float[] cutoffs;
+
+    private DensityMap(Key key) {
+        this.key = key;
+        cutoffs = new float[key.width * key.height];
+        for (int y = 0; y < key.height; y++) {
+            float yDist = 1 - Math.abs((key.height - y * 2f) / key.height);
+            for (int x = 0; x < key.width; x++) {
+                float xDist = 1 - Math.abs((key.width - x * 2f) / key.width);
+                float dist = yDist * xDist;
+                float param = Utils.bias(Utils.gain(dist, key.gain), key.bias);
+                cutoffs[y * key.width + x] = Utils.lerp(key.minProb, key.maxProb, param);
+            }
+        }
+    }
+
+    /**
+     * Get the map for the shape of {@code specs}, computing it only if it is not cached
+     *
+     * @param specs Specs to read the dimensions and shape parameters from
+     * @return A shared density map
+     */
+    public static DensityMap of(Specs specs) {
+        return Cache.computeIfAbsent(new Key(specs), DensityMap::new);
+    }
+
+    /**
+     * @param specs Specs to compare to
+     * @return {@code true} if this map was computed for the same shape as {@code specs}
+     */
+    public boolean matches(Specs specs) {
+        return key.matches(specs);
+    }
+
+    /**
+     * @param x X index of a cell
+     * @param y Y index of a cell
+     * @return Probability that the cell starts filled
+     */
+    public float cutoff(int x, int y) {
+        return cutoffs[y * key.width + x];
+    }
+
+    /**
+     * @return A row-major copy of all cutoffs, suitable for modifying and supplying as
+     * {@link Specs#densityMask}
+     */
+    public float[] toArray() {
+        return cutoffs.clone();
+    }
+
+    /**
+     * Row-major cutoffs for internal use, must not be modified
+     */
+    float[] cutoffs() {
+        return cutoffs;
+    }
+
+    public int getWidth() {
+        return key.width;
+    }
+
+    public int getHeight() {
+        return key.height;
+    }
+
+    /**
+     * Fields of {@link Specs} the map depends on
+     */
+    private static final class Key {
+        private final int width, height;
+        private final float minProb, maxProb, bias, gain;
+
+        private Key(Specs specs) {
+            width = specs.width;
+            height = specs.height;
+            minProb = specs.minProb;
+            maxProb = specs.maxProb;
+            bias = specs.bias;
+            gain = specs.gain;
+        }
+
+        private boolean matches(Specs specs) {
+            return width == specs.width
+                    && height == specs.height
+                    && Float.compare(minProb, specs.minProb) == 0
+                    && Float.compare(maxProb, specs.maxProb) == 0
+                    && Float.compare(bias, specs.bias) == 0
+                    && Float.compare(gain, specs.gain) == 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return width == other.width
+                    && height == other.height
+                    && Float.compare(minProb, other.minProb) == 0
+                    && Float.compare(maxProb, other.maxProb) == 0
+                    && Float.compare(bias, other.bias) == 0
+                    && Float.compare(gain, other.gain) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(width, height, minProb, maxProb, bias, gain);
+        }
+    }
+
+}
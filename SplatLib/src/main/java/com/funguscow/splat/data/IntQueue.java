@@ -0,0 +1,76 @@
+package com.funguscow.splat.data;
+
+/**
+ * FIFO queue of primitive ints backed by a ring buffer, reusable without allocating
+ */
+class IntQueue {
+
+    private int[] ring;
+    private int head, size;
+
+    /**
+     * @param capacity Initial capacity
+     */
+    IntQueue(int capacity) {
+        ring = new int[Math.max(1, capacity)];
+    }
+
+    /**
+     * Make room for at least {@code capacity} elements, so that many adds will never allocate
+     *
+     * @param capacity Minimum capacity
+     */
+    void ensureCapacity(int capacity) {
+        if (capacity > ring.length) {
+            int[] grown = new int[capacity];
+            for (int i = 0; i < size; i++) {
+                grown[i] = ring[(head + i) % ring.length];
+            }
+            ring = grown;
+            head = 0;
+        }
+    }
+
+    /**
+     * @param value Value to add to the tail
+     */
+    void add(int value) {
+        if (size == ring.length) {
+            ensureCapacity(ring.length * 2);
+        }
+        int tail = head + size;
+        if (tail >= ring.length) {
+            tail -= ring.length;
+        }
+        ring[tail] = value;
+        size++;
+    }
+
+    /**
+     * @return The value removed from the head
+     */
+    int remove() {
+        if (size == 0) {
+            throw new IllegalStateException("Queue is empty");
+        }
+        int value = ring[head];
+        if (++head == ring.length) {
+            head = 0;
+        }
+        size--;
+        return value;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all elements
+     */
+    void clear() {
+        head = 0;
+        size = 0;
+    }
+
+}
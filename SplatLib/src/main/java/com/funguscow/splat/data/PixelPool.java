@@ -0,0 +1,57 @@
+package com.funguscow.splat.data;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe pool of same-sized pixel arrays, keeping at most a fixed number idle
+ */
+class PixelPool {
+
+    private final int size, capacity;
+    private final ConcurrentLinkedQueue<int[]> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    /**
+     * @param size     Length of each array
+     * @param capacity Most idle arrays to keep
+     */
+    PixelPool(int size, int capacity) {
+        this.size = size;
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return An idle array, or a new one if there is none. Its contents are undefined
+     */
+    int[] take() {
+        int[] pixels = idle.poll();
+        if (pixels == null) {
+            return new int[size];
+        }
+        idleCount.decrementAndGet();
+        return pixels;
+    }
+
+    /**
+     * @param pixels Array no longer in use, dropped if the pool is full
+     */
+    void give(int[] pixels) {
+        if (pixels.length != size) {
+            return;
+        }
+        if (idleCount.incrementAndGet() > capacity) {
+            idleCount.decrementAndGet();
+            return;
+        }
+        idle.add(pixels);
+    }
+
+    /**
+     * @return Number of idle arrays
+     */
+    int idle() {
+        return idleCount.get();
+    }
+
+}
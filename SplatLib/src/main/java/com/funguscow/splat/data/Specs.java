@@ -1,5 +1,7 @@
 package com.funguscow.splat.data;
 
+import com.funguscow.splat.random.RandomSource;
+
 import java.util.Random;
 
 /**
@@ -11,6 +13,7 @@ public class Specs {
     public int colors = 4, seeds = 4;
     public int targetWidth = 16, targetHeight = 16;
     public String scaleName = "NearestNeighbor";
+    public boolean fusedScale = false;
     public long seed;
 
     public float minProb = 0f, maxProb = 1f, bias = 0.5f, gain = 0.5f;
@@ -21,8 +24,22 @@ public class Specs {
 
     public float[] caProbs = {0.9f, 0.5f, 0, 0};
     public int caGenerations = 1;
+    public CellularAutomaton.Mode caMode = CellularAutomaton.Mode.EXACT;
+    public RandomSource.Kind randomKind = RandomSource.Kind.LEGACY;
 
-    public boolean randomSeed = true, randomColor = true;
+    /**
+     * @deprecated No longer read. Every sprite of a batch gets its own seed, derived from
+     * {@link #seed} and its index by {@link SpriteGrid#seek(long)}
+     */
+    @Deprecated
+    public boolean randomSeed = true;
+    public boolean randomColor = true;
+
+    /**
+     * Row-major probability that each cell starts filled, {@code width * height} long. If
+     * {@code null}, the radial {@link DensityMap} from the shape parameters above is used
+     */
+    public float[] densityMask = null;
 
     /**
      * Randomize the specs given a RNG
@@ -50,4 +67,53 @@ public class Specs {
         }
     }
 
+    /**
+     * @return A deep copy of these specs, safe to modify independently
+     */
+    public Specs copy() {
+        return new Specs().set(this);
+    }
+
+    /**
+     * Overwrite every field with those of other specs, copying arrays that are modified in place
+     *
+     * @param other Specs to copy
+     * @return this for convenience
+     */
+    public Specs set(Specs other) {
+        width = other.width;
+        height = other.height;
+        colors = other.colors;
+        seeds = other.seeds;
+        targetWidth = other.targetWidth;
+        targetHeight = other.targetHeight;
+        scaleName = other.scaleName;
+        fusedScale = other.fusedScale;
+        seed = other.seed;
+        minProb = other.minProb;
+        maxProb = other.maxProb;
+        bias = other.bias;
+        gain = other.gain;
+        xMirror = other.xMirror;
+        yMirror = other.yMirror;
+        pMirror = other.pMirror;
+        nMirror = other.nMirror;
+        variance = other.variance;
+        mutation = other.mutation;
+        hue = other.hue;
+        saturation = other.saturation;
+        value = other.value;
+        hue_sigma = other.hue_sigma;
+        saturation_sigma = other.saturation_sigma;
+        value_sigma = other.value_sigma;
+        caProbs = other.caProbs.clone();
+        caGenerations = other.caGenerations;
+        caMode = other.caMode;
+        randomKind = other.randomKind;
+        randomSeed = other.randomSeed;
+        randomColor = other.randomColor;
+        densityMask = other.densityMask;
+        return this;
+    }
+
 }
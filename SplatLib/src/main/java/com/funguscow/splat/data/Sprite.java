@@ -0,0 +1,58 @@
+package com.funguscow.splat.data;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One generated sprite of a {@link SpriteBatch}, with what it was generated from
+ * <p>
+ * Sprites from a {@link SpritePublisher} borrow their pixel array from it, and should be
+ * {@link #release() released} once their pixels are no longer needed, so the array can be reused
+ */
+public final class Sprite {
+
+    /**
+     * Index in the batch
+     */
+    public final long index;
+    /**
+     * Seed it was generated with
+     */
+    public final long seed;
+    /**
+     * Thematic color it was generated with
+     */
+    public final float hue, saturation, value;
+    public final int width, height;
+    /**
+     * Row-major ARGB pixels, {@code width * height} long, owned by this sprite until released
+     */
+    public final int[] pixels;
+    // Pool the pixels are returned to, and whether they have been, only for pooled sprites
+    private final PixelPool pool;
+    private final AtomicBoolean released;
+
+    Sprite(long index, long seed, Specs specs, int[] pixels, PixelPool pool) {
+        this.index = index;
+        this.seed = seed;
+        hue = specs.hue;
+        saturation = specs.saturation;
+        value = specs.value;
+        width = specs.targetWidth;
+        height = specs.targetHeight;
+        this.pixels = pixels;
+        this.pool = pool;
+        released = pool == null ? null : new AtomicBoolean();
+    }
+
+    /**
+     * Return the pixels to the publisher that generated this sprite, which may overwrite them with
+     * another sprite at any time afterward. Does nothing if called again, or for sprites that do
+     * not borrow their pixels
+     */
+    public void release() {
+        if (pool != null && released.compareAndSet(false, true)) {
+            pool.give(pixels);
+        }
+    }
+
+}
@@ -0,0 +1,388 @@
+package com.funguscow.splat.data;
+
+import com.funguscow.splat.random.SplitMix64;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A fixed number of sprites generated from one set of specs, each varied by a seed and color
+ * policy, as a lazy stream or iterator
+ * <p>
+ * Sprite {@code i} depends only on the specs, the policies, and {@code i}, so sprites can be
+ * generated in any order, on any thread, and a stream splits into independent ranges for
+ * {@link Stream#parallel()}. Each range and each thread draws with its own {@link SpriteGrid},
+ * and every sprite gets its own pixel array
+ */
+public class SpriteBatch {
+
+    /**
+     * How each sprite's seed follows from the seed of the specs
+     */
+    public enum SeedPolicy {
+        /**
+         * Sprite 0 uses the seed of the specs, every other sprite an unrelated seed mixed from it
+         * and its index, as {@link SpriteGrid#seek(long)} does
+         */
+        DERIVED,
+        /**
+         * Every sprite uses the seed of the specs, for varying only the colors
+         */
+        FIXED,
+        /**
+         * Sprite {@code i} uses the seed of the specs plus {@code i}
+         */
+        SEQUENTIAL;
+
+        /**
+         * @param baseSeed Seed of the specs
+         * @param index    Index in the batch
+         * @return Seed of the sprite at {@code index}
+         */
+        public long seed(long baseSeed, long index) {
+            switch (this) {
+                case FIXED:
+                    return baseSeed;
+                case SEQUENTIAL:
+                    return baseSeed + index;
+                default:
+                    return SplitMix64.seedFor(baseSeed, index);
+            }
+        }
+    }
+
+    /**
+     * How each sprite's thematic color follows from the color of the specs
+     */
+    public enum ColorPolicy {
+        /**
+         * Every sprite uses the color of the specs
+         */
+        FIXED,
+        /**
+         * Sprite 0 uses the color of the specs, every other sprite a random color drawn from its
+         * index and the seed of the specs, as {@link Specs#randomColor} does. Independent of the
+         * seed policy, so sprites that share a seed still get different colors
+         */
+        RANDOM;
+
+        /**
+         * Set the color of one sprite
+         *
+         * @param specs      Specs to set the color of
+         * @param hue        Hue of the batch
+         * @param saturation Saturation of the batch
+         * @param value      Value of the batch
+         * @param baseSeed   Seed of the batch
+         * @param index      Index of the sprite in the batch
+         */
+        void apply(Specs specs, float hue, float saturation, float value, long baseSeed, long index) {
+            if (this == RANDOM && index > 0) {
+                long seed = SplitMix64.seedFor(SplitMix64.seedFor(baseSeed, index), 1);
+                Random colorRandom = new Random(seed);
+                specs.hue = colorRandom.nextFloat();
+                specs.saturation = colorRandom.nextFloat();
+                specs.value = colorRandom.nextFloat();
+            } else {
+                specs.hue = hue;
+                specs.saturation = saturation;
+                specs.value = value;
+            }
+        }
+    }
+
+    private static final int CHARACTERISTICS = Spliterator.ORDERED | Spliterator.SIZED
+            | Spliterator.SUBSIZED | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE;
+
+    /**
+     * The cursor each thread last drew a single sprite with, replaced when the thread draws from
+     * another batch. Shared by every batch, so a pool thread keeps at most one grid however many
+     * batches it has served, rather than one for each batch until the thread dies
+     */
+    private static final ThreadLocal<Cursor> CURSORS = new ThreadLocal<>();
+
+    private final Specs specs;
+    private final long count;
+    private final SeedPolicy seedPolicy;
+    private final ColorPolicy colorPolicy;
+
+    /**
+     * A batch whose color policy follows {@link Specs#randomColor}, with derived seeds, giving the
+     * same sprites as {@link SpriteGrid#draw(long)}
+     *
+     * @param specs Specs of the batch, copied
+     * @param count Number of sprites
+     */
+    public SpriteBatch(Specs specs, long count) {
+        this(specs, count, SeedPolicy.DERIVED, specs.randomColor ? ColorPolicy.RANDOM : ColorPolicy.FIXED);
+    }
+
+    /**
+     * @param specs       Specs of the batch, copied
+     * @param count       Number of sprites
+     * @param seedPolicy  How each sprite's seed is chosen
+     * @param colorPolicy How each sprite's color is chosen
+     */
+    public SpriteBatch(Specs specs, long count, SeedPolicy seedPolicy, ColorPolicy colorPolicy) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Sprite count must not be negative, got " + count);
+        }
+        this.specs = specs.copy();
+        this.count = count;
+        this.seedPolicy = seedPolicy;
+        this.colorPolicy = colorPolicy;
+    }
+
+    /**
+     * @return Number of pixels in each sprite
+     */
+    int pixelCount() {
+        return specs.targetWidth * specs.targetHeight;
+    }
+
+    /**
+     * @return Number of sprites in the batch
+     */
+    public long size() {
+        return count;
+    }
+
+    /**
+     * Generate one sprite on the calling thread, with a grid kept for that thread until it draws
+     * from another batch
+     *
+     * @param index Index in the batch
+     * @return The sprite
+     */
+    public Sprite get(long index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index " + index + " of a batch of " + count);
+        }
+        return cursor().draw(index);
+    }
+
+    /**
+     * Generate one sprite on the calling thread into a pooled array, as {@link #get(long)} does
+     *
+     * @param index Index in the batch
+     * @param pool  Pool to take the pixel array from, and that the sprite returns it to
+     * @return The sprite
+     */
+    Sprite get(long index, PixelPool pool) {
+        return cursor().draw(index, pool);
+    }
+
+    /**
+     * @return The calling thread's cursor for this batch
+     */
+    private Cursor cursor() {
+        Cursor cursor = CURSORS.get();
+        if (cursor == null || cursor.batch != this) {
+            cursor = new Cursor();
+            CURSORS.set(cursor);
+        }
+        return cursor;
+    }
+
+    /**
+     * @return A spliterator over every sprite, generating each only when it is reached
+     */
+    public Spliterator<Sprite> spliterator() {
+        return new Range(0, count);
+    }
+
+    /**
+     * @return A sequential stream of every sprite in order, generated as consumed
+     */
+    public Stream<Sprite> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * @return A parallel stream of every sprite, split into ranges that each draw with their own
+     * grid
+     */
+    public Stream<Sprite> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Iterate over every sprite in order while generating the next ones in the background, with a
+     * bounded number generated but not yet consumed. Abandoning the iterator leaves at most
+     * {@code depth} sprites to finish unused
+     *
+     * @param executor Executor to generate on
+     * @param depth    Most sprites in flight, at least 1
+     * @return An iterator over the batch
+     */
+    public Iterator<Sprite> prefetch(Executor executor, int depth) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("Prefetch depth must be positive, got " + depth);
+        }
+        return new Prefetcher(executor, depth);
+    }
+
+    /**
+     * @param executor Executor to generate on
+     * @param depth    Most sprites in flight, at least 1
+     * @return A sequential stream over {@link #prefetch(Executor, int)}
+     */
+    public Stream<Sprite> prefetchStream(Executor executor, int depth) {
+        Iterator<Sprite> iterator = prefetch(executor, depth);
+        return StreamSupport.stream(Spliterators.spliterator(iterator, count, CHARACTERISTICS & ~Spliterator.SUBSIZED), false);
+    }
+
+    /**
+     * Specs and grid to draw sprites of this batch with, on one thread at a time
+     */
+    private final class Cursor {
+
+        private final SpriteBatch batch = SpriteBatch.this;
+        private final Specs cursorSpecs = specs.copy();
+        private final SpriteGrid grid = new SpriteGrid(cursorSpecs);
+
+        private Sprite draw(long index) {
+            long seed = seek(index);
+            return new Sprite(index, seed, cursorSpecs, grid.draw(), null);
+        }
+
+        private Sprite draw(long index, PixelPool pool) {
+            long seed = seek(index);
+            int[] pixels = pool.take();
+            grid.draw(pixels);
+            return new Sprite(index, seed, cursorSpecs, pixels, pool);
+        }
+
+        /**
+         * @param index Index in the batch
+         * @return Seed of that sprite, which the next draw produces
+         */
+        private long seek(long index) {
+            long seed = seedPolicy.seed(specs.seed, index);
+            colorPolicy.apply(cursorSpecs, specs.hue, specs.saturation, specs.value, specs.seed, index);
+            grid.reseed(seed);
+            return seed;
+        }
+    }
+
+    /**
+     * The sprites of a range of indices, which creates its grid when first advanced, so each split
+     * draws with its own
+     */
+    private final class Range implements Spliterator<Sprite> {
+
+        private long from;
+        private final long to;
+        private Cursor cursor;
+
+        private Range(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        private Cursor cursor() {
+            if (cursor == null) {
+                cursor = new Cursor();
+            }
+            return cursor;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Sprite> action) {
+            if (from >= to) {
+                return false;
+            }
+            action.accept(cursor().draw(from++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Sprite> action) {
+            Cursor drawer = cursor();
+            while (from < to) {
+                action.accept(drawer.draw(from++));
+            }
+        }
+
+        @Override
+        public Spliterator<Sprite> trySplit() {
+            if (to - from < 2) {
+                return null;
+            }
+            long mid = from + (to - from) / 2;
+            Range prefix = new Range(from, mid);
+            from = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return CHARACTERISTICS;
+        }
+    }
+
+    /**
+     * Consumes sprites in order while the executor generates those after them
+     */
+    private final class Prefetcher implements Iterator<Sprite> {
+
+        private final Executor executor;
+        private final int depth;
+        private final Deque<CompletableFuture<Sprite>> pending = new ArrayDeque<>();
+        private long submitted;
+
+        private Prefetcher(Executor executor, int depth) {
+            this.executor = executor;
+            this.depth = depth;
+        }
+
+        private void fill() {
+            while (submitted < count && pending.size() < depth) {
+                long index = submitted++;
+                pending.add(CompletableFuture.supplyAsync(() -> get(index), executor));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !pending.isEmpty() || submitted < count;
+        }
+
+        @Override
+        public Sprite next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            fill();
+            CompletableFuture<Sprite> head = pending.remove();
+            try {
+                return head.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+
+}
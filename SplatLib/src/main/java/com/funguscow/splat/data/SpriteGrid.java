@@ -1,22 +1,65 @@
 package com.funguscow.splat.data;
 
 import com.funguscow.splat.Utils;
+import com.funguscow.splat.jfr.CellularAutomatonEvent;
+import com.funguscow.splat.jfr.ColorizeEvent;
+import com.funguscow.splat.jfr.DrawStageEvent;
+import com.funguscow.splat.jfr.FillEvent;
+import com.funguscow.splat.jfr.MirrorEvent;
+import com.funguscow.splat.random.RandomSource;
+import com.funguscow.splat.random.SplitMix64;
 import com.funguscow.splat.scale.ImageScaler;
+import com.funguscow.splat.scale.ScaleChain;
+import com.funguscow.splat.stats.DrawListener;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
-import java.util.Random;
+import java.nio.IntBuffer;
+import java.util.Arrays;
 
 /**
  * A grid that acts as the intermediate for sprite generation
+ * <p>
+ * Cells are colored with indices into a palette whose entry 0 is transparent, and which holds
+ * each distinct color once. Sprites can be drawn as ARGB pixels, or as palette indices with
+ * {@link #drawIndexed(byte[])} and {@link #getPalette()}
+ * <p>
+ * The specs a grid is created with also define a batch of sprites, which can be generated in any
+ * order with {@link #draw(long)} or {@link #seek(long)}. Sprite {@code i} of the batch depends only
+ * on those specs and {@code i}
  */
 public class SpriteGrid {
 
-    private int[] grid;
+    // Flags of a colorized cell, below its color index
+    private static final int COLORED = 2, WAS_FILLED = 1;
+    private static final int FLAG_BITS = 2;
+
+    private final int[] grid;
     private final int width, height;
     private final Specs specs;
-    private final Random random;
-    private int[] palette;
+    private RandomSource random;
+    private RandomSource.Kind randomKind;
+    private final CellularAutomaton automaton;
+    private final IntQueue frontier;
+    // Seed and colors of the batch that seek indexes into
+    private long batchSeed;
+    private float batchHue, batchSaturation, batchValue;
+    // Generated colors, the index of each in colors, and the distinct colors by index
+    private int[] palette, paletteIndex, colors;
+    private int colorCount;
+    // Cells narrowed to bytes for drawIndexed
+    private byte[] cellIndices;
+    // Rolls against the density of each cell for fillCells
+    private float[] rolls;
+    private DensityMap densityMap;
+    private final ScaleChain chain = new ScaleChain();
+    private ImageScaler scaler;
+    private String scalerName;
+    // The whole image for drawInto
+    private int[] result;
+    private DrawListener listener;
+    // Whether the cells hold a generated image that has not been finished
+    private boolean generated;
+    // Block brightness for perceptualHash
+    private final int[] hashBlocks = new int[64];
 
     private boolean mirrorX, mirrorY, mirrorP, mirrorN;
 
@@ -31,7 +74,41 @@ public class SpriteGrid {
             throw new IllegalArgumentException("Invalid dimensions" + width + " x " + height);
         }
         grid = new int[height * width];
-        random = new Random(specs.seed);
+        automaton = new CellularAutomaton(width, height);
+        frontier = new IntQueue(specs.seeds + grid.length);
+        rebatch();
+    }
+
+    /**
+     * @param listener Listener to report the stages of each sprite to, or {@code null} to not
+     *                 time them
+     */
+    public void setListener(DrawListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return Listener the stages of each sprite are reported to, or {@code null}
+     */
+    public DrawListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Make the current specs the batch that {@link #seek(long)} indexes into, as if this grid had
+     * just been created with them. Lets a grid be reused for other specs of the same width and
+     * height, which must not change
+     */
+    public void rebatch() {
+        if (specs.width != width || specs.height != height) {
+            throw new IllegalArgumentException("Grid is " + width + " x " + height + ", specs are "
+                    + specs.width + " x " + specs.height);
+        }
+        batchSeed = specs.seed;
+        batchHue = specs.hue;
+        batchSaturation = specs.saturation;
+        batchValue = specs.value;
+        seedRandom(specs.seed);
     }
 
     /**
@@ -40,45 +117,353 @@ public class SpriteGrid {
      */
     public void reseed(long seed) {
         specs.seed = seed;
-        random.setSeed(seed);
+        seedRandom(seed);
+    }
+
+    /**
+     * Reseed the random, replacing it if the specs now name another kind
+     *
+     * @param seed Seed for this grid's random
+     */
+    private void seedRandom(long seed) {
+        if (random == null || randomKind != specs.randomKind) {
+            random = specs.randomKind.create(seed);
+            randomKind = specs.randomKind;
+        } else {
+            random.setSeed(seed);
+        }
+    }
+
+    /**
+     * Set up the seed, and the colors if {@link Specs#randomColor} is set, of one sprite of the
+     * batch, so that the next draw produces it. Takes constant time whatever the index
+     *
+     * @param index Index of the sprite in the batch. Sprite 0 uses the seed and colors of the specs
+     *              this grid was created with
+     */
+    public void seek(long index) {
+        long seed = SpriteBatch.SeedPolicy.DERIVED.seed(batchSeed, index);
+        SpriteBatch.ColorPolicy policy = specs.randomColor ? SpriteBatch.ColorPolicy.RANDOM : SpriteBatch.ColorPolicy.FIXED;
+        policy.apply(specs, batchHue, batchSaturation, batchValue, batchSeed, index);
+        reseed(seed);
+    }
+
+    /**
+     * Generate one sprite of the batch
+     *
+     * @param index Index of the sprite in the batch
+     * @return A new array of {@code targetWidth} x {@code targetHeight} ARGB pixels
+     */
+    public int[] draw(long index) {
+        seek(index);
+        return draw();
     }
 
     /**
      * Generate the image and write them to an integer array
+     *
+     * @return A new array of {@code targetWidth} x {@code targetHeight} ARGB pixels
      */
     public int[] draw() {
-        mirrorX = random.nextFloat() < specs.xMirror;
-        mirrorY = random.nextFloat() < specs.yMirror;
-        mirrorP = random.nextFloat() < specs.pMirror;
-        mirrorN = random.nextFloat() < specs.nMirror;
+        int[] out = new int[specs.targetWidth * specs.targetHeight];
+        draw(out);
+        return out;
+    }
+
+    /**
+     * Generate the image into an existing array. Once the scratch buffers of this grid have grown
+     * to fit the specs, this does not allocate
+     *
+     * @param out Array of at least {@code targetWidth} x {@code targetHeight} pixels to write the
+     *            ARGB image to
+     */
+    public void draw(int[] out) {
+        checkOutput(out.length);
+        generate();
+        finish(out);
+    }
+
+    /**
+     * Scale the generated image into an existing array, finishing a sprite started by
+     * {@link #generate()}
+     *
+     * @param out Array of at least {@code targetWidth} x {@code targetHeight} pixels to write the
+     *            ARGB image to
+     * @throws IllegalStateException If no image has been generated since the last one was finished
+     */
+    public void finish(int[] out) {
+        checkOutput(out.length);
+        checkGenerated();
+        long time = listener == null ? 0 : System.nanoTime();
+        toArgb();
+        scale(out);
+        if (listener != null) {
+            lap(DrawListener.Stage.SCALE, time);
+        }
+    }
+
+    /**
+     * Generate the image as palette indices
+     *
+     * @return A new array of {@code targetWidth} x {@code targetHeight} indices into
+     * {@link #getPalette()}
+     */
+    public byte[] drawIndexed() {
+        byte[] out = new byte[specs.targetWidth * specs.targetHeight];
+        drawIndexed(out);
+        return out;
+    }
+
+    /**
+     * Generate the image as palette indices into an existing array. Moves a quarter of the bytes
+     * through the scalers that {@link #draw(int[])} does, and gives the same image once looked up
+     * in the palette. Always scales through materialized steps, ignoring {@link Specs#fusedScale}
+     *
+     * @param out Array of at least {@code targetWidth} x {@code targetHeight} bytes to write the
+     *            indices to, to be read as unsigned
+     * @throws IllegalArgumentException If the palette has more than 256 entries
+     */
+    public void drawIndexed(byte[] out) {
+        checkOutput(out.length);
+        generate();
+        finishIndexed(out);
+    }
+
+    /**
+     * Scale the generated image as palette indices into an existing array, finishing a sprite
+     * started by {@link #generate()}
+     *
+     * @param out Array of at least {@code targetWidth} x {@code targetHeight} bytes to write the
+     *            indices to, to be read as unsigned
+     * @throws IllegalArgumentException If the palette has more than 256 entries
+     * @throws IllegalStateException    If no image has been generated since the last one was
+     *                                  finished
+     */
+    public void finishIndexed(byte[] out) {
+        checkOutput(out.length);
+        checkGenerated();
+        long time = listener == null ? 0 : System.nanoTime();
+        if (colorCount > 256) {
+            throw new IllegalArgumentException("Palette has " + colorCount + " entries, at most 256 can be indexed");
+        }
+        if (cellIndices == null) {
+            cellIndices = new byte[grid.length];
+        }
+        for (int i = 0; i < grid.length; i++) {
+            cellIndices[i] = (byte) grid[i];
+        }
+        chain.scale(getScaler(), cellIndices, width, height, out, specs.targetWidth, specs.targetHeight);
+        if (listener != null) {
+            lap(DrawListener.Stage.SCALE, time);
+        }
+    }
+
+    /**
+     * @return A copy of the palette of the last drawn image, as ARGB colors. Entry 0 is
+     * transparent
+     */
+    public int[] getPalette() {
+        return Arrays.copyOf(colors, colorCount);
+    }
+
+    /**
+     * @return Number of entries in the palette of the last drawn image
+     */
+    public int getPaletteSize() {
+        return colorCount;
+    }
+
+    /**
+     * @param length Length of an output array
+     */
+    private void checkOutput(int length) {
+        if (length < specs.targetWidth * specs.targetHeight) {
+            throw new IllegalArgumentException("Output holds " + length + " pixels, need "
+                    + specs.targetWidth + " x " + specs.targetHeight);
+        }
+    }
+
+    /**
+     * Mark the generated image as used up by finishing it
+     */
+    private void checkGenerated() {
+        if (!generated) {
+            throw new IllegalStateException("No image has been generated to finish");
+        }
+        generated = false;
+    }
+
+    /**
+     * Run every stage up to scaling, leaving a palette index in each cell. The image can then be
+     * inspected, e.g. by {@link #cellHash()}, before it is finished by {@link #finish(int[])} or
+     * {@link #finishIndexed(byte[])}, or abandoned for the next one
+     */
+    public void generate() {
+        generated = true;
+        if (listener == null) {
+            chooseMirrors();
+            populatePalette();
+            fillCells();
+            simulateCA();
+            colorize();
+            mirror();
+            return;
+        }
+        long time = System.nanoTime();
+        chooseMirrors();
         populatePalette();
+        time = lap(DrawListener.Stage.PALETTE, time);
         fillCells();
+        time = lap(DrawListener.Stage.FILL, time);
         simulateCA();
+        time = lap(DrawListener.Stage.CA, time);
         colorize();
+        time = lap(DrawListener.Stage.COLORIZE, time);
         mirror();
-        int[] inGrid = grid;
-        int w = width, h = height;
-        ImageScaler scaler = ImageScaler.getScalers().get(specs.scaleName).get();
-        while (w * scaler.ratio <= specs.targetWidth || h * scaler.ratio <= specs.targetHeight) {
-            inGrid = scaler.scale(inGrid, w, h);
-            w *= scaler.ratio;
-            h *= scaler.ratio;
+        lap(DrawListener.Stage.MIRROR, time);
+    }
+
+    /**
+     * Report a stage to the listener, which must be set
+     *
+     * @param stage Stage that finished
+     * @param start When it started
+     * @return Now, when the next stage starts
+     */
+    private long lap(DrawListener.Stage stage, long start) {
+        long now = System.nanoTime();
+        listener.stage(stage, now - start);
+        return now;
+    }
+
+    /**
+     * Hash of the generated image before scaling, by the color of each cell, so two images hash
+     * alike exactly when they look alike, whatever their palette order
+     *
+     * @return 64-bit hash of the image
+     * @throws IllegalStateException If no image has been generated since the last one was finished
+     */
+    public long cellHash() {
+        if (!generated) {
+            throw new IllegalStateException("No image has been generated to hash");
+        }
+        long hash = ((long) width << 32 | height) * SplitMix64.GOLDEN_GAMMA;
+        for (int cell : grid) {
+            // FNV-1a over whole colors, with a strong finish
+            hash = (hash ^ colors[cell]) * 0x100000001b3L;
+        }
+        return SplitMix64.mix(hash);
+    }
+
+    /**
+     * Average hash of the generated image before scaling, which changes in few bits when the image
+     * changes a little. The image is sampled on an 8 x 8 grid of blocks, each bit set if its block
+     * is brighter than average, with transparent cells darkest of all
+     *
+     * @return 64-bit perceptual hash of the image, to compare by Hamming distance
+     * @throws IllegalStateException If no image has been generated since the last one was finished
+     */
+    public long perceptualHash() {
+        if (!generated) {
+            throw new IllegalStateException("No image has been generated to hash");
+        }
+        int[] blocks = hashBlocks;
+        long total = 0;
+        for (int by = 0; by < 8; by++) {
+            int y0 = by * height / 8, y1 = Math.max(y0 + 1, (by + 1) * height / 8);
+            for (int bx = 0; bx < 8; bx++) {
+                int x0 = bx * width / 8, x1 = Math.max(x0 + 1, (bx + 1) * width / 8);
+                int sum = 0;
+                for (int y = y0; y < y1; y++) {
+                    for (int x = x0; x < x1; x++) {
+                        int cell = grid[y * width + x];
+                        sum += cell == 0 ? 0 : 1 + Utils.luma(colors[cell]);
+                    }
+                }
+                int mean = sum / ((y1 - y0) * (x1 - x0));
+                blocks[by * 8 + bx] = mean;
+                total += mean;
+            }
         }
-        if (w != specs.targetWidth || h != specs.targetHeight) {
-            inGrid = ImageScaler.scaleNearestNeighbor(inGrid,
-                    w,
-                    h,
-                    specs.targetWidth,
-                    specs.targetHeight);
+        long hash = 0;
+        for (int i = 0; i < 64; i++) {
+            if ((long) blocks[i] * 64 > total) {
+                hash |= 1L << i;
+            }
         }
-        return inGrid;
+        return hash;
+    }
+
+    /**
+     * Replace the palette index in each cell by its color
+     */
+    void toArgb() {
+        for (int i = 0; i < grid.length; i++) {
+            grid[i] = colors[grid[i]];
+        }
+    }
+
+    /**
+     * Generate the image and put it into a buffer at its current position, advancing it by
+     * {@code targetWidth} x {@code targetHeight}
+     *
+     * @param out Buffer to write ARGB pixels to
+     */
+    public void drawInto(IntBuffer out) {
+        int size = specs.targetWidth * specs.targetHeight;
+        if (result == null || result.length < size) {
+            result = new int[size];
+        }
+        draw(result);
+        out.put(result, 0, size);
+    }
+
+    /**
+     * Scale the finished grid to the target size
+     *
+     * @param out Array to write the final image to
+     */
+    private void scale(int[] out) {
+        if (specs.fusedScale) {
+            chain.scaleFused(getScaler(), grid, width, height, out, specs.targetWidth, specs.targetHeight);
+        } else {
+            chain.scale(getScaler(), grid, width, height, out, specs.targetWidth, specs.targetHeight);
+        }
+    }
+
+    /**
+     * @return The shared scaler named by the specs, looked up only when the name changes
+     */
+    private ImageScaler getScaler() {
+        if (scaler == null || !specs.scaleName.equals(scalerName)) {
+            scaler = ImageScaler.forName(specs.scaleName);
+            if (scaler == null) {
+                throw new IllegalArgumentException("Unknown scaler " + specs.scaleName);
+            }
+            scalerName = specs.scaleName;
+        }
+        return scaler;
+    }
+
+    /**
+     * Roll which axes and diagonals this sprite will be mirrored on
+     */
+    void chooseMirrors() {
+        mirrorX = random.nextFloat() < specs.xMirror;
+        mirrorY = random.nextFloat() < specs.yMirror;
+        mirrorP = random.nextFloat() < specs.pMirror;
+        mirrorN = random.nextFloat() < specs.nMirror;
     }
 
     /**
      * Create/populate the image palette with colors
      */
-    private void populatePalette() {
-        palette = new int[specs.colors];
+    void populatePalette() {
+        if (palette == null || palette.length != specs.colors) {
+            palette = new int[specs.colors];
+            paletteIndex = new int[specs.colors];
+            colors = new int[specs.colors + 1];
+        }
         palette[0] = Utils.HSV_to_ARGB(specs.hue, specs.saturation, specs.value);
         for (int i = 1; i < palette.length; i++) {
             float h = (float) random.nextGaussian() * specs.hue_sigma + specs.hue;
@@ -89,79 +474,108 @@ public class SpriteGrid {
             // No need to clamp h as it wraps around anyway
             palette[i] = Utils.HSV_to_ARGB(h, s, v);
         }
+        // Colors that come out equal must share an index, so scalers compare indices as they
+        // would compare colors
+        colors[0] = 0;
+        colorCount = 1;
+        for (int i = 0; i < palette.length; i++) {
+            int color = 0xff000000 | palette[i];
+            int index = 1;
+            while (index < colorCount && colors[index] != color) {
+                index++;
+            }
+            if (index == colorCount) {
+                colors[colorCount++] = color;
+            }
+            paletteIndex[i] = index;
+        }
     }
 
     /**
      * Randomly mark cells as empty/filled
      */
-    private void fillCells() {
-        for (int y = 0; y < height; y++) {
-            float yDist = 1 - Math.abs((height - y * 2f) / height);
-            for (int x = 0; x < width; x++) {
-                float xDist = 1 - Math.abs((width - x * 2f) / width);
-                float dist = yDist * xDist;
-                float param = Utils.bias(Utils.gain(dist, specs.gain), specs.bias);
-                float cutoff = Utils.lerp(specs.minProb, specs.maxProb, param);
-                if (random.nextFloat() <= cutoff) {
-                    grid[y * width + x] = 1;
-                } else {
-                    grid[y * width + x] = 0;
-                }
+    void fillCells() {
+        FillEvent event = new FillEvent();
+        event.begin();
+        float[] cutoffs = specs.densityMask;
+        if (cutoffs == null) {
+            cutoffs = getDensityMap().cutoffs();
+        } else if (cutoffs.length != grid.length) {
+            throw new IllegalArgumentException("Density mask has " + cutoffs.length
+                    + " cells, expected " + width + " x " + height);
+        }
+        if (rolls == null) {
+            rolls = new float[grid.length];
+        }
+        random.fillFloats(rolls, 0, grid.length);
+        for (int i = 0; i < grid.length; i++) {
+            if (rolls[i] <= cutoffs[i]) {
+                grid[i] = 1;
+            } else {
+                grid[i] = 0;
             }
         }
+        if (event.shouldCommit()) {
+            event.densityMask = specs.densityMask != null;
+            commit(event);
+        }
+    }
+
+    /**
+     * @return The radial density map for the current shape parameters of the specs. Ignores
+     * {@link Specs#densityMask}
+     */
+    public DensityMap getDensityMap() {
+        if (densityMap == null || !densityMap.matches(specs)) {
+            densityMap = DensityMap.of(specs);
+        }
+        return densityMap;
     }
 
     /**
      * Despeckle, despur, relax, and devoid
      */
-    private void simulateCA() {
-        int[] temp = new int[width * height];
+    void simulateCA() {
+        if (specs.caGenerations <= 0) {
+            return;
+        }
+        CellularAutomatonEvent event = new CellularAutomatonEvent();
+        event.begin();
+        automaton.load(grid);
         for (int i = 0; i < specs.caGenerations; i++) {
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    int neighbors = -grid[y * width + x]; // Subtract self to only look at neighbors
-                    for (int dx = -1; dx <= 1; dx++) {
-                        for (int dy = -1; dy <= 1; dy++) {
-                            if (x + dx >= 0 && x + dx < width && y + dy >= 0 && y + dy < height) {
-                                neighbors += grid[(y + dy) * width + x + dx];
-                            }
-                        }
-                    }
-                    if (neighbors <= 1 && random.nextFloat() < specs.caProbs[neighbors]) {
-                        temp[y * width + x] = 0;
-                    } else if (neighbors >= 7 &&
-                            random.nextFloat() < specs.caProbs[neighbors - 7 + 2]) {
-                        temp[y * width + x] = 1;
-                    } else {
-                        temp[y * width + x] = grid[y * width + x];
-                    }
-                }
-            }
-            int[] swap = temp;
-            temp = grid;
-            grid = swap;
+            automaton.step(specs.caProbs, random, specs.caMode);
+        }
+        automaton.store(grid);
+        if (event.shouldCommit()) {
+            event.generations = specs.caGenerations;
+            event.mode = specs.caMode.name();
+            commit(event);
         }
     }
 
     /**
-     * Plant random color seeds and propagate with mutation
+     * Plant random color seeds and propagate with mutation. Colored cells hold their palette index
+     * above the {@link #COLORED} and {@link #WAS_FILLED} flags until the end, when only cells that
+     * were filled keep their index and the rest become transparent
      */
-    private void colorize() {
-        Deque<Integer> frontier = new ArrayDeque<>();
+    void colorize() {
+        ColorizeEvent event = new ColorizeEvent();
+        event.begin();
+        // Each cell is colored and enqueued at most once, plus once per seed, and unfinished cells
+        // are only re-added after being removed, so this bounds the frontier
+        frontier.clear();
+        frontier.ensureCapacity(specs.seeds + grid.length);
         for (int i = 0; i < specs.seeds; i++) {
             int index = random.nextInt(width * height);
-            int color = palette[random.nextInt(palette.length)];
+            int color = paletteIndex[random.nextInt(palette.length)];
             int old = grid[index];
-            grid[index] = 0xffffff & color;
-            if (old == 1) {
-                grid[index] |= 0xff000000;
-            } else {
-                grid[index] |= 0x01000000;
-            }
+            grid[index] = (color << FLAG_BITS) | COLORED | (old == 1 ? WAS_FILLED : 0);
             frontier.add(index);
         }
+        long iterations = 0;
         while (!frontier.isEmpty()) {
             int index = frontier.remove();
+            iterations++;
             boolean finished = true;
             int y = index / width, x = index % width;
             for (int dx = -1; dx <= 1; dx++) {
@@ -176,17 +590,16 @@ public class SpriteGrid {
                     if (grid[neighbor] == 0 || grid[neighbor] == 1) {
                         if (random.nextFloat() <= specs.variance) {
                             int old = grid[neighbor];
+                            int color;
                             if (random.nextFloat() <= specs.mutation) {
-                                grid[neighbor] = 0xffffff & palette[random.nextInt(palette.length)];
-                            } else {
-                                random.nextInt(); // Keep state consistent
-                                grid[neighbor] = 0xffffff & grid[index];
-                            }
-                            if (old == 1) {
-                                grid[neighbor] |= 0xff000000;
+                                color = paletteIndex[random.nextInt(palette.length)];
                             } else {
-                                grid[neighbor] |= 0x01000000;
+                                if (randomKind == RandomSource.Kind.LEGACY) {
+                                    random.nextInt(); // Keep state consistent
+                                }
+                                color = grid[index] >>> FLAG_BITS;
                             }
+                            grid[neighbor] = (color << FLAG_BITS) | COLORED | (old == 1 ? WAS_FILLED : 0);
                             frontier.add(neighbor);
                         } else {
                             finished = false;
@@ -198,19 +611,27 @@ public class SpriteGrid {
                 frontier.add(index);
             }
         }
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                if ((grid[y * width + x] >>> 24) != 0xff) {
-                    grid[y * width + x] = 0;
-                }
-            }
+        if (listener != null) {
+            listener.frontier(iterations);
+        }
+        for (int i = 0; i < grid.length; i++) {
+            int cell = grid[i];
+            grid[i] = (cell & (COLORED | WAS_FILLED)) == (COLORED | WAS_FILLED) ? cell >>> FLAG_BITS : 0;
+        }
+        if (event.shouldCommit()) {
+            event.seeds = specs.seeds;
+            event.variance = specs.variance;
+            event.iterations = iterations;
+            commit(event);
         }
     }
 
     /**
      * Mirror on axes and diagonals
      */
-    private void mirror() {
+    void mirror() {
+        MirrorEvent event = new MirrorEvent();
+        event.begin();
         if (mirrorX) {
             for (int y = 0; y < height; y++) {
                 for (int x = 0; x < width / 2; x++) {
@@ -243,6 +664,45 @@ public class SpriteGrid {
                 }
             }
         }
+        if (event.shouldCommit()) {
+            boolean square = specs.width == specs.height;
+            event.mirrors = (mirrorX ? "x" : "") + (mirrorY ? "y" : "")
+                    + (square && mirrorP ? "p" : "") + (square && mirrorN ? "n" : "");
+            commit(event);
+        }
+    }
+
+    /**
+     * Describe the current sprite on a stage event and record it
+     *
+     * @param event Event of a finished stage that JFR wants
+     */
+    private void commit(DrawStageEvent event) {
+        event.gridWidth = width;
+        event.gridHeight = height;
+        event.targetWidth = specs.targetWidth;
+        event.targetHeight = specs.targetHeight;
+        event.scaler = specs.scaleName;
+        event.seed = specs.seed;
+        event.commit();
+    }
+
+    /**
+     * Visible for benchmarking individual stages
+     *
+     * @return The backing cell array of this grid
+     */
+    int[] cells() {
+        return grid;
+    }
+
+    /**
+     * Visible for benchmarking individual stages
+     *
+     * @param cells Cell states to copy into this grid
+     */
+    void loadCells(int[] cells) {
+        System.arraycopy(cells, 0, grid, 0, grid.length);
     }
 
 }
@@ -0,0 +1,199 @@
+package com.funguscow.splat.data;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes a range of the sprites of a {@link SpriteBatch}, in order, at the pace its subscribers
+ * request them
+ * <p>
+ * Each subscription renders on the executor only sprites that have been requested and not yet
+ * delivered, and at most a fixed number at a time, so however far generation could run ahead of a
+ * slow subscriber, it never does. Sprites borrow their pixel arrays from a pool shared by every
+ * subscription, and subscribers that {@link Sprite#release() release} each sprite once done with it
+ * keep the publisher from allocating once warmed up
+ */
+public class SpritePublisher implements Flow.Publisher<Sprite> {
+
+    private final SpriteBatch batch;
+    private final long from, to;
+    private final Executor executor;
+    private final int maxInFlight;
+    private final PixelPool pool;
+
+    /**
+     * Publish a whole batch
+     *
+     * @param batch       Batch to publish
+     * @param executor    Executor to render on
+     * @param maxInFlight Most sprites each subscription renders at once, at least 1
+     */
+    public SpritePublisher(SpriteBatch batch, Executor executor, int maxInFlight) {
+        this(batch, 0, batch.size(), executor, maxInFlight);
+    }
+
+    /**
+     * @param batch       Batch to publish from
+     * @param from        First index to publish
+     * @param to          Index after the last to publish
+     * @param executor    Executor to render on
+     * @param maxInFlight Most sprites each subscription renders at once, at least 1
+     */
+    public SpritePublisher(SpriteBatch batch, long from, long to, Executor executor, int maxInFlight) {
+        if (from < 0 || to > batch.size() || from > to) {
+            throw new IllegalArgumentException("Range [" + from + ", " + to + ") is not in a batch of " + batch.size());
+        }
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Sprites in flight must be positive, got " + maxInFlight);
+        }
+        this.batch = batch;
+        this.from = from;
+        this.to = to;
+        this.executor = Objects.requireNonNull(executor);
+        this.maxInFlight = maxInFlight;
+        // Enough for every subscription in flight at once plus a few being consumed
+        pool = new PixelPool(batch.pixelCount(), 4 * maxInFlight);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Sprite> subscriber) {
+        Objects.requireNonNull(subscriber);
+        Subscription subscription = new Subscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscription.drain();
+    }
+
+    /**
+     * @return Number of pixel arrays waiting to be reused
+     */
+    int idleBuffers() {
+        return pool.idle();
+    }
+
+    /**
+     * One subscriber's progress through the range. Every signal to the subscriber is made from
+     * {@link #drain()}, which only one thread runs at a time
+     */
+    private final class Subscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super Sprite> subscriber;
+        // Requested but not yet delivered
+        private final AtomicLong demand = new AtomicLong();
+        // Calls to drain that have not been handled yet
+        private final AtomicInteger work = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable badRequest;
+
+        // Only touched by the thread running drain
+        private final ArrayDeque<CompletableFuture<Sprite>> rendering = new ArrayDeque<>();
+        private long next = from;
+        private boolean done;
+
+        private Subscription(Flow.Subscriber<? super Sprite> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                badRequest = new IllegalArgumentException("Must request a positive number of sprites, got " + n);
+            } else {
+                demand.getAndAccumulate(n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        /**
+         * Deliver finished sprites the subscriber has asked for, start rendering more, and signal
+         * completion or failure. Safe to call from any thread at any time
+         */
+        private void drain() {
+            if (work.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (!done) {
+                    step();
+                }
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void step() {
+            if (cancelled) {
+                finish();
+                return;
+            }
+            if (badRequest != null) {
+                finish();
+                subscriber.onError(badRequest);
+                return;
+            }
+            long delivered = 0;
+            long wanted = demand.get();
+            while (delivered < wanted && !rendering.isEmpty() && rendering.peek().isDone()) {
+                Sprite sprite;
+                try {
+                    sprite = rendering.poll().join();
+                } catch (CompletionException e) {
+                    finish();
+                    subscriber.onError(e.getCause() != null ? e.getCause() : e);
+                    return;
+                }
+                delivered++;
+                subscriber.onNext(sprite);
+                if (cancelled) {
+                    demand.addAndGet(-delivered);
+                    finish();
+                    return;
+                }
+            }
+            if (delivered != 0) {
+                wanted = demand.addAndGet(-delivered);
+            }
+            // Render only what has been asked for and is not already rendering
+            while (next < to && rendering.size() < maxInFlight && rendering.size() < wanted) {
+                long index = next++;
+                CompletableFuture<Sprite> future;
+                try {
+                    future = CompletableFuture.supplyAsync(() -> batch.get(index, pool), executor);
+                } catch (RuntimeException e) {
+                    finish();
+                    subscriber.onError(e);
+                    return;
+                }
+                rendering.add(future);
+                future.whenComplete((sprite, error) -> drain());
+            }
+            if (next >= to && rendering.isEmpty()) {
+                done = true;
+                subscriber.onComplete();
+            }
+        }
+
+        /**
+         * Stop for good, returning the pixels of sprites still rendering once they finish
+         */
+        private void finish() {
+            done = true;
+            for (CompletableFuture<Sprite> future : rendering) {
+                future.thenAccept(Sprite::release);
+            }
+            rendering.clear();
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.funguscow.splat.dedup;
+
+import com.funguscow.splat.random.SplitMix64;
+
+/**
+ * Set of primitive longs by open addressing with linear probing, so each member costs 8 to 16
+ * bytes and no object. Not thread-safe
+ */
+public class LongHashSet {
+
+    private static final int MIN_CAPACITY = 16;
+
+    // 0 marks an empty slot, so 0 itself is tracked separately
+    private long[] slots;
+    private boolean hasZero;
+    private int size;
+
+    public LongHashSet() {
+        slots = new long[MIN_CAPACITY];
+    }
+
+    /**
+     * @param value Value to add
+     * @return {@code true} if it was not already a member
+     */
+    public boolean add(long value) {
+        if (value == 0) {
+            if (hasZero) {
+                return false;
+            }
+            hasZero = true;
+            size++;
+            return true;
+        }
+        int mask = slots.length - 1;
+        for (int i = slot(value, mask); ; i = (i + 1) & mask) {
+            long slot = slots[i];
+            if (slot == value) {
+                return false;
+            }
+            if (slot == 0) {
+                slots[i] = value;
+                if (++size * 2 > slots.length) {
+                    grow();
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param value Value to look for
+     * @return {@code true} if it is a member
+     */
+    public boolean contains(long value) {
+        if (value == 0) {
+            return hasZero;
+        }
+        int mask = slots.length - 1;
+        for (int i = slot(value, mask); ; i = (i + 1) & mask) {
+            long slot = slots[i];
+            if (slot == value) {
+                return true;
+            }
+            if (slot == 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * @return Number of members
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Bytes held by the table
+     */
+    public long memoryBytes() {
+        return (long) slots.length * Long.BYTES;
+    }
+
+    public void clear() {
+        slots = new long[MIN_CAPACITY];
+        hasZero = false;
+        size = 0;
+    }
+
+    private static int slot(long value, int mask) {
+        return (int) SplitMix64.mix(value) & mask;
+    }
+
+    private void grow() {
+        long[] old = slots;
+        slots = new long[old.length * 2];
+        int mask = slots.length - 1;
+        for (long value : old) {
+            if (value != 0) {
+                int i = slot(value, mask);
+                while (slots[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                slots[i] = value;
+            }
+        }
+    }
+
+}
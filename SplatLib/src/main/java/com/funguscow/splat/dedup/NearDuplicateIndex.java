@@ -0,0 +1,164 @@
+package com.funguscow.splat.dedup;
+
+import com.funguscow.splat.random.SplitMix64;
+
+import java.util.Arrays;
+
+/**
+ * Index of 64-bit perceptual hashes that finds whether any member is within a Hamming distance of
+ * a query, by locality-sensitive hashing on bands of bits
+ * <p>
+ * The 64 bits are split into {@code maxDistance + 1} bands. Two hashes that differ in at most
+ * {@code maxDistance} bits cannot differ in every band, so every near member shares some band
+ * exactly with the query, and only members sharing a band are compared. Unlike sampled LSH, this
+ * never misses a near member. Not thread-safe
+ */
+public class NearDuplicateIndex {
+
+    private static final int MIN_BUCKETS = 16;
+
+    private final int maxDistance, bands;
+    private final int[] bandShift, bandBits;
+
+    // Open-addressed table from a band's key to the last entry with that key, -1 if empty
+    private long[] bucketKeys;
+    private int[] bucketHeads;
+    private int buckets;
+    // One entry per member per band: the member's hash, and the previous entry of the same key
+    private long[] entryHashes;
+    private int[] entryNext;
+    private int entries;
+    private int size;
+
+    /**
+     * @param maxDistance Most bits a member may differ from a query in to be found, in [0, 63]
+     */
+    public NearDuplicateIndex(int maxDistance) {
+        if (maxDistance < 0 || maxDistance > 63) {
+            throw new IllegalArgumentException("Distance must be in [0, 63], got " + maxDistance);
+        }
+        this.maxDistance = maxDistance;
+        bands = maxDistance + 1;
+        bandShift = new int[bands];
+        bandBits = new int[bands];
+        for (int band = 0, shift = 0; band < bands; band++) {
+            bandBits[band] = (64 - shift) / (bands - band);
+            bandShift[band] = shift;
+            shift += bandBits[band];
+        }
+        bucketKeys = new long[MIN_BUCKETS];
+        bucketHeads = new int[MIN_BUCKETS];
+        Arrays.fill(bucketHeads, -1);
+        entryHashes = new long[MIN_BUCKETS];
+        entryNext = new int[MIN_BUCKETS];
+    }
+
+    /**
+     * @param hash Hash to look for
+     * @return Whether a member differs from it in at most {@code maxDistance} bits
+     */
+    public boolean containsNear(long hash) {
+        for (int band = 0; band < bands; band++) {
+            int bucket = find(key(hash, band));
+            if (bucket < 0) {
+                continue;
+            }
+            for (int entry = bucketHeads[bucket]; entry >= 0; entry = entryNext[entry]) {
+                if (Long.bitCount(entryHashes[entry] ^ hash) <= maxDistance) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param hash Hash to add, even if a near or equal member exists
+     */
+    public void add(long hash) {
+        if ((buckets + bands) * 2 > bucketKeys.length) {
+            int capacity = bucketKeys.length * 2;
+            while ((buckets + bands) * 2 > capacity) {
+                capacity *= 2;
+            }
+            rehash(capacity);
+        }
+        if (entries + bands > entryHashes.length) {
+            int capacity = Math.max(entryHashes.length * 2, entries + bands);
+            entryHashes = Arrays.copyOf(entryHashes, capacity);
+            entryNext = Arrays.copyOf(entryNext, capacity);
+        }
+        for (int band = 0; band < bands; band++) {
+            long key = key(hash, band);
+            int bucket = find(key);
+            if (bucket < 0) {
+                bucket = -bucket - 1;
+                bucketKeys[bucket] = key;
+                bucketHeads[bucket] = -1;
+                buckets++;
+            }
+            entryHashes[entries] = hash;
+            entryNext[entries] = bucketHeads[bucket];
+            bucketHeads[bucket] = entries++;
+        }
+        size++;
+    }
+
+    /**
+     * @return Number of hashes added
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Bytes held by the table and entries
+     */
+    public long memoryBytes() {
+        return (long) bucketKeys.length * (Long.BYTES + Integer.BYTES)
+                + (long) entryHashes.length * (Long.BYTES + Integer.BYTES);
+    }
+
+    /**
+     * @param hash A hash
+     * @param band Index of a band
+     * @return Key of the bits of {@code hash} in that band, mixed with the band so equal bits in
+     * different bands rarely share a bucket. Keys that collide only cost a comparison
+     */
+    private long key(long hash, int band) {
+        long bits = (hash >>> bandShift[band]) & (bandBits[band] == 64 ? -1L : (1L << bandBits[band]) - 1);
+        return SplitMix64.mix(bits + (band + 1) * SplitMix64.GOLDEN_GAMMA);
+    }
+
+    /**
+     * @param key Key of a band
+     * @return Its bucket, or {@code -slot - 1} for the empty slot it would go in
+     */
+    private int find(long key) {
+        int mask = bucketKeys.length - 1;
+        for (int i = (int) key & mask; ; i = (i + 1) & mask) {
+            if (bucketHeads[i] == -1) {
+                return -i - 1;
+            }
+            if (bucketKeys[i] == key) {
+                return i;
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = bucketKeys;
+        int[] oldHeads = bucketHeads;
+        bucketKeys = new long[capacity];
+        bucketHeads = new int[capacity];
+        Arrays.fill(bucketHeads, -1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldHeads[i] != -1) {
+                int slot = -find(oldKeys[i]) - 1;
+                bucketKeys[slot] = oldKeys[i];
+                bucketHeads[slot] = oldHeads[i];
+            }
+        }
+    }
+
+}
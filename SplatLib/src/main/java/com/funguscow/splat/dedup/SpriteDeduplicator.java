@@ -0,0 +1,107 @@
+package com.funguscow.splat.dedup;
+
+import com.funguscow.splat.data.SpriteGrid;
+
+/**
+ * Rejects sprites that repeat, or nearly repeat, one accepted before, judged on the generated
+ * grid before it is scaled, so duplicates cost neither scaling nor encoding
+ * <p>
+ * Exact repeats are found by {@link SpriteGrid#cellHash()} in a {@link LongHashSet}, and near
+ * repeats by {@link SpriteGrid#perceptualHash()} in a {@link NearDuplicateIndex}. Thread-safe, but
+ * when sprites are checked from many threads at once, which of two duplicates is kept depends on
+ * which is checked first
+ */
+public class SpriteDeduplicator {
+
+    private final int maxDistance;
+    private final LongHashSet exact = new LongHashSet();
+    // Only with a positive distance
+    private final NearDuplicateIndex near;
+    private long seen, exactDuplicates, nearDuplicates;
+
+    /**
+     * @param maxDistance Most bits the perceptual hashes of two sprites may differ in for the
+     *                    later to be rejected, in [0, 63], or 0 to reject only exact repeats
+     */
+    public SpriteDeduplicator(int maxDistance) {
+        if (maxDistance < 0 || maxDistance > 63) {
+            throw new IllegalArgumentException("Distance must be in [0, 63], got " + maxDistance);
+        }
+        this.maxDistance = maxDistance;
+        near = maxDistance > 0 ? new NearDuplicateIndex(maxDistance) : null;
+    }
+
+    /**
+     * Check the sprite a grid has generated but not finished
+     *
+     * @param grid Grid between {@link SpriteGrid#generate()} and finishing
+     * @return {@code true} if the sprite is new and should be kept, and {@code false} if it
+     * duplicates one kept before
+     */
+    public boolean accept(SpriteGrid grid) {
+        return accept(grid.cellHash(), near == null ? 0 : grid.perceptualHash());
+    }
+
+    /**
+     * @param cellHash       Exact hash of a sprite
+     * @param perceptualHash Perceptual hash of the sprite, ignored if only rejecting exact repeats
+     * @return {@code true} if the sprite is new and should be kept, and {@code false} if it
+     * duplicates one kept before
+     */
+    public synchronized boolean accept(long cellHash, long perceptualHash) {
+        seen++;
+        if (exact.contains(cellHash)) {
+            exactDuplicates++;
+            return false;
+        }
+        if (near != null) {
+            if (near.containsNear(perceptualHash)) {
+                nearDuplicates++;
+                return false;
+            }
+            near.add(perceptualHash);
+        }
+        exact.add(cellHash);
+        return true;
+    }
+
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    /**
+     * @return Sprites checked
+     */
+    public synchronized long getSeen() {
+        return seen;
+    }
+
+    /**
+     * @return Sprites rejected as exact repeats
+     */
+    public synchronized long getExactDuplicates() {
+        return exactDuplicates;
+    }
+
+    /**
+     * @return Sprites rejected as near repeats
+     */
+    public synchronized long getNearDuplicates() {
+        return nearDuplicates;
+    }
+
+    /**
+     * @return Fraction of sprites checked that were rejected, or 0 if none were checked
+     */
+    public synchronized double getDuplicateRatio() {
+        return seen == 0 ? 0 : (double) (exactDuplicates + nearDuplicates) / seen;
+    }
+
+    /**
+     * @return Bytes held by the indices
+     */
+    public synchronized long getIndexBytes() {
+        return exact.memoryBytes() + (near == null ? 0 : near.memoryBytes());
+    }
+
+}
@@ -0,0 +1,227 @@
+package com.funguscow.splat.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Lays out many same-sized sprites in a roughly square sheet, and produces the sheet one scanline
+ * at a time
+ * <p>
+ * Sprites are rendered one band, i.e. one row of sprites, at a time, with every sprite of a band
+ * rendered in parallel and the next band rendered while the current one is read. At most two bands
+ * are held at once, however many sprites the sheet has. Sprite {@code i} goes in column
+ * {@code i % columns} and band {@code i / columns}, and cells past the last sprite are transparent
+ */
+public class AtlasWriter {
+
+    /**
+     * Renders sprites by their index in the sheet
+     */
+    public interface Sprites {
+
+        /**
+         * Render one sprite. Called from the threads of the executor, so must be safe to call
+         * concurrently for different indices
+         *
+         * @param index Index of the sprite in the sheet
+         * @param out   Array to write {@code spriteWidth} x {@code spriteHeight} ARGB pixels to
+         * @throws Exception If rendering fails
+         */
+        void draw(int index, int[] out) throws Exception;
+
+    }
+
+    public final int spriteWidth, spriteHeight, count, columns, bands;
+
+    /**
+     * @param spriteWidth  Width in pixels of each sprite
+     * @param spriteHeight Height in pixels of each sprite
+     * @param count        Number of sprites in the sheet
+     */
+    public AtlasWriter(int spriteWidth, int spriteHeight, int count) {
+        if (spriteWidth <= 0 || spriteHeight <= 0) {
+            throw new IllegalArgumentException("Invalid sprite size " + spriteWidth + " x " + spriteHeight);
+        }
+        if (count <= 0) {
+            throw new IllegalArgumentException("Sheet must have at least one sprite, got " + count);
+        }
+        this.spriteWidth = spriteWidth;
+        this.spriteHeight = spriteHeight;
+        this.count = count;
+        columns = columnsFor(count);
+        bands = (count + columns - 1) / columns;
+    }
+
+    /**
+     * @param count Number of sprites
+     * @return Number of columns of a roughly square sheet of that many sprites
+     */
+    public static int columnsFor(int count) {
+        return (int) (Math.sqrt(count) + 0.99);
+    }
+
+    /**
+     * @return Width in pixels of the sheet
+     */
+    public int getWidth() {
+        return spriteWidth * columns;
+    }
+
+    /**
+     * @return Height in pixels of the sheet
+     */
+    public int getHeight() {
+        return spriteHeight * bands;
+    }
+
+    /**
+     * Render the sheet and write it as a PNG
+     *
+     * @param sprites  Renders each sprite
+     * @param executor Executor to render sprites on
+     * @param encoder  Encoder to write with
+     * @param out      Stream to write to, left open
+     * @throws IOException If rendering or writing fails
+     */
+    public void write(Sprites sprites, ExecutorService executor, PngEncoder encoder, OutputStream out)
+            throws IOException {
+        Bands rows = new Bands(sprites, executor);
+        try {
+            encoder.writeArgb(rows, getWidth(), getHeight(), out);
+        } catch (RenderFailure e) {
+            throw new IOException("Failed to render sprite", e.getCause());
+        } finally {
+            rows.cancel();
+        }
+    }
+
+    /**
+     * Start rendering the sheet, to be read one row at a time from the top. The rows throw an
+     * unchecked exception if a sprite fails to render
+     *
+     * @param sprites  Renders each sprite
+     * @param executor Executor to render sprites on
+     * @return Source of the rows of the sheet, which must be read in order
+     */
+    public PngEncoder.Rows rows(Sprites sprites, ExecutorService executor) {
+        return new Bands(sprites, executor);
+    }
+
+    /**
+     * Thrown out of the rows when a sprite fails to render
+     */
+    private static class RenderFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private RenderFailure(Throwable cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * Double-buffered bands of rendered sprites
+     */
+    private class Bands implements PngEncoder.Rows {
+
+        private final Sprites sprites;
+        private final ExecutorService executor;
+        // Sprites and their tasks for even and odd bands
+        private final int[][][] slots = new int[2][columns][spriteWidth * spriteHeight];
+        private final Future<?>[][] tasks = new Future<?>[2][columns];
+        private int band = -1;
+
+        private Bands(Sprites sprites, ExecutorService executor) {
+            this.sprites = sprites;
+            this.executor = executor;
+        }
+
+        @Override
+        public void row(int y, int[] row) {
+            int rowBand = y / spriteHeight;
+            if (rowBand != band) {
+                enter(rowBand);
+            }
+            int[][] sprite = slots[band & 1];
+            int offset = (y - band * spriteHeight) * spriteWidth;
+            for (int c = 0; c < columns; c++) {
+                if (band * columns + c < count) {
+                    System.arraycopy(sprite[c], offset, row, c * spriteWidth, spriteWidth);
+                } else {
+                    Arrays.fill(row, c * spriteWidth, (c + 1) * spriteWidth, 0);
+                }
+            }
+        }
+
+        /**
+         * Wait for a band to finish rendering and start rendering the one after it
+         *
+         * @param next Band to read from next
+         */
+        private void enter(int next) {
+            if (next != band + 1) {
+                throw new IllegalStateException("Rows must be read in order, expected band " + (band + 1)
+                        + ", got " + next);
+            }
+            if (next == 0) {
+                submit(0);
+            }
+            for (Future<?> task : tasks[next & 1]) {
+                if (task == null) {
+                    continue;
+                }
+                try {
+                    task.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RenderFailure(e);
+                } catch (ExecutionException e) {
+                    throw new RenderFailure(e.getCause());
+                }
+            }
+            band = next;
+            if (next + 1 < bands) {
+                submit(next + 1);
+            }
+        }
+
+        /**
+         * Start rendering every sprite of a band into its slots
+         *
+         * @param which Band to render
+         */
+        private void submit(int which) {
+            int[][] sprite = slots[which & 1];
+            Future<?>[] pending = tasks[which & 1];
+            for (int c = 0; c < columns; c++) {
+                int index = which * columns + c;
+                if (index >= count) {
+                    pending[c] = null;
+                    continue;
+                }
+                int[] out = sprite[c];
+                pending[c] = executor.submit(() -> {
+                    sprites.draw(index, out);
+                    return null;
+                });
+            }
+        }
+
+        /**
+         * Stop rendering sprites that will not be read
+         */
+        private void cancel() {
+            for (Future<?>[] pending : tasks) {
+                for (Future<?> task : pending) {
+                    if (task != null) {
+                        task.cancel(false);
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,166 @@
+package com.funguscow.splat.io;
+
+import java.util.Arrays;
+
+/**
+ * Converts ARGB images to palette indices
+ * <p>
+ * Index 0 is always fully transparent, and every pixel that is not fully opaque maps to it. Other
+ * colors are numbered in order of first appearance. Colors are looked up in a small open-addressing
+ * map of primitives, which is reused from image to image, so an instance must not be used by more
+ * than one thread at a time
+ * <p>
+ * Sprites drawn by {@link com.funguscow.splat.data.SpriteGrid#drawIndexed(byte[])} are already
+ * indices and only need {@link #pack}. {@link #palettize} is library API for ARGB images from
+ * anywhere else, such as sprites composited or loaded from disk
+ */
+public class Palettizer {
+
+    /**
+     * Most colors a palette may have, including the transparent entry
+     */
+    public static final int MAX_COLORS = 256;
+
+    private final int maxColors;
+    private final int[] palette;
+    private int size;
+
+    // Open-addressing map from opaque color to index, where an index of 0 marks an empty slot
+    private final int[] keys;
+    private final byte[] values;
+    private final int mask, shift;
+
+    /**
+     * Create a palettizer that allows up to {@link #MAX_COLORS} colors
+     */
+    public Palettizer() {
+        this(MAX_COLORS);
+    }
+
+    /**
+     * @param maxColors Most colors an image may have, including the transparent entry
+     */
+    public Palettizer(int maxColors) {
+        if (maxColors < 1 || maxColors > MAX_COLORS) {
+            throw new IllegalArgumentException("Palette size must be in [1, " + MAX_COLORS + "], got " + maxColors);
+        }
+        this.maxColors = maxColors;
+        palette = new int[maxColors];
+        // At most half full
+        int capacity = Integer.highestOneBit(maxColors) << 2;
+        keys = new int[capacity];
+        values = new byte[capacity];
+        mask = capacity - 1;
+        shift = 32 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    /**
+     * Palettize an image, replacing the palette of the previous one
+     *
+     * @param pixels  ARGB pixels
+     * @param count   Number of pixels to palettize
+     * @param indices Array to write the palette index of each pixel to
+     * @return Number of palette entries used
+     * @throws IllegalArgumentException If the image has more colors than allowed
+     */
+    public int palettize(int[] pixels, int count, byte[] indices) {
+        Arrays.fill(values, (byte) 0);
+        palette[0] = 0;
+        size = 1;
+        // Sprites are made of runs, so most pixels are the same as the previous one, transparent
+        // or not. Starting from 0, which is transparent, keeps that check valid for the first pixel
+        int lastColor = 0;
+        byte lastIndex = 0;
+        for (int i = 0; i < count; i++) {
+            int pixel = pixels[i];
+            if (pixel != lastColor) {
+                lastColor = pixel;
+                lastIndex = (pixel >>> 24) != 0xff ? 0 : lookup(pixel);
+            }
+            indices[i] = lastIndex;
+        }
+        return size;
+    }
+
+    /**
+     * @param color Opaque color
+     * @return Its index, added if it is new
+     */
+    private byte lookup(int color) {
+        int slot = (color * 0x9e3779b9) >>> shift;
+        while (values[slot] != 0) {
+            if (keys[slot] == color) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == maxColors) {
+            throw new IllegalArgumentException("Image has more than " + maxColors + " colors");
+        }
+        byte index = (byte) size;
+        palette[size++] = color;
+        keys[slot] = color;
+        values[slot] = index;
+        return index;
+    }
+
+    /**
+     * @return Number of palette entries used by the last image
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return A copy of the palette of the last image, as ARGB colors
+     */
+    public int[] getPalette() {
+        return Arrays.copyOf(palette, size);
+    }
+
+    /**
+     * Pack one-byte palette indices several to a byte, most significant bits first, with each row
+     * starting on a new byte. This is the layout of PNG scanlines and of AWT's packed rasters
+     *
+     * @param indices Row-major palette indices
+     * @param width   Width in pixels
+     * @param height  Height in pixels
+     * @param depth   Bits per index, 1, 2, 4 or 8
+     * @param out     Array to write at least {@code height} rows of
+     *                ceil({@code width} * {@code depth} / 8) bytes to
+     */
+    public static void pack(byte[] indices, int width, int height, int depth, byte[] out) {
+        if (depth == 8) {
+            System.arraycopy(indices, 0, out, 0, width * height);
+            return;
+        }
+        if (depth != 1 && depth != 2 && depth != 4) {
+            throw new IllegalArgumentException("Bit depth must be 1, 2, 4 or 8, got " + depth);
+        }
+        int perByte = 8 / depth;
+        int stride = (width + perByte - 1) / perByte;
+        int sampleMask = (1 << depth) - 1;
+        for (int y = 0; y < height; y++) {
+            int in = y * width, at = y * stride;
+            int x = 0;
+            for (; x + perByte <= width; x += perByte) {
+                int acc = 0;
+                for (int k = 0; k < perByte; k++) {
+                    acc = (acc << depth) | (indices[in + x + k] & sampleMask);
+                }
+                out[at++] = (byte) acc;
+            }
+            if (x < width) {
+                int acc = 0;
+                for (int k = 0; k < perByte; k++) {
+                    acc <<= depth;
+                    if (x + k < width) {
+                        acc |= indices[in + x + k] & sampleMask;
+                    }
+                }
+                out[at] = (byte) acc;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,578 @@
+package com.funguscow.splat.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes PNG images straight from pixel arrays, without going through AWT
+ * <p>
+ * Images are written either as 8-bit RGBA from ARGB pixels, or as 1, 2, 4 or 8-bit paletted images
+ * from palette indices. Scanlines are filtered and deflated one at a time into fixed-size IDAT
+ * chunks, so no encoded copy of the whole image is held. The {@link Deflater} and all buffers are
+ * reused from image to image, so an instance must not be used by more than one thread at a time.
+ * Call {@link #close()} to release the native deflater once done
+ */
+public class PngEncoder implements AutoCloseable {
+
+    /**
+     * Scanline filter to apply before deflating
+     */
+    public enum Filter {
+        NONE,
+        SUB,
+        UP,
+        AVERAGE,
+        PAETH,
+        /**
+         * Choose the filter per scanline that minimizes the sum of absolute differences
+         */
+        ADAPTIVE
+    }
+
+    /**
+     * Source of one scanline at a time
+     */
+    public interface Rows {
+
+        /**
+         * Fill one row
+         *
+         * @param y   Index of the row
+         * @param row Array to write the row's ARGB pixels or palette indices to, one per pixel
+         */
+        void row(int y, int[] row);
+
+    }
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final int IHDR = 0x49484452;
+    private static final int PLTE = 0x504c5445;
+    private static final int TRNS = 0x74524e53;
+    private static final int IDAT = 0x49444154;
+    private static final int IEND = 0x49454e44;
+
+    // UP first, as scaled sprites repeat most rows, and a row that filters to all zeros ends the search
+    private static final Filter[] CANDIDATES = {Filter.UP, Filter.NONE, Filter.SUB, Filter.AVERAGE, Filter.PAETH};
+
+    private static final int COLOR_INDEXED = 3;
+    private static final int COLOR_RGBA = 6;
+
+    /**
+     * Maximum data length of each IDAT chunk
+     */
+    private static final int IDAT_SIZE = 1 << 15;
+
+    private final Filter filter;
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    // Length, type, data and CRC of the chunk being written
+    private final byte[] chunk = new byte[8 + IDAT_SIZE + 4];
+    private final ByteBuffer chunkBuffer = ByteBuffer.wrap(chunk);
+    private int idatLength;
+
+    // Unfiltered current and previous scanlines, and filtered output with its filter type byte
+    private byte[] current = new byte[0], previous = new byte[0], filtered = new byte[0], trial = new byte[0];
+    private int[] rowPixels = new int[0];
+
+    private OutputStream stream;
+    private WritableByteChannel channel;
+
+    /**
+     * Create an encoder with adaptive filtering and the default deflate level
+     */
+    public PngEncoder() {
+        this(Filter.ADAPTIVE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param filter Scanline filter to apply
+     * @param level  Deflate level from 0 to 9, or {@link Deflater#DEFAULT_COMPRESSION}
+     */
+    public PngEncoder(Filter filter, int level) {
+        if (filter == null) {
+            throw new IllegalArgumentException("Filter must not be null");
+        }
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < 0 || level > 9)) {
+            throw new IllegalArgumentException("Deflate level must be in [0, 9], got " + level);
+        }
+        this.filter = filter;
+        deflater = new Deflater(level);
+    }
+
+    public Filter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Write an RGBA image
+     *
+     * @param pixels Row-major ARGB pixels
+     * @param width  Width in pixels
+     * @param height Height in pixels
+     * @param out    Stream to write to, left open
+     * @throws IOException If writing fails
+     */
+    public void writeArgb(int[] pixels, int width, int height, OutputStream out) throws IOException {
+        checkLength(pixels.length, width, height);
+        begin(out, null);
+        argb(pixels, null, width, height);
+    }
+
+    /**
+     * Write an RGBA image
+     *
+     * @param pixels  Row-major ARGB pixels
+     * @param width   Width in pixels
+     * @param height  Height in pixels
+     * @param channel Channel to write to, left open
+     * @throws IOException If writing fails
+     */
+    public void writeArgb(int[] pixels, int width, int height, WritableByteChannel channel) throws IOException {
+        checkLength(pixels.length, width, height);
+        begin(null, channel);
+        argb(pixels, null, width, height);
+    }
+
+    /**
+     * Write an RGBA image one row at a time
+     *
+     * @param rows   Supplies the ARGB pixels of each row, in order from the top
+     * @param width  Width in pixels
+     * @param height Height in pixels
+     * @param out    Stream to write to, left open
+     * @throws IOException If writing fails
+     */
+    public void writeArgb(Rows rows, int width, int height, OutputStream out) throws IOException {
+        begin(out, null);
+        argb(null, rows, width, height);
+    }
+
+    /**
+     * Write an RGBA image one row at a time
+     *
+     * @param rows    Supplies the ARGB pixels of each row, in order from the top
+     * @param width   Width in pixels
+     * @param height  Height in pixels
+     * @param channel Channel to write to, left open
+     * @throws IOException If writing fails
+     */
+    public void writeArgb(Rows rows, int width, int height, WritableByteChannel channel) throws IOException {
+        begin(null, channel);
+        argb(null, rows, width, height);
+    }
+
+    /**
+     * Write a paletted image, at the smallest bit depth that fits the palette
+     *
+     * @param indices Row-major palette indices, treated as unsigned
+     * @param width   Width in pixels
+     * @param height  Height in pixels
+     * @param palette ARGB colors of up to 256 palette entries
+     * @param out     Stream to write to, left open
+     * @throws IOException If writing fails
+     */
+    public void writeIndexed(byte[] indices, int width, int height, int[] palette, OutputStream out)
+            throws IOException {
+        checkLength(indices.length, width, height);
+        begin(out, null);
+        indexed(indices, null, width, height, palette);
+    }
+
+    /**
+     * Write a paletted image, at the smallest bit depth that fits the palette
+     *
+     * @param indices Row-major palette indices, treated as unsigned
+     * @param width   Width in pixels
+     * @param height  Height in pixels
+     * @param palette ARGB colors of up to 256 palette entries
+     * @param channel Channel to write to, left open
+     * @throws IOException If writing fails
+     */
+    public void writeIndexed(byte[] indices, int width, int height, int[] palette, WritableByteChannel channel)
+            throws IOException {
+        checkLength(indices.length, width, height);
+        begin(null, channel);
+        indexed(indices, null, width, height, palette);
+    }
+
+    /**
+     * Write a paletted image one row at a time, at the smallest bit depth that fits the palette
+     *
+     * @param rows    Supplies the palette indices of each row, in order from the top
+     * @param width   Width in pixels
+     * @param height  Height in pixels
+     * @param palette ARGB colors of up to 256 palette entries
+     * @param out     Stream to write to, left open
+     * @throws IOException If writing fails
+     */
+    public void writeIndexed(Rows rows, int width, int height, int[] palette, OutputStream out) throws IOException {
+        begin(out, null);
+        indexed(null, rows, width, height, palette);
+    }
+
+    /**
+     * Write a paletted image one row at a time, at the smallest bit depth that fits the palette
+     *
+     * @param rows    Supplies the palette indices of each row, in order from the top
+     * @param width   Width in pixels
+     * @param height  Height in pixels
+     * @param palette ARGB colors of up to 256 palette entries
+     * @param channel Channel to write to, left open
+     * @throws IOException If writing fails
+     */
+    public void writeIndexed(Rows rows, int width, int height, int[] palette, WritableByteChannel channel)
+            throws IOException {
+        begin(null, channel);
+        indexed(null, rows, width, height, palette);
+    }
+
+    /**
+     * @param paletteSize Number of palette entries
+     * @return The smallest PNG bit depth that can index that many entries
+     */
+    public static int bitDepth(int paletteSize) {
+        if (paletteSize <= 2) {
+            return 1;
+        }
+        if (paletteSize <= 4) {
+            return 2;
+        }
+        if (paletteSize <= 16) {
+            return 4;
+        }
+        return 8;
+    }
+
+    /**
+     * Release the deflater. The encoder must not be used afterwards
+     */
+    @Override
+    public void close() {
+        deflater.end();
+    }
+
+    private static void checkLength(int length, int width, int height) {
+        if (length < width * height) {
+            throw new IllegalArgumentException("Expected at least " + (width * height) + " pixels, got " + length);
+        }
+    }
+
+    private void begin(OutputStream stream, WritableByteChannel channel) {
+        this.stream = stream;
+        this.channel = channel;
+    }
+
+    private void argb(int[] pixels, Rows rows, int width, int height) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Image must not be empty, got " + width + "x" + height);
+        }
+        int rowBytes = width * 4;
+        header(width, height, 8, COLOR_RGBA);
+        startImage(rowBytes, width);
+        for (int y = 0; y < height; y++) {
+            int[] src = pixels;
+            int offset = y * width;
+            if (rows != null) {
+                rows.row(y, rowPixels);
+                src = rowPixels;
+                offset = 0;
+            }
+            byte[] line = current;
+            for (int x = 0, i = 0; x < width; x++, i += 4) {
+                int pixel = src[offset + x];
+                line[i] = (byte) (pixel >>> 16);
+                line[i + 1] = (byte) (pixel >>> 8);
+                line[i + 2] = (byte) pixel;
+                line[i + 3] = (byte) (pixel >>> 24);
+            }
+            scanline(rowBytes, 4, y == 0);
+        }
+        finishImage();
+    }
+
+    private void indexed(byte[] indices, Rows rows, int width, int height, int[] palette) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Image must not be empty, got " + width + "x" + height);
+        }
+        if (palette.length == 0 || palette.length > 256) {
+            throw new IllegalArgumentException("Palette must have 1 to 256 entries, got " + palette.length);
+        }
+        int depth = bitDepth(palette.length);
+        int perByte = 8 / depth;
+        int rowBytes = (width + perByte - 1) / perByte;
+        header(width, height, depth, COLOR_INDEXED);
+        palette(palette);
+        startImage(rowBytes, width);
+        for (int y = 0; y < height; y++) {
+            byte[] line = current;
+            if (depth == 8 && rows == null) {
+                System.arraycopy(indices, y * width, line, 0, width);
+            } else {
+                if (rows != null) {
+                    rows.row(y, rowPixels);
+                }
+                int offset = y * width;
+                int acc = 0, filled = 0, out = 0;
+                for (int x = 0; x < width; x++) {
+                    int index = rows != null ? rowPixels[x] : indices[offset + x];
+                    acc = (acc << depth) | (index & ((1 << depth) - 1));
+                    if (++filled == perByte) {
+                        line[out++] = (byte) acc;
+                        acc = 0;
+                        filled = 0;
+                    }
+                }
+                if (filled != 0) {
+                    line[out] = (byte) (acc << (depth * (perByte - filled)));
+                }
+            }
+            scanline(rowBytes, 1, y == 0);
+        }
+        finishImage();
+    }
+
+    private void header(int width, int height, int depth, int colorType) throws IOException {
+        write(SIGNATURE, 0, SIGNATURE.length);
+        int at = 8;
+        at = putInt(chunk, at, width);
+        at = putInt(chunk, at, height);
+        chunk[at++] = (byte) depth;
+        chunk[at++] = (byte) colorType;
+        chunk[at++] = 0; // Deflate
+        chunk[at++] = 0; // Adaptive filtering
+        chunk[at++] = 0; // No interlace
+        writeChunk(IHDR, at - 8);
+    }
+
+    /**
+     * Write PLTE, and tRNS if any entry is not opaque
+     *
+     * @param palette ARGB palette
+     */
+    private void palette(int[] palette) throws IOException {
+        int at = 8;
+        int alphas = 0;
+        for (int i = 0; i < palette.length; i++) {
+            int color = palette[i];
+            chunk[at++] = (byte) (color >>> 16);
+            chunk[at++] = (byte) (color >>> 8);
+            chunk[at++] = (byte) color;
+            if ((color >>> 24) != 0xff) {
+                alphas = i + 1;
+            }
+        }
+        writeChunk(PLTE, at - 8);
+        if (alphas > 0) {
+            for (int i = 0; i < alphas; i++) {
+                chunk[8 + i] = (byte) (palette[i] >>> 24);
+            }
+            writeChunk(TRNS, alphas);
+        }
+    }
+
+    /**
+     * Prepare the scanline buffers and deflater for a new image
+     *
+     * @param rowBytes Bytes per unfiltered scanline
+     * @param width    Width in pixels
+     */
+    private void startImage(int rowBytes, int width) {
+        if (current.length < rowBytes) {
+            current = new byte[rowBytes];
+            previous = new byte[rowBytes];
+            filtered = new byte[rowBytes + 1];
+            trial = new byte[rowBytes + 1];
+        }
+        if (rowPixels.length < width) {
+            rowPixels = new int[width];
+        }
+        deflater.reset();
+        idatLength = 0;
+    }
+
+    /**
+     * Filter and deflate the current scanline, then make it the previous one
+     *
+     * @param rowBytes Bytes in the scanline
+     * @param bpp      Bytes per complete pixel, at least 1
+     * @param first    {@code true} for the first scanline, whose previous scanline is all zero
+     */
+    private void scanline(int rowBytes, int bpp, boolean first) throws IOException {
+        if (first) {
+            Arrays.fill(previous, 0, rowBytes, (byte) 0);
+        }
+        if (filter == Filter.ADAPTIVE) {
+            long best = Long.MAX_VALUE;
+            for (Filter candidate : CANDIDATES) {
+                long cost = applyFilter(candidate, trial, rowBytes, bpp);
+                if (cost < best) {
+                    best = cost;
+                    byte[] swap = filtered;
+                    filtered = trial;
+                    trial = swap;
+                    if (cost == 0) {
+                        break;
+                    }
+                }
+            }
+        } else {
+            applyFilter(filter, filtered, rowBytes, bpp);
+        }
+        deflater.setInput(filtered, 0, rowBytes + 1);
+        while (!deflater.needsInput()) {
+            drain();
+        }
+        byte[] swap = previous;
+        previous = current;
+        current = swap;
+    }
+
+    /**
+     * Filter the current scanline
+     *
+     * @param type     Filter to apply, not {@link Filter#ADAPTIVE}
+     * @param out      Array to write the filter type byte and filtered scanline to
+     * @param rowBytes Bytes in the scanline
+     * @param bpp      Bytes per complete pixel
+     * @return Sum of the absolute values of the filtered bytes as signed, a guess at how well the
+     * scanline compresses
+     */
+    private long applyFilter(Filter type, byte[] out, int rowBytes, int bpp) {
+        byte[] cur = current, prev = previous;
+        long cost = 0;
+        out[0] = (byte) type.ordinal();
+        // The first pixel has no left neighbor, so is split out of the main loops
+        int head = Math.min(bpp, rowBytes);
+        switch (type) {
+            case NONE:
+                for (int i = 0; i < rowBytes; i++) {
+                    byte b = cur[i];
+                    out[i + 1] = b;
+                    cost += Math.abs(b);
+                }
+                break;
+            case SUB:
+                for (int i = 0; i < head; i++) {
+                    out[i + 1] = cur[i];
+                    cost += Math.abs(cur[i]);
+                }
+                for (int i = head; i < rowBytes; i++) {
+                    byte b = (byte) (cur[i] - cur[i - bpp]);
+                    out[i + 1] = b;
+                    cost += Math.abs(b);
+                }
+                break;
+            case UP:
+                for (int i = 0; i < rowBytes; i++) {
+                    byte b = (byte) (cur[i] - prev[i]);
+                    out[i + 1] = b;
+                    cost += Math.abs(b);
+                }
+                break;
+            case AVERAGE:
+                for (int i = 0; i < head; i++) {
+                    byte b = (byte) (cur[i] - ((prev[i] & 0xff) >>> 1));
+                    out[i + 1] = b;
+                    cost += Math.abs(b);
+                }
+                for (int i = head; i < rowBytes; i++) {
+                    byte b = (byte) (cur[i] - (((cur[i - bpp] & 0xff) + (prev[i] & 0xff)) >>> 1));
+                    out[i + 1] = b;
+                    cost += Math.abs(b);
+                }
+                break;
+            case PAETH:
+                // With no left or upper-left neighbor, Paeth predicts the upper neighbor
+                for (int i = 0; i < head; i++) {
+                    byte b = (byte) (cur[i] - prev[i]);
+                    out[i + 1] = b;
+                    cost += Math.abs(b);
+                }
+                for (int i = head; i < rowBytes; i++) {
+                    int a = cur[i - bpp] & 0xff;
+                    int b = prev[i] & 0xff;
+                    int c = prev[i - bpp] & 0xff;
+                    int pa = Math.abs(b - c), pb = Math.abs(a - c), pc = Math.abs(a + b - c - c);
+                    int predictor = pa <= pb && pa <= pc ? a : pb <= pc ? b : c;
+                    byte v = (byte) (cur[i] - predictor);
+                    out[i + 1] = v;
+                    cost += Math.abs(v);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Not a single filter: " + type);
+        }
+        return cost;
+    }
+
+    /**
+     * Deflate pending input into the IDAT buffer, writing the chunk out whenever it fills
+     */
+    private void drain() throws IOException {
+        int n = deflater.deflate(chunk, 8 + idatLength, IDAT_SIZE - idatLength);
+        idatLength += n;
+        if (idatLength == IDAT_SIZE) {
+            writeChunk(IDAT, idatLength);
+            idatLength = 0;
+        }
+    }
+
+    private void finishImage() throws IOException {
+        deflater.finish();
+        while (!deflater.finished()) {
+            drain();
+        }
+        if (idatLength > 0) {
+            writeChunk(IDAT, idatLength);
+            idatLength = 0;
+        }
+        writeChunk(IEND, 0);
+        if (stream != null) {
+            stream.flush();
+        }
+        stream = null;
+        channel = null;
+    }
+
+    /**
+     * Write the chunk whose data is already in {@link #chunk} from offset 8
+     *
+     * @param type   Chunk type
+     * @param length Length of the data
+     */
+    private void writeChunk(int type, int length) throws IOException {
+        putInt(chunk, 0, length);
+        putInt(chunk, 4, type);
+        crc.reset();
+        crc.update(chunk, 4, length + 4);
+        putInt(chunk, 8 + length, (int) crc.getValue());
+        write(chunk, 0, length + 12);
+    }
+
+    private void write(byte[] bytes, int offset, int length) throws IOException {
+        if (stream != null) {
+            stream.write(bytes, offset, length);
+            return;
+        }
+        ByteBuffer buffer = bytes == chunk ? chunkBuffer : ByteBuffer.wrap(bytes);
+        buffer.limit(offset + length);
+        buffer.position(offset);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static int putInt(byte[] bytes, int at, int value) {
+        bytes[at] = (byte) (value >>> 24);
+        bytes[at + 1] = (byte) (value >>> 16);
+        bytes[at + 2] = (byte) (value >>> 8);
+        bytes[at + 3] = (byte) value;
+        return at + 4;
+    }
+
+}
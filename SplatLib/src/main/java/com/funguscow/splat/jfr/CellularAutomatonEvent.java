@@ -0,0 +1,18 @@
+package com.funguscow.splat.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.funguscow.splat.CellularAutomaton")
+@Label("Cellular Automaton")
+@Description("Every generation of the despeckle/despur/relax/devoid automaton over a grid")
+public class CellularAutomatonEvent extends DrawStageEvent {
+
+    @Label("Generations")
+    public int generations;
+
+    @Label("Mode")
+    public String mode;
+
+}
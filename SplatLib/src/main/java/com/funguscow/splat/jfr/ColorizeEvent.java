@@ -0,0 +1,23 @@
+package com.funguscow.splat.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.funguscow.splat.Colorize")
+@Label("Colorize")
+@Description("Planting color seeds and propagating them through a grid")
+public class ColorizeEvent extends DrawStageEvent {
+
+    @Label("Seeds")
+    public int seeds;
+
+    @Label("Variance")
+    @Description("Probability that a color spreads to each neighbor per visit. Low values take many iterations")
+    public float variance;
+
+    @Label("Iterations")
+    @Description("Cells taken from the frontier, including those put back to try again")
+    public long iterations;
+
+}
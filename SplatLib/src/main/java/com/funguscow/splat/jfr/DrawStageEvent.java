@@ -0,0 +1,31 @@
+package com.funguscow.splat.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+
+/**
+ * Base of the events of the stages of {@link com.funguscow.splat.data.SpriteGrid}, which describe
+ * the sprite being drawn
+ */
+@Category({"Splat", "Draw"})
+public abstract class DrawStageEvent extends SplatEvent {
+
+    @Label("Grid Width")
+    public int gridWidth;
+
+    @Label("Grid Height")
+    public int gridHeight;
+
+    @Label("Target Width")
+    public int targetWidth;
+
+    @Label("Target Height")
+    public int targetHeight;
+
+    @Label("Scaler")
+    public String scaler;
+
+    @Label("Seed")
+    public long seed;
+
+}
@@ -0,0 +1,16 @@
+package com.funguscow.splat.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.funguscow.splat.Fill")
+@Label("Fill Cells")
+@Description("Filling the cells of a grid by density")
+public class FillEvent extends DrawStageEvent {
+
+    @Label("Density Mask")
+    @Description("Whether a density mask was given, rather than the radial density map")
+    public boolean densityMask;
+
+}
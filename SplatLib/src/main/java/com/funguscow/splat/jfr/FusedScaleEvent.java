@@ -0,0 +1,32 @@
+package com.funguscow.splat.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.funguscow.splat.FusedScale")
+@Label("Fused Scale")
+@Description("Every pass of a scaler and the final resize, computed one output tile at a time")
+@Category({"Splat", "Scale"})
+public class FusedScaleEvent extends SplatEvent {
+
+    @Label("Scaler")
+    public String scaler;
+
+    @Label("Passes")
+    public int passes;
+
+    @Label("Input Width")
+    public int inputWidth;
+
+    @Label("Input Height")
+    public int inputHeight;
+
+    @Label("Output Width")
+    public int outputWidth;
+
+    @Label("Output Height")
+    public int outputHeight;
+
+}
@@ -0,0 +1,16 @@
+package com.funguscow.splat.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.funguscow.splat.Mirror")
+@Label("Mirror")
+@Description("Mirroring a grid on its axes and diagonals")
+public class MirrorEvent extends DrawStageEvent {
+
+    @Label("Mirrors")
+    @Description("Axes and diagonals mirrored on, of x, y, p, and n")
+    public String mirrors;
+
+}
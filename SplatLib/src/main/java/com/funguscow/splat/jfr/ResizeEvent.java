@@ -0,0 +1,30 @@
+package com.funguscow.splat.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.funguscow.splat.Resize")
+@Label("Resize")
+@Description("Nearest-neighbor resize of the last scaler pass to the exact target size")
+@Category({"Splat", "Scale"})
+public class ResizeEvent extends SplatEvent {
+
+    @Label("Input Width")
+    public int inputWidth;
+
+    @Label("Input Height")
+    public int inputHeight;
+
+    @Label("Output Width")
+    public int outputWidth;
+
+    @Label("Output Height")
+    public int outputHeight;
+
+    @Label("Indexed")
+    @Description("Whether palette indices were resized rather than ARGB pixels")
+    public boolean indexed;
+
+}
@@ -0,0 +1,37 @@
+package com.funguscow.splat.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.funguscow.splat.ScalePass")
+@Label("Scale Pass")
+@Description("One application of a pixel art scaler to a whole image")
+@Category({"Splat", "Scale"})
+public class ScalePassEvent extends SplatEvent {
+
+    @Label("Scaler")
+    public String scaler;
+
+    @Label("Pass")
+    @Description("Index of the pass in its chain, from 0")
+    public int pass;
+
+    @Label("Input Width")
+    public int inputWidth;
+
+    @Label("Input Height")
+    public int inputHeight;
+
+    @Label("Output Width")
+    public int outputWidth;
+
+    @Label("Output Height")
+    public int outputHeight;
+
+    @Label("Indexed")
+    @Description("Whether palette indices were scaled rather than ARGB pixels")
+    public boolean indexed;
+
+}
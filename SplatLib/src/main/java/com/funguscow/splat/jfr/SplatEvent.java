@@ -0,0 +1,20 @@
+package com.funguscow.splat.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Base of the Java Flight Recorder events of sprite generation
+ * <p>
+ * Every event is enabled by default, but only recorded when it takes at least a millisecond and
+ * without a stack trace, so recordings can run under load. Both can be changed per event in a JFR
+ * settings file, e.g. {@code com.funguscow.splat.Colorize#threshold=0 ms}. Events are created and
+ * timed on every call, which costs next to nothing while no recording has them enabled
+ */
+@Category("Splat")
+@StackTrace(false)
+@Threshold("1 ms")
+public abstract class SplatEvent extends Event {
+}
@@ -0,0 +1,84 @@
+package com.funguscow.splat.pack;
+
+import java.nio.ByteOrder;
+
+/**
+ * Layout of a sprite pack, a single file holding a batch of same-sized sprites for fast bulk
+ * writing and zero-copy reading
+ * <p>
+ * All values are little-endian. The file is a {@value #HEADER_SIZE}-byte header, the sprite
+ * payloads in the order they were appended, and then an index of one {@value #ENTRY_SIZE}-byte
+ * entry per sprite. The header is:
+ * <pre>
+ *  0  magic "SPAK", written last, so an unfinished pack has none
+ *  4  int   version, {@value #VERSION}
+ *  8  int   format, the ordinal of a {@link Format}
+ * 12  int   width of each sprite
+ * 16  int   height of each sprite
+ * 20  int   number of sprites
+ * 24  long  offset of the index
+ * 32  reserved, zero
+ * </pre>
+ * Each index entry is:
+ * <pre>
+ *  0  long  key, by default the seed the sprite was generated from
+ *  8  long  offset of the payload
+ * 16  int   length of the payload in bytes
+ * 20  int   palette size, 0 for ARGB sprites
+ * </pre>
+ * An {@link Format#ARGB} payload is {@code width} x {@code height} ARGB ints. An
+ * {@link Format#INDEXED} payload is the palette as ARGB ints, entry 0 transparent, followed by
+ * {@code width} x {@code height} one-byte palette indices. Payloads start on 4-byte boundaries so
+ * that ints can be read straight from a mapping
+ */
+public final class SpritePack {
+
+    /**
+     * How sprite pixels are stored
+     */
+    public enum Format {
+        ARGB,
+        INDEXED
+    }
+
+    public static final byte[] MAGIC = {'S', 'P', 'A', 'K'};
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+    public static final int ENTRY_SIZE = 24;
+    public static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    // Header field offsets
+    static final int VERSION_OFFSET = 4, FORMAT_OFFSET = 8, WIDTH_OFFSET = 12, HEIGHT_OFFSET = 16;
+    static final int COUNT_OFFSET = 20, INDEX_OFFSET = 24;
+
+    // Index entry field offsets
+    static final int KEY_OFFSET = 0, PAYLOAD_OFFSET = 8, LENGTH_OFFSET = 16, PALETTE_OFFSET = 20;
+
+    /**
+     * Most palette entries an indexed sprite may have
+     */
+    public static final int MAX_PALETTE = 256;
+
+    private SpritePack() {
+    }
+
+    /**
+     * @param format Format of the pack
+     * @param width  Width of each sprite
+     * @param height Height of each sprite
+     * @return Most bytes one payload may take, including padding
+     */
+    static long maxPayload(Format format, int width, int height) {
+        long pixels = (long) width * height;
+        return format == Format.ARGB ? pixels * 4 : align(MAX_PALETTE * 4L + pixels);
+    }
+
+    /**
+     * @param length Byte length
+     * @return {@code length} rounded up to a multiple of 4
+     */
+    static long align(long length) {
+        return (length + 3) & ~3L;
+    }
+
+}
@@ -0,0 +1,244 @@
+package com.funguscow.splat.pack;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads a {@link SpritePack} by memory-mapping it, returning views of sprites that share the
+ * mapping rather than copying it
+ * <p>
+ * A mapping holds at most 2 GiB, so the file is mapped as windows that start every
+ * {@value #WINDOW_SIZE} bytes and overlap by the largest payload, so that every payload and index
+ * entry lies wholly within the window it starts in. Reading is thread-safe. Views stay readable
+ * after {@link #close()}, until they are garbage collected
+ */
+public class SpritePackReader implements Closeable {
+
+    /**
+     * Bytes between the starts of successive windows
+     */
+    static final long WINDOW_SIZE = 1L << 30;
+
+    public final SpritePack.Format format;
+    public final int width, height, count;
+
+    private final FileChannel channel;
+    private final ByteBuffer[] windows;
+    private final long indexOffset;
+    // Keys in ascending order, and the sprite of each, built on the first lookup by key
+    private volatile long[] sortedKeys;
+    private volatile int[] sortedSprites;
+
+    /**
+     * Open and map a complete pack
+     *
+     * @param path File to read
+     * @throws IOException If the file cannot be read, or is not a complete pack
+     */
+    public SpritePackReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < SpritePack.HEADER_SIZE) {
+                throw new IOException(path + " is too short to be a sprite pack");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, SpritePack.HEADER_SIZE)
+                    .order(SpritePack.ORDER);
+            for (int i = 0; i < SpritePack.MAGIC.length; i++) {
+                if (header.get(i) != SpritePack.MAGIC[i]) {
+                    throw new IOException(path + " is not a complete sprite pack");
+                }
+            }
+            int version = header.getInt(SpritePack.VERSION_OFFSET);
+            if (version != SpritePack.VERSION) {
+                throw new IOException("Unsupported sprite pack version " + version);
+            }
+            int formatOrdinal = header.getInt(SpritePack.FORMAT_OFFSET);
+            if (formatOrdinal < 0 || formatOrdinal >= SpritePack.Format.values().length) {
+                throw new IOException("Unknown sprite pack format " + formatOrdinal);
+            }
+            format = SpritePack.Format.values()[formatOrdinal];
+            width = header.getInt(SpritePack.WIDTH_OFFSET);
+            height = header.getInt(SpritePack.HEIGHT_OFFSET);
+            count = header.getInt(SpritePack.COUNT_OFFSET);
+            indexOffset = header.getLong(SpritePack.INDEX_OFFSET);
+            if (width <= 0 || height <= 0 || count < 0
+                    || indexOffset + (long) count * SpritePack.ENTRY_SIZE > size) {
+                throw new IOException(path + " has a corrupt header");
+            }
+            long overlap = Math.max(SpritePack.maxPayload(format, width, height), SpritePack.ENTRY_SIZE);
+            windows = new ByteBuffer[(int) ((size + WINDOW_SIZE - 1) / WINDOW_SIZE)];
+            for (int i = 0; i < windows.length; i++) {
+                long start = i * WINDOW_SIZE;
+                long length = Math.min(WINDOW_SIZE + overlap, size - start);
+                windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length).order(SpritePack.ORDER);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param sprite Index of a sprite
+     * @return Key the sprite was appended with
+     */
+    public long getKey(int sprite) {
+        return entryLong(sprite, SpritePack.KEY_OFFSET);
+    }
+
+    /**
+     * @param sprite Index of a sprite
+     * @return Number of palette entries of the sprite, 0 if the pack is ARGB
+     */
+    public int getPaletteSize(int sprite) {
+        return entryInt(sprite, SpritePack.PALETTE_OFFSET);
+    }
+
+    /**
+     * Find a sprite by key. The first lookup sorts the keys, taking time linearithmic in the size
+     * of the pack, and later ones take logarithmic time
+     *
+     * @param key Key to look for
+     * @return Index of a sprite with that key, or -1 if there is none
+     */
+    public int find(long key) {
+        long[] keys = sortedKeys;
+        int[] sprites = sortedSprites;
+        if (keys == null) {
+            synchronized (this) {
+                if (sortedKeys == null) {
+                    sortKeys();
+                }
+                keys = sortedKeys;
+                sprites = sortedSprites;
+            }
+        }
+        int at = Arrays.binarySearch(keys, key);
+        return at < 0 ? -1 : sprites[at];
+    }
+
+    /**
+     * @param sprite Index of a sprite
+     * @return Little-endian view of the whole payload of the sprite
+     */
+    public ByteBuffer payload(int sprite) {
+        long offset = entryLong(sprite, SpritePack.PAYLOAD_OFFSET);
+        int length = entryInt(sprite, SpritePack.LENGTH_OFFSET);
+        return slice(offset, length);
+    }
+
+    /**
+     * @param sprite Index of a sprite in an ARGB pack
+     * @return View of its {@code width} x {@code height} ARGB pixels
+     */
+    public IntBuffer pixels(int sprite) {
+        requireFormat(SpritePack.Format.ARGB);
+        return payload(sprite).asIntBuffer();
+    }
+
+    /**
+     * @param sprite Index of a sprite in an indexed pack
+     * @return View of its ARGB palette, entry 0 transparent
+     */
+    public IntBuffer palette(int sprite) {
+        requireFormat(SpritePack.Format.INDEXED);
+        long offset = entryLong(sprite, SpritePack.PAYLOAD_OFFSET);
+        return slice(offset, getPaletteSize(sprite) * 4).asIntBuffer();
+    }
+
+    /**
+     * @param sprite Index of a sprite in an indexed pack
+     * @return View of its {@code width} x {@code height} one-byte palette indices
+     */
+    public ByteBuffer indices(int sprite) {
+        requireFormat(SpritePack.Format.INDEXED);
+        long offset = entryLong(sprite, SpritePack.PAYLOAD_OFFSET);
+        return slice(offset + getPaletteSize(sprite) * 4L, width * height);
+    }
+
+    /**
+     * Close the file. Views already returned stay valid
+     *
+     * @throws IOException If closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void requireFormat(SpritePack.Format expected) {
+        if (format != expected) {
+            throw new IllegalStateException("Pack holds " + format + " sprites");
+        }
+    }
+
+    private long entryLong(int sprite, int field) {
+        long offset = entryOffset(sprite) + field;
+        return window(offset).getLong((int) (offset % WINDOW_SIZE));
+    }
+
+    private int entryInt(int sprite, int field) {
+        long offset = entryOffset(sprite) + field;
+        return window(offset).getInt((int) (offset % WINDOW_SIZE));
+    }
+
+    private long entryOffset(int sprite) {
+        if (sprite < 0 || sprite >= count) {
+            throw new IndexOutOfBoundsException("Sprite " + sprite + " of " + count);
+        }
+        return indexOffset + (long) sprite * SpritePack.ENTRY_SIZE;
+    }
+
+    /**
+     * @param offset Offset in the file
+     * @return Window that starts at or before {@code offset}, and contains whatever starts there
+     */
+    private ByteBuffer window(long offset) {
+        return windows[(int) (offset / WINDOW_SIZE)];
+    }
+
+    /**
+     * @param offset Offset in the file
+     * @param length Length in bytes
+     * @return Little-endian view of that part of the file
+     */
+    private ByteBuffer slice(long offset, int length) {
+        ByteBuffer view = window(offset).duplicate();
+        int start = (int) (offset % WINDOW_SIZE);
+        view.limit(start + length);
+        view.position(start);
+        return view.slice().order(SpritePack.ORDER);
+    }
+
+    private void sortKeys() {
+        long[] keys = new long[count];
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = getKey(i);
+            order[i] = i;
+        }
+        // Stable, so the first sprite appended with a key is the one found
+        Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+        long[] sorted = new long[count];
+        int[] sprites = new int[count];
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            int sprite = order[i];
+            if (unique > 0 && sorted[unique - 1] == keys[sprite]) {
+                continue;
+            }
+            sorted[unique] = keys[sprite];
+            sprites[unique++] = sprite;
+        }
+        sortedSprites = Arrays.copyOf(sprites, unique);
+        sortedKeys = Arrays.copyOf(sorted, unique);
+    }
+
+}
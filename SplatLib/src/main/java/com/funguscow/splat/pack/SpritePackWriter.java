@@ -0,0 +1,231 @@
+package com.funguscow.splat.pack;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Appends sprites to a new {@link SpritePack} through a {@link FileChannel}
+ * <p>
+ * Payloads are written as they are appended, through one reused direct buffer, and the index is
+ * kept in memory until {@link #close()} writes it and the header. A batch that fails part way
+ * should call {@link #abort()} instead, so that no pack is left that looks complete. Not
+ * thread-safe
+ */
+public class SpritePackWriter implements Closeable {
+
+    /**
+     * Smallest buffer to write through, so that the index is written in large chunks
+     */
+    private static final int MIN_BUFFER = 1 << 16;
+
+    public final SpritePack.Format format;
+    public final int width, height;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private long position = SpritePack.HEADER_SIZE;
+
+    // The index, by sprite
+    private long[] keys = new long[64], offsets = new long[64];
+    private int[] lengths = new int[64], paletteSizes = new int[64];
+    private int count;
+    private boolean closed;
+
+    /**
+     * Create or truncate a pack file
+     *
+     * @param path   File to write
+     * @param format How to store sprites
+     * @param width  Width of each sprite
+     * @param height Height of each sprite
+     * @throws IOException If the file cannot be opened
+     */
+    public SpritePackWriter(Path path, SpritePack.Format format, int width, int height) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid sprite size " + width + " x " + height);
+        }
+        long maxPayload = SpritePack.maxPayload(format, width, height);
+        if (maxPayload > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("Sprites of " + width + " x " + height + " are too large to pack");
+        }
+        this.format = format;
+        this.width = width;
+        this.height = height;
+        this.path = path;
+        buffer = ByteBuffer.allocateDirect((int) Math.max(maxPayload, MIN_BUFFER))
+                .order(SpritePack.ORDER);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        // Reserve the header, without its magic until the pack is complete
+        buffer.clear();
+        buffer.put(new byte[SpritePack.HEADER_SIZE]);
+        write(0);
+    }
+
+    /**
+     * Append an ARGB sprite
+     *
+     * @param key    Key to find the sprite by, such as its seed
+     * @param pixels {@code width} x {@code height} ARGB pixels
+     * @return Index of the sprite in the pack
+     * @throws IOException If writing fails
+     */
+    public int append(long key, int[] pixels) throws IOException {
+        if (format != SpritePack.Format.ARGB) {
+            throw new IllegalStateException("Pack holds " + format + " sprites");
+        }
+        int size = width * height;
+        if (pixels.length < size) {
+            throw new IllegalArgumentException("Sprite holds " + pixels.length + " pixels, need " + width + " x " + height);
+        }
+        buffer.clear();
+        buffer.asIntBuffer().put(pixels, 0, size);
+        buffer.position(size * 4);
+        return add(key, 0);
+    }
+
+    /**
+     * Append an indexed sprite
+     *
+     * @param key     Key to find the sprite by, such as its seed
+     * @param indices {@code width} x {@code height} palette indices
+     * @param palette ARGB palette, entry 0 transparent, of at most {@value SpritePack#MAX_PALETTE}
+     *                colors
+     * @return Index of the sprite in the pack
+     * @throws IOException If writing fails
+     */
+    public int append(long key, byte[] indices, int[] palette) throws IOException {
+        if (format != SpritePack.Format.INDEXED) {
+            throw new IllegalStateException("Pack holds " + format + " sprites");
+        }
+        int size = width * height;
+        if (indices.length < size) {
+            throw new IllegalArgumentException("Sprite holds " + indices.length + " pixels, need " + width + " x " + height);
+        }
+        if (palette.length > SpritePack.MAX_PALETTE) {
+            throw new IllegalArgumentException("Palette has " + palette.length + " entries, at most "
+                    + SpritePack.MAX_PALETTE + " can be packed");
+        }
+        buffer.clear();
+        buffer.asIntBuffer().put(palette);
+        buffer.position(palette.length * 4);
+        buffer.put(indices, 0, size);
+        while ((buffer.position() & 3) != 0) {
+            buffer.put((byte) 0);
+        }
+        return add(key, palette.length);
+    }
+
+    /**
+     * Write the payload in the buffer and index it
+     *
+     * @param key         Key of the sprite
+     * @param paletteSize Palette entries in the payload
+     * @return Index of the sprite
+     */
+    private int add(long key, int paletteSize) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Pack is closed");
+        }
+        int length = buffer.position();
+        if (count == keys.length) {
+            int capacity = count * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            paletteSizes = Arrays.copyOf(paletteSizes, capacity);
+        }
+        keys[count] = key;
+        offsets[count] = position;
+        lengths[count] = length;
+        paletteSizes[count] = paletteSize;
+        write(position);
+        position += length;
+        return count++;
+    }
+
+    /**
+     * @return Number of sprites appended so far
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Write the index and header, completing the pack, and close the file
+     *
+     * @throws IOException If writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            long indexOffset = position;
+            int perBuffer = buffer.capacity() / SpritePack.ENTRY_SIZE;
+            for (int start = 0; start < count; start += perBuffer) {
+                int end = Math.min(count, start + perBuffer);
+                buffer.clear();
+                for (int i = start; i < end; i++) {
+                    buffer.putLong(keys[i]).putLong(offsets[i]).putInt(lengths[i]).putInt(paletteSizes[i]);
+                }
+                write(position);
+                position += (long) (end - start) * SpritePack.ENTRY_SIZE;
+            }
+            buffer.clear();
+            buffer.put(SpritePack.MAGIC)
+                    .putInt(SpritePack.VERSION)
+                    .putInt(format.ordinal())
+                    .putInt(width)
+                    .putInt(height)
+                    .putInt(count)
+                    .putLong(indexOffset);
+            while (buffer.position() < SpritePack.HEADER_SIZE) {
+                buffer.put((byte) 0);
+            }
+            write(0);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Abandon the pack, closing and deleting the file. Later calls to {@link #close()} do nothing,
+     * so this may be called from inside a try-with-resources block
+     *
+     * @throws IOException If closing or deleting fails
+     */
+    public void abort() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            channel.close();
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Write everything before the buffer's position to the file
+     *
+     * @param offset Offset in the file to write at
+     */
+    private void write(long offset) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.funguscow.splat.random;
+
+/**
+ * The generator of {@link java.util.Random}, giving exactly the same draws for the same seed
+ * <p>
+ * {@link java.util.Random} keeps its state in an {@code AtomicLong} and updates it by
+ * compare-and-swap on every draw, and synchronizes {@link java.util.Random#nextGaussian()}, to be
+ * safe to share between threads. Sprite generation never shares a source, so this keeps the state
+ * in a plain field instead
+ */
+public class LegacyRandom implements RandomSource {
+
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+    private static final float FLOAT_UNIT = 0x1.0p-24f;
+
+    private long seed;
+    private double nextNextGaussian;
+    private boolean haveNextNextGaussian;
+
+    /**
+     * @param seed Seed to start from, as for {@link java.util.Random#Random(long)}
+     */
+    public LegacyRandom(long seed) {
+        setSeed(seed);
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        this.seed = (seed ^ MULTIPLIER) & MASK;
+        haveNextNextGaussian = false;
+    }
+
+    /**
+     * @param bits Number of bits to draw, at most 32
+     * @return The next {@code bits} bits of the sequence
+     */
+    private int next(int bits) {
+        seed = (seed * MULTIPLIER + ADDEND) & MASK;
+        return (int) (seed >>> (48 - bits));
+    }
+
+    @Override
+    public int nextInt() {
+        return next(32);
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("Bound must be positive, got " + bound);
+        }
+        int r = next(31);
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            return (int) ((bound * (long) r) >> 31);
+        }
+        for (int u = r; u - (r = u % bound) + m < 0; u = next(31)) {
+            // Reject draws from the incomplete last multiple of bound
+        }
+        return r;
+    }
+
+    @Override
+    public long nextLong() {
+        return ((long) next(32) << 32) + next(32);
+    }
+
+    @Override
+    public float nextFloat() {
+        return next(24) * FLOAT_UNIT;
+    }
+
+    /**
+     * @return A uniformly random double in [0, 1)
+     */
+    public double nextDouble() {
+        return (((long) next(26) << 27) + next(27)) * DOUBLE_UNIT;
+    }
+
+    @Override
+    public double nextGaussian() {
+        if (haveNextNextGaussian) {
+            haveNextNextGaussian = false;
+            return nextNextGaussian;
+        }
+        double v1, v2, s;
+        do {
+            v1 = 2 * nextDouble() - 1;
+            v2 = 2 * nextDouble() - 1;
+            s = v1 * v1 + v2 * v2;
+        } while (s >= 1 || s == 0);
+        double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+        nextNextGaussian = v2 * multiplier;
+        haveNextNextGaussian = true;
+        return v1 * multiplier;
+    }
+
+    @Override
+    public void fillFloats(float[] out, int offset, int count) {
+        long state = seed;
+        for (int i = offset; i < offset + count; i++) {
+            state = (state * MULTIPLIER + ADDEND) & MASK;
+            out[i] = (int) (state >>> 24) * FLOAT_UNIT;
+        }
+        seed = state;
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.funguscow.splat.random;
+
+/**
+ * Base of generators that produce 64 random bits per step, deriving every other kind of draw from
+ * {@link #nextLong()}
+ */
+public abstract class LongRandomSource implements RandomSource {
+
+    static final float FLOAT_UNIT = 0x1.0p-24f;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private double nextNextGaussian;
+    private boolean haveNextNextGaussian;
+
+    /**
+     * Restart the sequence of the generator itself
+     *
+     * @param seed Seed to start from
+     */
+    protected abstract void seed(long seed);
+
+    @Override
+    public final void setSeed(long seed) {
+        seed(seed);
+        haveNextNextGaussian = false;
+    }
+
+    @Override
+    public int nextInt() {
+        return (int) (nextLong() >>> 32);
+    }
+
+    /**
+     * Lemire's multiply-and-reject method, which rarely needs more than one step
+     */
+    @Override
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("Bound must be positive, got " + bound);
+        }
+        long product = (nextLong() >>> 32) * bound;
+        if ((int) product + Integer.MIN_VALUE < bound + Integer.MIN_VALUE) {
+            // The low half landed where the bound does not divide evenly
+            long threshold = (1L << 32) % bound;
+            while ((product & 0xffffffffL) < threshold) {
+                product = (nextLong() >>> 32) * bound;
+            }
+        }
+        return (int) (product >>> 32);
+    }
+
+    @Override
+    public float nextFloat() {
+        return (int) (nextLong() >>> 40) * FLOAT_UNIT;
+    }
+
+    /**
+     * @return A uniformly random double in [0, 1)
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    /**
+     * The polar method, which gives two values per accepted pair of draws
+     */
+    @Override
+    public double nextGaussian() {
+        if (haveNextNextGaussian) {
+            haveNextNextGaussian = false;
+            return nextNextGaussian;
+        }
+        double v1, v2, s;
+        do {
+            v1 = 2 * nextDouble() - 1;
+            v2 = 2 * nextDouble() - 1;
+            s = v1 * v1 + v2 * v2;
+        } while (s >= 1 || s == 0);
+        double multiplier = Math.sqrt(-2 * Math.log(s) / s);
+        nextNextGaussian = v2 * multiplier;
+        haveNextNextGaussian = true;
+        return v1 * multiplier;
+    }
+
+    /**
+     * Takes two floats from the high and low 24 bits of each step
+     */
+    @Override
+    public void fillFloats(float[] out, int offset, int count) {
+        int end = offset + count;
+        int i = offset;
+        for (; i + 1 < end; i += 2) {
+            long bits = nextLong();
+            out[i] = (int) (bits >>> 40) * FLOAT_UNIT;
+            out[i + 1] = ((int) bits & 0xffffff) * FLOAT_UNIT;
+        }
+        if (i < end) {
+            out[i] = nextFloat();
+        }
+    }
+
+}
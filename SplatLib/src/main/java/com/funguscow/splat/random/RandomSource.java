@@ -0,0 +1,106 @@
+package com.funguscow.splat.random;
+
+/**
+ * A seedable source of random numbers for sprite generation. Not thread-safe
+ * <p>
+ * Besides single draws, a source can fill arrays, which lets a stage pull the random numbers for
+ * a whole row or grid at once. Bulk draws have the same distribution as single ones, but may use
+ * the generator's output differently, such as two floats from each 64-bit step, so they need not
+ * give the same values. {@link Kind#LEGACY} always gives the same values either way
+ */
+public interface RandomSource {
+
+    /**
+     * The available generators
+     */
+    enum Kind {
+        /**
+         * The linear congruential generator of {@link java.util.Random}, reproducing its draws
+         * exactly, so seeds give the same sprites as they always have
+         */
+        LEGACY,
+        /**
+         * xoroshiro128++, faster and of much higher quality than {@link #LEGACY}
+         */
+        XOROSHIRO,
+        /**
+         * SplitMix64, the fastest, and of high quality
+         */
+        SPLITMIX;
+
+        /**
+         * @param seed Seed to start from
+         * @return A new source of this kind
+         */
+        public RandomSource create(long seed) {
+            switch (this) {
+                case XOROSHIRO:
+                    return new Xoroshiro128PlusPlus(seed);
+                case SPLITMIX:
+                    return new SplitMix64(seed);
+                default:
+                    return new LegacyRandom(seed);
+            }
+        }
+    }
+
+    /**
+     * Restart the sequence
+     *
+     * @param seed Seed to start from
+     */
+    void setSeed(long seed);
+
+    /**
+     * @return A uniformly random int
+     */
+    int nextInt();
+
+    /**
+     * @param bound Exclusive upper bound, positive
+     * @return A uniformly random int in [0, {@code bound})
+     */
+    int nextInt(int bound);
+
+    /**
+     * @return A uniformly random long
+     */
+    long nextLong();
+
+    /**
+     * @return A uniformly random float in [0, 1), a multiple of 2^-24
+     */
+    float nextFloat();
+
+    /**
+     * @return A normally distributed double with mean 0 and standard deviation 1
+     */
+    double nextGaussian();
+
+    /**
+     * Draw many floats, distributed as by {@link #nextFloat()}
+     *
+     * @param out    Array to write to
+     * @param offset Index of the first float to write
+     * @param count  Number of floats to write
+     */
+    default void fillFloats(float[] out, int offset, int count) {
+        for (int i = offset; i < offset + count; i++) {
+            out[i] = nextFloat();
+        }
+    }
+
+    /**
+     * Draw many words of uniformly random bits, as by {@link #nextLong()}
+     *
+     * @param out    Array to write to
+     * @param offset Index of the first word to write
+     * @param count  Number of words to write
+     */
+    default void fillBits(long[] out, int offset, int count) {
+        for (int i = offset; i < offset + count; i++) {
+            out[i] = nextLong();
+        }
+    }
+
+}
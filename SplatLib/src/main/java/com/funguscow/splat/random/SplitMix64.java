@@ -0,0 +1,94 @@
+package com.funguscow.splat.random;
+
+/**
+ * The SplitMix64 generator, whose output at any position can be computed directly from the seed
+ * <p>
+ * Besides stepping through a sequence, this derives independent seeds from a batch seed and an
+ * index, so any member of a batch can be generated without generating the ones before it
+ */
+public class SplitMix64 extends LongRandomSource {
+
+    /**
+     * Golden-ratio increment between successive states
+     */
+    public static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long state;
+
+    /**
+     * @param seed Initial state
+     */
+    public SplitMix64(long seed) {
+        state = seed;
+    }
+
+    @Override
+    protected void seed(long seed) {
+        state = seed;
+    }
+
+    /**
+     * @return The next value of the sequence
+     */
+    @Override
+    public long nextLong() {
+        state += GOLDEN_GAMMA;
+        return mix(state);
+    }
+
+    @Override
+    public void fillFloats(float[] out, int offset, int count) {
+        long z = state;
+        int end = offset + count;
+        int i = offset;
+        for (; i + 1 < end; i += 2) {
+            z += GOLDEN_GAMMA;
+            long bits = mix(z);
+            out[i] = (int) (bits >>> 40) * FLOAT_UNIT;
+            out[i + 1] = ((int) bits & 0xffffff) * FLOAT_UNIT;
+        }
+        state = z;
+        if (i < end) {
+            out[i] = nextFloat();
+        }
+    }
+
+    @Override
+    public void fillBits(long[] out, int offset, int count) {
+        long z = state;
+        for (int i = offset; i < offset + count; i++) {
+            z += GOLDEN_GAMMA;
+            out[i] = mix(z);
+        }
+        state = z;
+    }
+
+    /**
+     * The SplitMix64 finalizer, a bijection that spreads every input bit over the output
+     *
+     * @param z Value to mix
+     * @return Mixed value
+     */
+    public static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Derive the seed of one member of a batch in constant time. Equal to the {@code index}th value
+     * of a generator seeded with {@code baseSeed}, except for index 0
+     *
+     * @param baseSeed Seed of the batch
+     * @param index    Index in the batch
+     * @return {@code baseSeed} itself for index 0, so a batch of one uses its seed unchanged, and
+     * otherwise a mix of the two
+     */
+    public static long seedFor(long baseSeed, long index) {
+        if (index == 0) {
+            return baseSeed;
+        }
+        return mix(baseSeed + index * GOLDEN_GAMMA);
+    }
+
+}
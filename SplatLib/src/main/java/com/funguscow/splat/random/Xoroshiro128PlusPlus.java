@@ -0,0 +1,72 @@
+package com.funguscow.splat.random;
+
+/**
+ * The xoroshiro128++ generator of Blackman and Vigna, with 128 bits of state, seeded through
+ * {@link SplitMix64} so that similar seeds give unrelated sequences
+ */
+public class Xoroshiro128PlusPlus extends LongRandomSource {
+
+    private long s0, s1;
+
+    /**
+     * @param seed Seed to start from
+     */
+    public Xoroshiro128PlusPlus(long seed) {
+        seed(seed);
+    }
+
+    @Override
+    protected void seed(long seed) {
+        SplitMix64 seeder = new SplitMix64(seed);
+        s0 = seeder.nextLong();
+        s1 = seeder.nextLong();
+        // The state must not be all zeros, which SplitMix64 gives for no seed in practice
+        if ((s0 | s1) == 0) {
+            s1 = SplitMix64.GOLDEN_GAMMA;
+        }
+    }
+
+    @Override
+    public long nextLong() {
+        long a = s0, b = s1;
+        long result = Long.rotateLeft(a + b, 17) + a;
+        b ^= a;
+        s0 = Long.rotateLeft(a, 49) ^ b ^ (b << 21);
+        s1 = Long.rotateLeft(b, 28);
+        return result;
+    }
+
+    @Override
+    public void fillFloats(float[] out, int offset, int count) {
+        long a = s0, b = s1;
+        int end = offset + count;
+        int i = offset;
+        for (; i + 1 < end; i += 2) {
+            long bits = Long.rotateLeft(a + b, 17) + a;
+            b ^= a;
+            a = Long.rotateLeft(a, 49) ^ b ^ (b << 21);
+            b = Long.rotateLeft(b, 28);
+            out[i] = (int) (bits >>> 40) * FLOAT_UNIT;
+            out[i + 1] = ((int) bits & 0xffffff) * FLOAT_UNIT;
+        }
+        s0 = a;
+        s1 = b;
+        if (i < end) {
+            out[i] = nextFloat();
+        }
+    }
+
+    @Override
+    public void fillBits(long[] out, int offset, int count) {
+        long a = s0, b = s1;
+        for (int i = offset; i < offset + count; i++) {
+            out[i] = Long.rotateLeft(a + b, 17) + a;
+            b ^= a;
+            a = Long.rotateLeft(a, 49) ^ b ^ (b << 21);
+            b = Long.rotateLeft(b, 28);
+        }
+        s0 = a;
+        s1 = b;
+    }
+
+}
@@ -2,8 +2,6 @@ package com.funguscow.splat.scale;
 
 import com.funguscow.splat.Utils;
 
-import java.util.Arrays;
-
 /**
  * Scale an image using Eagle2x
  * <p>
@@ -27,28 +25,118 @@ public class Eagle2x extends  ImageScaler {
     }
 
     @Override
-    protected void scalePixel(int[] input, int width, int height, int x, int y) {
+    protected void scalePixel(int[] input,
+                              int width,
+                              int height,
+                              int x,
+                              int y,
+                              int[] output,
+                              int outIndex,
+                              int outStride) {
         int A = Utils.clampedPixelAt(input, width, height, x - 1, y - 1);
         int B = Utils.clampedPixelAt(input, width, height, x, y - 1);
         int C = Utils.clampedPixelAt(input, width, height, x + 1, y - 1);
         int D = Utils.clampedPixelAt(input, width, height, x - 1, y);
         int E = input[y * width + x];
-        int F = Utils.clampedPixelAt(input, width, height, x + 1, y );
+        int F = Utils.clampedPixelAt(input, width, height, x + 1, y);
         int G = Utils.clampedPixelAt(input, width, height, x - 1, y + 1);
         int H = Utils.clampedPixelAt(input, width, height, x, y + 1);
         int I = Utils.clampedPixelAt(input, width, height, x + 1, y + 1);
-        Arrays.fill(scaledPixels, E);
-        if (A == B && A == D) {
-            scaledPixels[0] = A;
-        }
-        if (B == C && C == F) {
-            scaledPixels[1] = C;
-        }
-        if (D == G && G == H) {
-            scaledPixels[2] = G;
+        output[outIndex] = A == B && A == D ? A : E;
+        output[outIndex + 1] = B == C && C == F ? C : E;
+        output[outIndex + outStride] = D == G && G == H ? G : E;
+        output[outIndex + outStride + 1] = I == H && H == F ? H : E;
+    }
+
+    @Override
+    protected void scaleInterior(int[] input,
+                                 int width,
+                                 int x0,
+                                 int y0,
+                                 int x1,
+                                 int y1,
+                                 int[] output,
+                                 int outIndex,
+                                 int outStride) {
+        for (int y = y0; y < y1; y++) {
+            int above = (y - 1) * width, row = y * width, below = (y + 1) * width;
+            int out = outIndex + (y - y0) * 2 * outStride;
+            int A = input[above + x0 - 1], B = input[above + x0];
+            int D = input[row + x0 - 1], E = input[row + x0];
+            int G = input[below + x0 - 1], H = input[below + x0];
+            for (int x = x0; x < x1; x++, out += 2) {
+                int C = input[above + x + 1];
+                int F = input[row + x + 1];
+                int I = input[below + x + 1];
+                output[out] = A == B && A == D ? A : E;
+                output[out + 1] = B == C && C == F ? C : E;
+                output[out + outStride] = D == G && G == H ? G : E;
+                output[out + outStride + 1] = I == H && H == F ? H : E;
+                A = B;
+                B = C;
+                D = E;
+                E = F;
+                G = H;
+                H = I;
+            }
         }
-        if (I == H && H == F) {
-            scaledPixels[3] = H;
+    }
+
+    @Override
+    protected void scalePixel(byte[] input,
+                              int width,
+                              int height,
+                              int x,
+                              int y,
+                              byte[] output,
+                              int outIndex,
+                              int outStride) {
+        byte A = Utils.clampedPixelAt(input, width, height, x - 1, y - 1);
+        byte B = Utils.clampedPixelAt(input, width, height, x, y - 1);
+        byte C = Utils.clampedPixelAt(input, width, height, x + 1, y - 1);
+        byte D = Utils.clampedPixelAt(input, width, height, x - 1, y);
+        byte E = input[y * width + x];
+        byte F = Utils.clampedPixelAt(input, width, height, x + 1, y);
+        byte G = Utils.clampedPixelAt(input, width, height, x - 1, y + 1);
+        byte H = Utils.clampedPixelAt(input, width, height, x, y + 1);
+        byte I = Utils.clampedPixelAt(input, width, height, x + 1, y + 1);
+        output[outIndex] = A == B && A == D ? A : E;
+        output[outIndex + 1] = B == C && C == F ? C : E;
+        output[outIndex + outStride] = D == G && G == H ? G : E;
+        output[outIndex + outStride + 1] = I == H && H == F ? H : E;
+    }
+
+    @Override
+    protected void scaleInterior(byte[] input,
+                                 int width,
+                                 int x0,
+                                 int y0,
+                                 int x1,
+                                 int y1,
+                                 byte[] output,
+                                 int outIndex,
+                                 int outStride) {
+        for (int y = y0; y < y1; y++) {
+            int above = (y - 1) * width, row = y * width, below = (y + 1) * width;
+            int out = outIndex + (y - y0) * 2 * outStride;
+            byte A = input[above + x0 - 1], B = input[above + x0];
+            byte D = input[row + x0 - 1], E = input[row + x0];
+            byte G = input[below + x0 - 1], H = input[below + x0];
+            for (int x = x0; x < x1; x++, out += 2) {
+                byte C = input[above + x + 1];
+                byte F = input[row + x + 1];
+                byte I = input[below + x + 1];
+                output[out] = A == B && A == D ? A : E;
+                output[out + 1] = B == C && C == F ? C : E;
+                output[out + outStride] = D == G && G == H ? G : E;
+                output[out + outStride + 1] = I == H && H == F ? H : E;
+                A = B;
+                B = C;
+                D = E;
+                E = F;
+                G = H;
+                H = I;
+            }
         }
     }
 }
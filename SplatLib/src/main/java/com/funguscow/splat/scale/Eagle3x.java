@@ -2,8 +2,6 @@ package com.funguscow.splat.scale;
 
 import com.funguscow.splat.Utils;
 
-import java.util.Arrays;
-
 /**
  * Scale an image using Eagle3x
  * <p>
@@ -29,7 +27,14 @@ public class Eagle3x extends ImageScaler {
     }
 
     @Override
-    protected void scalePixel(int[] input, int width, int height, int x, int y) {
+    protected void scalePixel(int[] input,
+                              int width,
+                              int height,
+                              int x,
+                              int y,
+                              int[] output,
+                              int outIndex,
+                              int outStride) {
         int A = Utils.clampedPixelAt(input, width, height, x - 1, y - 1);
         int B = Utils.clampedPixelAt(input, width, height, x, y - 1);
         int C = Utils.clampedPixelAt(input, width, height, x + 1, y - 1);
@@ -39,18 +44,133 @@ public class Eagle3x extends ImageScaler {
         int G = Utils.clampedPixelAt(input, width, height, x - 1, y + 1);
         int H = Utils.clampedPixelAt(input, width, height, x, y + 1);
         int I = Utils.clampedPixelAt(input, width, height, x + 1, y + 1);
-        Arrays.fill(scaledPixels, E);
-        if (A == B && A == D) {
-            scaledPixels[0] = A;
-        }
-        if (B == C && C == F) {
-            scaledPixels[2] = C;
-        }
-        if (D == G && G == H) {
-            scaledPixels[6] = G;
+        int row = outIndex;
+        output[row] = A == B && A == D ? A : E;
+        output[row + 1] = E;
+        output[row + 2] = B == C && C == F ? C : E;
+        row += outStride;
+        output[row] = E;
+        output[row + 1] = E;
+        output[row + 2] = E;
+        row += outStride;
+        output[row] = D == G && G == H ? G : E;
+        output[row + 1] = E;
+        output[row + 2] = I == H && H == F ? H : E;
+    }
+
+    @Override
+    protected void scaleInterior(int[] input,
+                                 int width,
+                                 int x0,
+                                 int y0,
+                                 int x1,
+                                 int y1,
+                                 int[] output,
+                                 int outIndex,
+                                 int outStride) {
+        for (int y = y0; y < y1; y++) {
+            int above = (y - 1) * width, row = y * width, below = (y + 1) * width;
+            int out = outIndex + (y - y0) * 3 * outStride;
+            int A = input[above + x0 - 1], B = input[above + x0];
+            int D = input[row + x0 - 1], E = input[row + x0];
+            int G = input[below + x0 - 1], H = input[below + x0];
+            for (int x = x0; x < x1; x++, out += 3) {
+                int C = input[above + x + 1];
+                int F = input[row + x + 1];
+                int I = input[below + x + 1];
+                int o = out;
+                output[o] = A == B && A == D ? A : E;
+                output[o + 1] = E;
+                output[o + 2] = B == C && C == F ? C : E;
+                o += outStride;
+                output[o] = E;
+                output[o + 1] = E;
+                output[o + 2] = E;
+                o += outStride;
+                output[o] = D == G && G == H ? G : E;
+                output[o + 1] = E;
+                output[o + 2] = I == H && H == F ? H : E;
+                A = B;
+                B = C;
+                D = E;
+                E = F;
+                G = H;
+                H = I;
+            }
         }
-        if (I == H && H == F) {
-            scaledPixels[8] = H;
+    }
+
+    @Override
+    protected void scalePixel(byte[] input,
+                              int width,
+                              int height,
+                              int x,
+                              int y,
+                              byte[] output,
+                              int outIndex,
+                              int outStride) {
+        byte A = Utils.clampedPixelAt(input, width, height, x - 1, y - 1);
+        byte B = Utils.clampedPixelAt(input, width, height, x, y - 1);
+        byte C = Utils.clampedPixelAt(input, width, height, x + 1, y - 1);
+        byte D = Utils.clampedPixelAt(input, width, height, x - 1, y);
+        byte E = input[y * width + x];
+        byte F = Utils.clampedPixelAt(input, width, height, x + 1, y);
+        byte G = Utils.clampedPixelAt(input, width, height, x - 1, y + 1);
+        byte H = Utils.clampedPixelAt(input, width, height, x, y + 1);
+        byte I = Utils.clampedPixelAt(input, width, height, x + 1, y + 1);
+        int row = outIndex;
+        output[row] = A == B && A == D ? A : E;
+        output[row + 1] = E;
+        output[row + 2] = B == C && C == F ? C : E;
+        row += outStride;
+        output[row] = E;
+        output[row + 1] = E;
+        output[row + 2] = E;
+        row += outStride;
+        output[row] = D == G && G == H ? G : E;
+        output[row + 1] = E;
+        output[row + 2] = I == H && H == F ? H : E;
+    }
+
+    @Override
+    protected void scaleInterior(byte[] input,
+                                 int width,
+                                 int x0,
+                                 int y0,
+                                 int x1,
+                                 int y1,
+                                 byte[] output,
+                                 int outIndex,
+                                 int outStride) {
+        for (int y = y0; y < y1; y++) {
+            int above = (y - 1) * width, row = y * width, below = (y + 1) * width;
+            int out = outIndex + (y - y0) * 3 * outStride;
+            byte A = input[above + x0 - 1], B = input[above + x0];
+            byte D = input[row + x0 - 1], E = input[row + x0];
+            byte G = input[below + x0 - 1], H = input[below + x0];
+            for (int x = x0; x < x1; x++, out += 3) {
+                byte C = input[above + x + 1];
+                byte F = input[row + x + 1];
+                byte I = input[below + x + 1];
+                int o = out;
+                output[o] = A == B && A == D ? A : E;
+                output[o + 1] = E;
+                output[o + 2] = B == C && C == F ? C : E;
+                o += outStride;
+                output[o] = E;
+                output[o + 1] = E;
+                output[o + 2] = E;
+                o += outStride;
+                output[o] = D == G && G == H ? G : E;
+                output[o + 1] = E;
+                output[o + 2] = I == H && H == F ? H : E;
+                A = B;
+                B = C;
+                D = E;
+                E = F;
+                G = H;
+                H = I;
+            }
         }
     }
 }
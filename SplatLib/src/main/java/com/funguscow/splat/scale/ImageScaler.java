@@ -2,6 +2,7 @@ package com.funguscow.splat.scale;
 
 import com.funguscow.splat.functions.Generator;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -10,49 +11,105 @@ import java.util.Map;
  */
 public abstract class ImageScaler {
 
-    public static Map<String, Generator<ImageScaler>> Scalers = null;
+    /**
+     * Shared instances of all available scalers by their names. Scalers hold no mutable state, so
+     * these may be used from any number of threads at once
+     */
+    private static final Map<String, ImageScaler> Instances;
+
+    /**
+     * Immutable map of all available scalers by their names, each generator returning the shared
+     * instance
+     */
+    public static final Map<String, Generator<ImageScaler>> Scalers;
+
+    static {
+        Map<String, ImageScaler> instances = new HashMap<>();
+        instances.put("NearestNeighbor", new NearestNeighborI(2));
+        instances.put("Scale2x", new Scale2x());
+        instances.put("Scale3x", new Scale3x());
+        instances.put("Eagle2x", new Eagle2x());
+        instances.put("Eagle3x", new Eagle3x());
+        Map<String, Generator<ImageScaler>> scalers = new HashMap<>();
+        for (Map.Entry<String, ImageScaler> entry : instances.entrySet()) {
+            ImageScaler instance = entry.getValue();
+            scalers.put(entry.getKey(), () -> instance);
+        }
+        Instances = Collections.unmodifiableMap(instances);
+        Scalers = Collections.unmodifiableMap(scalers);
+    }
 
     /**
      *
      * @return A map of all available scalers by their names
      */
     public static Map<String, Generator<ImageScaler>> getScalers() {
-        if (Scalers == null) {
-            Scalers = new HashMap<>();
-            Scalers.put("NearestNeighbor", () -> new NearestNeighborI(2));
-            Scalers.put("Scale2x", Scale2x::new);
-            Scalers.put("Scale3x", Scale3x::new);
-            Scalers.put("Eagle2x", Eagle2x::new);
-            Scalers.put("Eagle3x", Eagle3x::new);
-        }
         return Scalers;
     }
 
+    /**
+     * @param name Name of a scaler
+     * @return The shared instance of that scaler, or {@code null} if there is none by that name
+     */
+    public static ImageScaler forName(String name) {
+        return Instances.get(name);
+    }
+
     /**
      * Ratio of output to input pixels on each axis
      */
     public final int ratio;
 
-    protected final int[] scaledPixels;
-
     /**
      * @param ratio Ratio of output to input pixels on each axis
      */
     protected ImageScaler(int ratio) {
         this.ratio = ratio;
-        scaledPixels = new int[ratio * ratio];
     }
 
     /**
-     * Algorithm to scale a single pixel to ratio x ratio pixels
+     * Algorithm to scale a single pixel to ratio x ratio pixels, written directly to the output
      *
-     * @param input  Input image
-     * @param width  Width in pixels of {@code input}
-     * @param height Height in pixels of {@code input}
-     * @param x      X offset into {@code input} of current pixel
-     * @param y      Y offset into {@code input} of current pixel
+     * @param input     Input image
+     * @param width     Width in pixels of {@code input}
+     * @param height    Height in pixels of {@code input}
+     * @param x         X offset into {@code input} of current pixel
+     * @param y         Y offset into {@code input} of current pixel
+     * @param output    Output image
+     * @param outIndex  Index in {@code output} of the top-left pixel of the scaled block
+     * @param outStride Width in pixels of {@code output}
+     */
+    protected abstract void scalePixel(int[] input,
+                                       int width,
+                                       int height,
+                                       int x,
+                                       int y,
+                                       int[] output,
+                                       int outIndex,
+                                       int outStride);
+
+    /**
+     * Algorithm to scale a single pixel of an indexed image to ratio x ratio pixels, written
+     * directly to the output. Must make the same choices as the ARGB version, so that scaling
+     * palette indices gives the same image as scaling their colors
+     *
+     * @param input     Input palette indices
+     * @param width     Width in pixels of {@code input}
+     * @param height    Height in pixels of {@code input}
+     * @param x         X offset into {@code input} of current pixel
+     * @param y         Y offset into {@code input} of current pixel
+     * @param output    Output palette indices
+     * @param outIndex  Index in {@code output} of the top-left pixel of the scaled block
+     * @param outStride Width in pixels of {@code output}
      */
-    protected abstract void scalePixel(int[] input, int width, int height, int x, int y);
+    protected abstract void scalePixel(byte[] input,
+                                       int width,
+                                       int height,
+                                       int x,
+                                       int y,
+                                       byte[] output,
+                                       int outIndex,
+                                       int outStride);
 
     /**
      * Scale an image
@@ -67,24 +124,247 @@ public abstract class ImageScaler {
             return input;
         }
         int[] scaled = new int[width * ratio * height * ratio];
-        int index = 0;
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                scalePixel(input, width, height, x, y);
-                for (int oy = 0; oy < ratio; oy++) {
-                    System.arraycopy(scaledPixels,
-                            oy * ratio,
-                            scaled,
-                            index + oy * ratio * width,
-                            ratio);
+        scale(input, width, height, scaled);
+        return scaled;
+    }
+
+    /**
+     * Scale an image into an existing array
+     *
+     * @param input  Input image
+     * @param width  Width in pixels of {@code input}
+     * @param height Height in pixels of {@code input}
+     * @param output Array of at least {@code ratio} * {@code width} x {@code ratio} * {@code height}
+     *               pixels to write the scaled image to. Must not be {@code input}
+     */
+    public void scale(int[] input, int width, int height, int[] output) {
+        scale(input, width, height, 0, 0, width, height, output, 0, width * ratio);
+    }
+
+    /**
+     * Scale a rectangle of an image into an existing array
+     * <p>
+     * Pixels on the border of the image, whose neighbors must be clamped, are scaled by
+     * {@link #scalePixel(int[], int, int, int, int, int[], int, int)}, and the rest by
+     * {@link #scaleInterior(int[], int, int, int, int, int, int[], int, int)}
+     *
+     * @param input     Input image
+     * @param width     Width in pixels of {@code input}
+     * @param height    Height in pixels of {@code input}
+     * @param x0        Left edge of the rectangle, inclusive
+     * @param y0        Top edge of the rectangle, inclusive
+     * @param x1        Right edge of the rectangle, exclusive
+     * @param y1        Bottom edge of the rectangle, exclusive
+     * @param output    Array to write the scaled rectangle to. Must not be {@code input}
+     * @param outIndex  Index in {@code output} of the top-left pixel of the scaled rectangle
+     * @param outStride Width in pixels of {@code output}
+     */
+    public void scale(int[] input,
+                      int width,
+                      int height,
+                      int x0,
+                      int y0,
+                      int x1,
+                      int y1,
+                      int[] output,
+                      int outIndex,
+                      int outStride) {
+        if (ratio == 1) {
+            for (int y = y0; y < y1; y++) {
+                System.arraycopy(input, y * width + x0, output, outIndex + (y - y0) * outStride, x1 - x0);
+            }
+            return;
+        }
+        int ix0 = Math.max(x0, 1), ix1 = Math.min(x1, width - 1);
+        int iy0 = Math.max(y0, 1), iy1 = Math.min(y1, height - 1);
+        boolean interior = ix0 < ix1 && iy0 < iy1;
+        for (int y = y0; y < y1; y++) {
+            int row = outIndex + (y - y0) * ratio * outStride;
+            if (!interior || y < iy0 || y >= iy1) {
+                for (int x = x0; x < x1; x++) {
+                    scalePixel(input, width, height, x, y, output, row + (x - x0) * ratio, outStride);
                 }
+            } else {
+                for (int x = x0; x < ix0; x++) {
+                    scalePixel(input, width, height, x, y, output, row + (x - x0) * ratio, outStride);
+                }
+                for (int x = ix1; x < x1; x++) {
+                    scalePixel(input, width, height, x, y, output, row + (x - x0) * ratio, outStride);
+                }
+            }
+        }
+        if (interior) {
+            scaleInterior(input,
+                    width,
+                    ix0,
+                    iy0,
+                    ix1,
+                    iy1,
+                    output,
+                    outIndex + ((iy0 - y0) * outStride + ix0 - x0) * ratio,
+                    outStride);
+        }
+    }
+
+    /**
+     * Scale a rectangle of pixels none of which are on the border of the image, so that no
+     * neighbor needs to be clamped. Subclasses should override this with a tight loop over their
+     * algorithm
+     *
+     * @param input     Input image
+     * @param width     Width in pixels of {@code input}
+     * @param x0        Left edge of the rectangle, inclusive, at least 1
+     * @param y0        Top edge of the rectangle, inclusive, at least 1
+     * @param x1        Right edge of the rectangle, exclusive, at most {@code width} - 1
+     * @param y1        Bottom edge of the rectangle, exclusive, at most the image height - 1
+     * @param output    Output image
+     * @param outIndex  Index in {@code output} of the top-left pixel of the scaled rectangle
+     * @param outStride Width in pixels of {@code output}
+     */
+    protected void scaleInterior(int[] input,
+                                 int width,
+                                 int x0,
+                                 int y0,
+                                 int x1,
+                                 int y1,
+                                 int[] output,
+                                 int outIndex,
+                                 int outStride) {
+        // Any height works, as interior pixels never need clamping
+        for (int y = y0; y < y1; y++) {
+            int index = outIndex + (y - y0) * ratio * outStride;
+            for (int x = x0; x < x1; x++) {
+                scalePixel(input, width, Integer.MAX_VALUE, x, y, output, index, outStride);
                 index += ratio;
             }
-            index += (ratio - 1) * width * ratio;
         }
+    }
+
+    /**
+     * Scale an indexed image
+     *
+     * @param input  Input palette indices
+     * @param width  Width in pixels of {@code input}
+     * @param height Height in pixels of {@code input}
+     * @return Scaled indices of size {@code ratio} * {@code width} x {@code ratio} * {@code height}
+     */
+    public byte[] scale(byte[] input, int width, int height) {
+        if (ratio == 1) {
+            return input;
+        }
+        byte[] scaled = new byte[width * ratio * height * ratio];
+        scale(input, width, height, scaled);
         return scaled;
     }
 
+    /**
+     * Scale an indexed image into an existing array
+     *
+     * @param input  Input palette indices
+     * @param width  Width in pixels of {@code input}
+     * @param height Height in pixels of {@code input}
+     * @param output Array of at least {@code ratio} * {@code width} x {@code ratio} * {@code height}
+     *               indices to write the scaled image to. Must not be {@code input}
+     */
+    public void scale(byte[] input, int width, int height, byte[] output) {
+        scale(input, width, height, 0, 0, width, height, output, 0, width * ratio);
+    }
+
+    /**
+     * Scale a rectangle of an indexed image into an existing array, as
+     * {@link #scale(int[], int, int, int, int, int, int, int[], int, int)} does for ARGB images
+     *
+     * @param input     Input palette indices
+     * @param width     Width in pixels of {@code input}
+     * @param height    Height in pixels of {@code input}
+     * @param x0        Left edge of the rectangle, inclusive
+     * @param y0        Top edge of the rectangle, inclusive
+     * @param x1        Right edge of the rectangle, exclusive
+     * @param y1        Bottom edge of the rectangle, exclusive
+     * @param output    Array to write the scaled rectangle to. Must not be {@code input}
+     * @param outIndex  Index in {@code output} of the top-left pixel of the scaled rectangle
+     * @param outStride Width in pixels of {@code output}
+     */
+    public void scale(byte[] input,
+                      int width,
+                      int height,
+                      int x0,
+                      int y0,
+                      int x1,
+                      int y1,
+                      byte[] output,
+                      int outIndex,
+                      int outStride) {
+        if (ratio == 1) {
+            for (int y = y0; y < y1; y++) {
+                System.arraycopy(input, y * width + x0, output, outIndex + (y - y0) * outStride, x1 - x0);
+            }
+            return;
+        }
+        int ix0 = Math.max(x0, 1), ix1 = Math.min(x1, width - 1);
+        int iy0 = Math.max(y0, 1), iy1 = Math.min(y1, height - 1);
+        boolean interior = ix0 < ix1 && iy0 < iy1;
+        for (int y = y0; y < y1; y++) {
+            int row = outIndex + (y - y0) * ratio * outStride;
+            if (!interior || y < iy0 || y >= iy1) {
+                for (int x = x0; x < x1; x++) {
+                    scalePixel(input, width, height, x, y, output, row + (x - x0) * ratio, outStride);
+                }
+            } else {
+                for (int x = x0; x < ix0; x++) {
+                    scalePixel(input, width, height, x, y, output, row + (x - x0) * ratio, outStride);
+                }
+                for (int x = ix1; x < x1; x++) {
+                    scalePixel(input, width, height, x, y, output, row + (x - x0) * ratio, outStride);
+                }
+            }
+        }
+        if (interior) {
+            scaleInterior(input,
+                    width,
+                    ix0,
+                    iy0,
+                    ix1,
+                    iy1,
+                    output,
+                    outIndex + ((iy0 - y0) * outStride + ix0 - x0) * ratio,
+                    outStride);
+        }
+    }
+
+    /**
+     * Scale a rectangle of an indexed image none of whose pixels are on the border, as
+     * {@link #scaleInterior(int[], int, int, int, int, int, int[], int, int)} does for ARGB images
+     *
+     * @param input     Input palette indices
+     * @param width     Width in pixels of {@code input}
+     * @param x0        Left edge of the rectangle, inclusive, at least 1
+     * @param y0        Top edge of the rectangle, inclusive, at least 1
+     * @param x1        Right edge of the rectangle, exclusive, at most {@code width} - 1
+     * @param y1        Bottom edge of the rectangle, exclusive, at most the image height - 1
+     * @param output    Output palette indices
+     * @param outIndex  Index in {@code output} of the top-left pixel of the scaled rectangle
+     * @param outStride Width in pixels of {@code output}
+     */
+    protected void scaleInterior(byte[] input,
+                                 int width,
+                                 int x0,
+                                 int y0,
+                                 int x1,
+                                 int y1,
+                                 byte[] output,
+                                 int outIndex,
+                                 int outStride) {
+        // Any height works, as interior pixels never need clamping
+        for (int y = y0; y < y1; y++) {
+            int index = outIndex + (y - y0) * ratio * outStride;
+            for (int x = x0; x < x1; x++) {
+                scalePixel(input, width, Integer.MAX_VALUE, x, y, output, index, outStride);
+                index += ratio;
+            }
+        }
+    }
+
     /**
      * Scale an arbitrary amount by nearest-neighbor
      *
@@ -101,30 +381,48 @@ public abstract class ImageScaler {
                                              int widthOut,
                                              int heightOut) {
         int[] scaled = new int[widthOut * heightOut];
-        float xDelta = (float) widthIn / widthOut;
-        float yDelta = (float) heightIn / heightOut;
-        int yPos = 0;
-        float yError = 0f;
-        for (int y = 0; y < heightOut; y++) {
-            int xPos = 0;
-            float xError = 0f;
-            for (int x = 0; x < widthOut; x++) {
-
-                scaled[y * widthOut + x] = input[yPos * widthIn + xPos];
-
-                xError += xDelta;
-                if (xError >= 1) {
-                    xPos += (int) xError;
-                    xError -= (int) xError;
-                }
-            }
-            yError += yDelta;
-            if (yError >= 1) {
-                yPos += (int) yError;
-                yError -= (int) yError;
-            }
-        }
+        scaleNearestNeighbor(input, widthIn, heightIn, scaled, widthOut, heightOut);
         return scaled;
     }
 
+    /**
+     * Scale an arbitrary amount by nearest-neighbor into an existing array
+     *
+     * @param input     Input image
+     * @param widthIn   Width in pixels of {@code input}
+     * @param heightIn  Height in pixels of {@code input}
+     * @param output    Array of at least {@code widthOut} x {@code heightOut} pixels to write the
+     *                  scaled image to. Must not be {@code input}
+     * @param widthOut  Width in pixels of target scaled image
+     * @param heightOut Height in pixels of target scaled image
+     */
+    public static void scaleNearestNeighbor(int[] input,
+                                            int widthIn,
+                                            int heightIn,
+                                            int[] output,
+                                            int widthOut,
+                                            int heightOut) {
+        ResizePlan.of(widthIn, heightIn, widthOut, heightOut).resize(input, output);
+    }
+
+    /**
+     * Scale an indexed image an arbitrary amount by nearest-neighbor into an existing array
+     *
+     * @param input     Input palette indices
+     * @param widthIn   Width in pixels of {@code input}
+     * @param heightIn  Height in pixels of {@code input}
+     * @param output    Array of at least {@code widthOut} x {@code heightOut} indices to write the
+     *                  scaled image to. Must not be {@code input}
+     * @param widthOut  Width in pixels of target scaled image
+     * @param heightOut Height in pixels of target scaled image
+     */
+    public static void scaleNearestNeighbor(byte[] input,
+                                            int widthIn,
+                                            int heightIn,
+                                            byte[] output,
+                                            int widthOut,
+                                            int heightOut) {
+        ResizePlan.of(widthIn, heightIn, widthOut, heightOut).resize(input, output);
+    }
+
 }
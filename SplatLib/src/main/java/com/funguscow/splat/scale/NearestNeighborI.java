@@ -23,7 +23,92 @@ public class NearestNeighborI extends ImageScaler {
     }
 
     @Override
-    protected void scalePixel(int[] input, int width, int height, int x, int y) {
-        Arrays.fill(scaledPixels, input[y * width + x]);
+    protected void scalePixel(int[] input,
+                              int width,
+                              int height,
+                              int x,
+                              int y,
+                              int[] output,
+                              int outIndex,
+                              int outStride) {
+        int E = input[y * width + x];
+        for (int oy = 0; oy < ratio; oy++) {
+            int row = outIndex + oy * outStride;
+            Arrays.fill(output, row, row + ratio, E);
+        }
+    }
+
+    /**
+     * Builds each output row once and copies it for the remaining {@code ratio} - 1 rows, as
+     * nearest-neighbor needs no neighbors or border handling
+     */
+    @Override
+    public void scale(int[] input,
+                      int width,
+                      int height,
+                      int x0,
+                      int y0,
+                      int x1,
+                      int y1,
+                      int[] output,
+                      int outIndex,
+                      int outStride) {
+        int rowLength = (x1 - x0) * ratio;
+        for (int y = y0; y < y1; y++) {
+            int row = outIndex + (y - y0) * ratio * outStride;
+            int out = row;
+            for (int x = x0; x < x1; x++, out += ratio) {
+                int E = input[y * width + x];
+                for (int i = 0; i < ratio; i++) {
+                    output[out + i] = E;
+                }
+            }
+            for (int oy = 1; oy < ratio; oy++) {
+                System.arraycopy(output, row, output, row + oy * outStride, rowLength);
+            }
+        }
+    }
+
+    @Override
+    protected void scalePixel(byte[] input,
+                              int width,
+                              int height,
+                              int x,
+                              int y,
+                              byte[] output,
+                              int outIndex,
+                              int outStride) {
+        byte E = input[y * width + x];
+        for (int oy = 0; oy < ratio; oy++) {
+            int row = outIndex + oy * outStride;
+            Arrays.fill(output, row, row + ratio, E);
+        }
+    }
+
+    @Override
+    public void scale(byte[] input,
+                      int width,
+                      int height,
+                      int x0,
+                      int y0,
+                      int x1,
+                      int y1,
+                      byte[] output,
+                      int outIndex,
+                      int outStride) {
+        int rowLength = (x1 - x0) * ratio;
+        for (int y = y0; y < y1; y++) {
+            int row = outIndex + (y - y0) * ratio * outStride;
+            int out = row;
+            for (int x = x0; x < x1; x++, out += ratio) {
+                byte E = input[y * width + x];
+                for (int i = 0; i < ratio; i++) {
+                    output[out + i] = E;
+                }
+            }
+            for (int oy = 1; oy < ratio; oy++) {
+                System.arraycopy(output, row, output, row + oy * outStride, rowLength);
+            }
+        }
     }
 }
@@ -0,0 +1,180 @@
+package com.funguscow.splat.scale;
+
+import com.funguscow.splat.cache.LruCache;
+
+import java.util.Objects;
+
+/**
+ * Precomputed nearest-neighbor resize from one size to another
+ * <p>
+ * Holds the source column of every output column and the source row of every output row, so
+ * resizing is a plain gather, and output rows that sample the same source row as the row above are
+ * copied instead of gathered again. Plans are immutable and cached by their dimensions, so a batch
+ * of same-sized sprites shares one plan
+ */
+public final class ResizePlan {
+
+    /**
+     * Maximum number of distinct plans to keep
+     */
+    public static final int CACHE_CAPACITY = 64;
+
+    private static final LruCache<Key, ResizePlan> Cache = new LruCache<>(CACHE_CAPACITY);
+
+    public final int widthIn, heightIn, widthOut, heightOut;
+
+    private final int[] columns, rows;
+
+    private ResizePlan(Key key) {
+        widthIn = key.widthIn;
+        heightIn = key.heightIn;
+        widthOut = key.widthOut;
+        heightOut = key.heightOut;
+        columns = map(widthIn, widthOut);
+        rows = map(heightIn, heightOut);
+    }
+
+    /**
+     * Get the plan for resizing between two sizes, computing it only if it is not cached
+     *
+     * @param widthIn   Width in pixels of input images
+     * @param heightIn  Height in pixels of input images
+     * @param widthOut  Width in pixels of output images
+     * @param heightOut Height in pixels of output images
+     * @return A shared plan
+     */
+    public static ResizePlan of(int widthIn, int heightIn, int widthOut, int heightOut) {
+        return Cache.computeIfAbsent(new Key(widthIn, heightIn, widthOut, heightOut), ResizePlan::new);
+    }
+
+    /**
+     * @param widthIn   Width in pixels of input images
+     * @param heightIn  Height in pixels of input images
+     * @param widthOut  Width in pixels of output images
+     * @param heightOut Height in pixels of output images
+     * @return {@code true} if this plan resizes between those sizes
+     */
+    public boolean matches(int widthIn, int heightIn, int widthOut, int heightOut) {
+        return this.widthIn == widthIn
+                && this.heightIn == heightIn
+                && this.widthOut == widthOut
+                && this.heightOut == heightOut;
+    }
+
+    /**
+     * @param x Output column
+     * @return The input column sampled for {@code x}
+     */
+    public int column(int x) {
+        return columns[x];
+    }
+
+    /**
+     * @param y Output row
+     * @return The input row sampled for {@code y}
+     */
+    public int row(int y) {
+        return rows[y];
+    }
+
+    /**
+     * Resize an image
+     *
+     * @param input  Image of {@code widthIn} x {@code heightIn} pixels
+     * @param output Array of at least {@code widthOut} x {@code heightOut} pixels to write to. Must
+     *               not be {@code input}
+     */
+    public void resize(int[] input, int[] output) {
+        for (int y = 0; y < heightOut; y++) {
+            int out = y * widthOut;
+            if (y > 0 && rows[y] == rows[y - 1]) {
+                System.arraycopy(output, out - widthOut, output, out, widthOut);
+                continue;
+            }
+            int in = rows[y] * widthIn;
+            for (int x = 0; x < widthOut; x++) {
+                output[out + x] = input[in + columns[x]];
+            }
+        }
+    }
+
+    /**
+     * Resize an indexed image
+     *
+     * @param input  Palette indices of {@code widthIn} x {@code heightIn} pixels
+     * @param output Array of at least {@code widthOut} x {@code heightOut} indices to write to. Must
+     *               not be {@code input}
+     */
+    public void resize(byte[] input, byte[] output) {
+        for (int y = 0; y < heightOut; y++) {
+            int out = y * widthOut;
+            if (y > 0 && rows[y] == rows[y - 1]) {
+                System.arraycopy(output, out - widthOut, output, out, widthOut);
+                continue;
+            }
+            int in = rows[y] * widthIn;
+            for (int x = 0; x < widthOut; x++) {
+                output[out + x] = input[in + columns[x]];
+            }
+        }
+    }
+
+    /**
+     * Step through input indices with a float error accumulator, which is how sprites have always
+     * been resized
+     *
+     * @param sizeIn  Input size
+     * @param sizeOut Output size
+     * @return The input index of each output index
+     */
+    private static int[] map(int sizeIn, int sizeOut) {
+        int[] map = new int[sizeOut];
+        float delta = (float) sizeIn / sizeOut;
+        int pos = 0;
+        float error = 0f;
+        for (int i = 0; i < sizeOut; i++) {
+            map[i] = pos;
+            error += delta;
+            if (error >= 1) {
+                pos += (int) error;
+                error -= (int) error;
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Dimensions a plan is cached by
+     */
+    private static final class Key {
+        private final int widthIn, heightIn, widthOut, heightOut;
+
+        private Key(int widthIn, int heightIn, int widthOut, int heightOut) {
+            this.widthIn = widthIn;
+            this.heightIn = heightIn;
+            this.widthOut = widthOut;
+            this.heightOut = heightOut;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return widthIn == other.widthIn
+                    && heightIn == other.heightIn
+                    && widthOut == other.widthOut
+                    && heightOut == other.heightOut;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(widthIn, heightIn, widthOut, heightOut);
+        }
+    }
+
+}
@@ -2,8 +2,6 @@ package com.funguscow.splat.scale;
 
 import com.funguscow.splat.Utils;
 
-import java.util.Arrays;
-
 /**
  * Scale by 2x2 using Scale2x
  * <p>
@@ -31,27 +29,158 @@ public class Scale2x extends ImageScaler {
     }
 
     @Override
-    protected void scalePixel(int[] input, int width, int height, int x, int y) {
+    protected void scalePixel(int[] input,
+                              int width,
+                              int height,
+                              int x,
+                              int y,
+                              int[] output,
+                              int outIndex,
+                              int outStride) {
         int B = Utils.clampedPixelAt(input, width, height, x, y - 1);
         int D = Utils.clampedPixelAt(input, width, height, x - 1, y);
         int E = input[y * width + x];
         int F = Utils.clampedPixelAt(input, width, height, x + 1, y);
         int H = Utils.clampedPixelAt(input, width, height, x, y + 1);
-        Arrays.fill(scaledPixels, E);
-        if (B == H || D == F) {
-            return;
-        }
-        if (B == D) {
-            scaledPixels[0] = B;
+        int E0 = E, E1 = E, E2 = E, E3 = E;
+        if (B != H && D != F) {
+            if (B == D) {
+                E0 = B;
+            }
+            if (B == F) {
+                E1 = B;
+            }
+            if (H == D) {
+                E2 = H;
+            }
+            if (H == F) {
+                E3 = F;
+            }
         }
-        if (B == F) {
-            scaledPixels[1] = B;
+        output[outIndex] = E0;
+        output[outIndex + 1] = E1;
+        output[outIndex + outStride] = E2;
+        output[outIndex + outStride + 1] = E3;
+    }
+
+    @Override
+    protected void scaleInterior(int[] input,
+                                 int width,
+                                 int x0,
+                                 int y0,
+                                 int x1,
+                                 int y1,
+                                 int[] output,
+                                 int outIndex,
+                                 int outStride) {
+        for (int y = y0; y < y1; y++) {
+            int above = (y - 1) * width, row = y * width, below = (y + 1) * width;
+            int out = outIndex + (y - y0) * 2 * outStride;
+            int D = input[row + x0 - 1], E = input[row + x0];
+            for (int x = x0; x < x1; x++, out += 2) {
+                int B = input[above + x];
+                int F = input[row + x + 1];
+                int H = input[below + x];
+                int E0 = E, E1 = E, E2 = E, E3 = E;
+                if (B != H && D != F) {
+                    if (B == D) {
+                        E0 = B;
+                    }
+                    if (B == F) {
+                        E1 = B;
+                    }
+                    if (H == D) {
+                        E2 = H;
+                    }
+                    if (H == F) {
+                        E3 = F;
+                    }
+                }
+                output[out] = E0;
+                output[out + 1] = E1;
+                output[out + outStride] = E2;
+                output[out + outStride + 1] = E3;
+                D = E;
+                E = F;
+            }
         }
-        if (H == D) {
-            scaledPixels[2] = H;
+    }
+
+    @Override
+    protected void scalePixel(byte[] input,
+                              int width,
+                              int height,
+                              int x,
+                              int y,
+                              byte[] output,
+                              int outIndex,
+                              int outStride) {
+        byte B = Utils.clampedPixelAt(input, width, height, x, y - 1);
+        byte D = Utils.clampedPixelAt(input, width, height, x - 1, y);
+        byte E = input[y * width + x];
+        byte F = Utils.clampedPixelAt(input, width, height, x + 1, y);
+        byte H = Utils.clampedPixelAt(input, width, height, x, y + 1);
+        byte E0 = E, E1 = E, E2 = E, E3 = E;
+        if (B != H && D != F) {
+            if (B == D) {
+                E0 = B;
+            }
+            if (B == F) {
+                E1 = B;
+            }
+            if (H == D) {
+                E2 = H;
+            }
+            if (H == F) {
+                E3 = F;
+            }
         }
-        if (H == F) {
-            scaledPixels[3] = F;
+        output[outIndex] = E0;
+        output[outIndex + 1] = E1;
+        output[outIndex + outStride] = E2;
+        output[outIndex + outStride + 1] = E3;
+    }
+
+    @Override
+    protected void scaleInterior(byte[] input,
+                                 int width,
+                                 int x0,
+                                 int y0,
+                                 int x1,
+                                 int y1,
+                                 byte[] output,
+                                 int outIndex,
+                                 int outStride) {
+        for (int y = y0; y < y1; y++) {
+            int above = (y - 1) * width, row = y * width, below = (y + 1) * width;
+            int out = outIndex + (y - y0) * 2 * outStride;
+            byte D = input[row + x0 - 1], E = input[row + x0];
+            for (int x = x0; x < x1; x++, out += 2) {
+                byte B = input[above + x];
+                byte F = input[row + x + 1];
+                byte H = input[below + x];
+                byte E0 = E, E1 = E, E2 = E, E3 = E;
+                if (B != H && D != F) {
+                    if (B == D) {
+                        E0 = B;
+                    }
+                    if (B == F) {
+                        E1 = B;
+                    }
+                    if (H == D) {
+                        E2 = H;
+                    }
+                    if (H == F) {
+                        E3 = F;
+                    }
+                }
+                output[out] = E0;
+                output[out + 1] = E1;
+                output[out + outStride] = E2;
+                output[out + outStride + 1] = E3;
+                D = E;
+                E = F;
+            }
         }
     }
 }
@@ -2,8 +2,6 @@ package com.funguscow.splat.scale;
 
 import com.funguscow.splat.Utils;
 
-import java.util.Arrays;
-
 /**
  * Scale an image using Scale3x
  * <p>
@@ -29,54 +27,305 @@ public class Scale3x extends ImageScaler {
     }
 
     @Override
-    protected void scalePixel(int[] input, int width, int height, int x, int y) {
+    protected void scalePixel(int[] input,
+                              int width,
+                              int height,
+                              int x,
+                              int y,
+                              int[] output,
+                              int outIndex,
+                              int outStride) {
         int B = Utils.clampedPixelAt(input, width, height, x, y - 1);
         int D = Utils.clampedPixelAt(input, width, height, x - 1, y);
         int E = input[y * width + x];
         int F = Utils.clampedPixelAt(input, width, height, x + 1, y);
         int H = Utils.clampedPixelAt(input, width, height, x, y + 1);
-        Arrays.fill(scaledPixels, E);
-        if(B == H || D == F) {
-            return;
-        }
-        int A = Utils.clampedPixelAt(input, width, height, x - 1, y - 1);
-        int C = Utils.clampedPixelAt(input, width, height, x + 1, y - 1);
-        int G = Utils.clampedPixelAt(input, width, height, x - 1, y + 1);
-        int I = Utils.clampedPixelAt(input, width, height, x + 1, y + 1);
-        if (B == D) {
-            scaledPixels[0] = B;
-            if (E != C) {
-                scaledPixels[1] = B;
+        int E0 = E, E1 = E, E2 = E, E3 = E, E5 = E, E6 = E, E7 = E, E8 = E;
+        if (B != H && D != F) {
+            int A = Utils.clampedPixelAt(input, width, height, x - 1, y - 1);
+            int C = Utils.clampedPixelAt(input, width, height, x + 1, y - 1);
+            int G = Utils.clampedPixelAt(input, width, height, x - 1, y + 1);
+            int I = Utils.clampedPixelAt(input, width, height, x + 1, y + 1);
+            if (B == D) {
+                E0 = B;
+                if (E != C) {
+                    E1 = B;
+                }
+                if (E != G) {
+                    E3 = B;
+                }
             }
-            if (E != G) {
-                scaledPixels[3] = B;
+            if (B == F) {
+                E2 = B;
+                if (E != A) {
+                    E1 = B;
+                }
+                if (E != I) {
+                    E5 = B;
+                }
             }
-        }
-        if (B == F) {
-            scaledPixels[2] = B;
-            if (E != A) {
-                scaledPixels[1] = B;
+            if (H == D) {
+                E6 = H;
+                if (E != A) {
+                    E3 = H;
+                }
+                if (E != I) {
+                    E7 = H;
+                }
             }
-            if (E != I) {
-                scaledPixels[5] = B;
+            if (H == F) {
+                E8 = H;
+                if (E != C) {
+                    E5 = H;
+                }
+                if (E != G) {
+                    E7 = H;
+                }
             }
         }
-        if (H == D) {
-            scaledPixels[6] = H;
-            if (E != A) {
-                scaledPixels[3] = H;
-            }
-            if (E != I) {
-                scaledPixels[7] = H;
+        int row = outIndex;
+        output[row] = E0;
+        output[row + 1] = E1;
+        output[row + 2] = E2;
+        row += outStride;
+        output[row] = E3;
+        output[row + 1] = E;
+        output[row + 2] = E5;
+        row += outStride;
+        output[row] = E6;
+        output[row + 1] = E7;
+        output[row + 2] = E8;
+    }
+
+    @Override
+    protected void scaleInterior(int[] input,
+                                 int width,
+                                 int x0,
+                                 int y0,
+                                 int x1,
+                                 int y1,
+                                 int[] output,
+                                 int outIndex,
+                                 int outStride) {
+        for (int y = y0; y < y1; y++) {
+            int above = (y - 1) * width, row = y * width, below = (y + 1) * width;
+            int out = outIndex + (y - y0) * 3 * outStride;
+            int A = input[above + x0 - 1], B = input[above + x0];
+            int D = input[row + x0 - 1], E = input[row + x0];
+            int G = input[below + x0 - 1], H = input[below + x0];
+            for (int x = x0; x < x1; x++, out += 3) {
+                int C = input[above + x + 1];
+                int F = input[row + x + 1];
+                int I = input[below + x + 1];
+                int E0 = E, E1 = E, E2 = E, E3 = E, E5 = E, E6 = E, E7 = E, E8 = E;
+                if (B != H && D != F) {
+                    if (B == D) {
+                        E0 = B;
+                        if (E != C) {
+                            E1 = B;
+                        }
+                        if (E != G) {
+                            E3 = B;
+                        }
+                    }
+                    if (B == F) {
+                        E2 = B;
+                        if (E != A) {
+                            E1 = B;
+                        }
+                        if (E != I) {
+                            E5 = B;
+                        }
+                    }
+                    if (H == D) {
+                        E6 = H;
+                        if (E != A) {
+                            E3 = H;
+                        }
+                        if (E != I) {
+                            E7 = H;
+                        }
+                    }
+                    if (H == F) {
+                        E8 = H;
+                        if (E != C) {
+                            E5 = H;
+                        }
+                        if (E != G) {
+                            E7 = H;
+                        }
+                    }
+                }
+                int o = out;
+                output[o] = E0;
+                output[o + 1] = E1;
+                output[o + 2] = E2;
+                o += outStride;
+                output[o] = E3;
+                output[o + 1] = E;
+                output[o + 2] = E5;
+                o += outStride;
+                output[o] = E6;
+                output[o + 1] = E7;
+                output[o + 2] = E8;
+                A = B;
+                B = C;
+                D = E;
+                E = F;
+                G = H;
+                H = I;
             }
         }
-        if (H == F) {
-            scaledPixels[8] = H;
-            if (E != C) {
-                scaledPixels[5] = H;
+    }
+
+    @Override
+    protected void scalePixel(byte[] input,
+                              int width,
+                              int height,
+                              int x,
+                              int y,
+                              byte[] output,
+                              int outIndex,
+                              int outStride) {
+        byte B = Utils.clampedPixelAt(input, width, height, x, y - 1);
+        byte D = Utils.clampedPixelAt(input, width, height, x - 1, y);
+        byte E = input[y * width + x];
+        byte F = Utils.clampedPixelAt(input, width, height, x + 1, y);
+        byte H = Utils.clampedPixelAt(input, width, height, x, y + 1);
+        byte E0 = E, E1 = E, E2 = E, E3 = E, E5 = E, E6 = E, E7 = E, E8 = E;
+        if (B != H && D != F) {
+            byte A = Utils.clampedPixelAt(input, width, height, x - 1, y - 1);
+            byte C = Utils.clampedPixelAt(input, width, height, x + 1, y - 1);
+            byte G = Utils.clampedPixelAt(input, width, height, x - 1, y + 1);
+            byte I = Utils.clampedPixelAt(input, width, height, x + 1, y + 1);
+            if (B == D) {
+                E0 = B;
+                if (E != C) {
+                    E1 = B;
+                }
+                if (E != G) {
+                    E3 = B;
+                }
+            }
+            if (B == F) {
+                E2 = B;
+                if (E != A) {
+                    E1 = B;
+                }
+                if (E != I) {
+                    E5 = B;
+                }
+            }
+            if (H == D) {
+                E6 = H;
+                if (E != A) {
+                    E3 = H;
+                }
+                if (E != I) {
+                    E7 = H;
+                }
+            }
+            if (H == F) {
+                E8 = H;
+                if (E != C) {
+                    E5 = H;
+                }
+                if (E != G) {
+                    E7 = H;
+                }
             }
-            if (E != G) {
-                scaledPixels[7] = H;
+        }
+        int row = outIndex;
+        output[row] = E0;
+        output[row + 1] = E1;
+        output[row + 2] = E2;
+        row += outStride;
+        output[row] = E3;
+        output[row + 1] = E;
+        output[row + 2] = E5;
+        row += outStride;
+        output[row] = E6;
+        output[row + 1] = E7;
+        output[row + 2] = E8;
+    }
+
+    @Override
+    protected void scaleInterior(byte[] input,
+                                 int width,
+                                 int x0,
+                                 int y0,
+                                 int x1,
+                                 int y1,
+                                 byte[] output,
+                                 int outIndex,
+                                 int outStride) {
+        for (int y = y0; y < y1; y++) {
+            int above = (y - 1) * width, row = y * width, below = (y + 1) * width;
+            int out = outIndex + (y - y0) * 3 * outStride;
+            byte A = input[above + x0 - 1], B = input[above + x0];
+            byte D = input[row + x0 - 1], E = input[row + x0];
+            byte G = input[below + x0 - 1], H = input[below + x0];
+            for (int x = x0; x < x1; x++, out += 3) {
+                byte C = input[above + x + 1];
+                byte F = input[row + x + 1];
+                byte I = input[below + x + 1];
+                byte E0 = E, E1 = E, E2 = E, E3 = E, E5 = E, E6 = E, E7 = E, E8 = E;
+                if (B != H && D != F) {
+                    if (B == D) {
+                        E0 = B;
+                        if (E != C) {
+                            E1 = B;
+                        }
+                        if (E != G) {
+                            E3 = B;
+                        }
+                    }
+                    if (B == F) {
+                        E2 = B;
+                        if (E != A) {
+                            E1 = B;
+                        }
+                        if (E != I) {
+                            E5 = B;
+                        }
+                    }
+                    if (H == D) {
+                        E6 = H;
+                        if (E != A) {
+                            E3 = H;
+                        }
+                        if (E != I) {
+                            E7 = H;
+                        }
+                    }
+                    if (H == F) {
+                        E8 = H;
+                        if (E != C) {
+                            E5 = H;
+                        }
+                        if (E != G) {
+                            E7 = H;
+                        }
+                    }
+                }
+                int o = out;
+                output[o] = E0;
+                output[o + 1] = E1;
+                output[o + 2] = E2;
+                o += outStride;
+                output[o] = E3;
+                output[o + 1] = E;
+                output[o + 2] = E5;
+                o += outStride;
+                output[o] = E6;
+                output[o + 1] = E7;
+                output[o + 2] = E8;
+                A = B;
+                B = C;
+                D = E;
+                E = F;
+                G = H;
+                H = I;
             }
         }
     }
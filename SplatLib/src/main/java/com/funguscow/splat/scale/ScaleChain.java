@@ -0,0 +1,372 @@
+package com.funguscow.splat.scale;
+
+import com.funguscow.splat.jfr.FusedScaleEvent;
+import com.funguscow.splat.jfr.ResizeEvent;
+import com.funguscow.splat.jfr.ScalePassEvent;
+
+/**
+ * Repeatedly applies a scaler until the next step would overshoot the target size, then resizes
+ * to exactly the target size by nearest-neighbor
+ * <p>
+ * Holds scratch buffers that are reused across calls, so an instance must not be used by more
+ * than one thread at a time
+ */
+public class ScaleChain {
+
+    /**
+     * Edge length in output pixels of the tiles rendered by
+     * {@link #scaleFused(ImageScaler, int[], int, int, int[], int, int)}
+     */
+    public static final int TILE = 64;
+
+    // Ping-pong buffers for the materialized chain
+    private int[] scratchA, scratchB;
+    private byte[] indexScratchA, indexScratchB;
+    // Last resize used, kept so a batch of same-sized sprites skips the plan cache
+    private ResizePlan plan;
+    // Per-level tile buffers for the fused chain
+    private int[][] levels = new int[0][];
+    private int[] loX = new int[0], hiX = new int[0], loY = new int[0], hiY = new int[0];
+
+    /**
+     * @param scaler    Scaler to apply
+     * @param width     Width in pixels of the input
+     * @param height    Height in pixels of the input
+     * @param widthOut  Target width
+     * @param heightOut Target height
+     * @return How many times {@code scaler} is applied before resizing
+     */
+    public static int steps(ImageScaler scaler, int width, int height, int widthOut, int heightOut) {
+        int steps = 0;
+        while (width * scaler.ratio <= widthOut || height * scaler.ratio <= heightOut) {
+            width *= scaler.ratio;
+            height *= scaler.ratio;
+            steps++;
+        }
+        return steps;
+    }
+
+    /**
+     * Scale an image, materializing each intermediate step in ping-pong buffers and writing the
+     * last step straight to {@code output}
+     *
+     * @param scaler    Scaler to apply
+     * @param input     Input image
+     * @param width     Width in pixels of {@code input}
+     * @param height    Height in pixels of {@code input}
+     * @param output    Array of at least {@code widthOut} x {@code heightOut} pixels to write to
+     * @param widthOut  Target width
+     * @param heightOut Target height
+     */
+    public void scale(ImageScaler scaler,
+                      int[] input,
+                      int width,
+                      int height,
+                      int[] output,
+                      int widthOut,
+                      int heightOut) {
+        int steps = steps(scaler, width, height, widthOut, heightOut);
+        int w = width, h = height;
+        for (int i = 0; i < steps; i++) {
+            w *= scaler.ratio;
+            h *= scaler.ratio;
+        }
+        boolean resize = w != widthOut || h != heightOut;
+        if (steps == 0) {
+            if (resize) {
+                ResizeEvent event = new ResizeEvent();
+                event.begin();
+                plan(width, height, widthOut, heightOut).resize(input, output);
+                commit(event, width, height, widthOut, heightOut, false);
+            } else {
+                System.arraycopy(input, 0, output, 0, width * height);
+            }
+            return;
+        }
+        // The last intermediate is the largest, which is the output of the last step unless that
+        // is written straight to output
+        int largest = resize ? w * h : (w / scaler.ratio) * (h / scaler.ratio);
+        if (scratchA == null || scratchA.length < largest) {
+            scratchA = new int[largest];
+            scratchB = new int[largest];
+        }
+        int[] in = input;
+        w = width;
+        h = height;
+        for (int i = 0; i < steps; i++) {
+            int[] next = (!resize && i == steps - 1) ? output : (i & 1) == 0 ? scratchA : scratchB;
+            ScalePassEvent event = new ScalePassEvent();
+            event.begin();
+            scaler.scale(in, w, h, next);
+            commit(event, scaler, i, w, h, false);
+            in = next;
+            w *= scaler.ratio;
+            h *= scaler.ratio;
+        }
+        if (resize) {
+            ResizeEvent event = new ResizeEvent();
+            event.begin();
+            plan(w, h, widthOut, heightOut).resize(in, output);
+            commit(event, w, h, widthOut, heightOut, false);
+        }
+    }
+
+    /**
+     * Scale an indexed image, as {@link #scale(ImageScaler, int[], int, int, int[], int, int)} does
+     * for ARGB images
+     *
+     * @param scaler    Scaler to apply
+     * @param input     Input palette indices
+     * @param width     Width in pixels of {@code input}
+     * @param height    Height in pixels of {@code input}
+     * @param output    Array of at least {@code widthOut} x {@code heightOut} indices to write to
+     * @param widthOut  Target width
+     * @param heightOut Target height
+     */
+    public void scale(ImageScaler scaler,
+                      byte[] input,
+                      int width,
+                      int height,
+                      byte[] output,
+                      int widthOut,
+                      int heightOut) {
+        int steps = steps(scaler, width, height, widthOut, heightOut);
+        int w = width, h = height;
+        for (int i = 0; i < steps; i++) {
+            w *= scaler.ratio;
+            h *= scaler.ratio;
+        }
+        boolean resize = w != widthOut || h != heightOut;
+        if (steps == 0) {
+            if (resize) {
+                ResizeEvent event = new ResizeEvent();
+                event.begin();
+                plan(width, height, widthOut, heightOut).resize(input, output);
+                commit(event, width, height, widthOut, heightOut, true);
+            } else {
+                System.arraycopy(input, 0, output, 0, width * height);
+            }
+            return;
+        }
+        // The last intermediate is the largest, which is the output of the last step unless that
+        // is written straight to output
+        int largest = resize ? w * h : (w / scaler.ratio) * (h / scaler.ratio);
+        if (indexScratchA == null || indexScratchA.length < largest) {
+            indexScratchA = new byte[largest];
+            indexScratchB = new byte[largest];
+        }
+        byte[] in = input;
+        w = width;
+        h = height;
+        for (int i = 0; i < steps; i++) {
+            byte[] next = (!resize && i == steps - 1) ? output : (i & 1) == 0 ? indexScratchA : indexScratchB;
+            ScalePassEvent event = new ScalePassEvent();
+            event.begin();
+            scaler.scale(in, w, h, next);
+            commit(event, scaler, i, w, h, true);
+            in = next;
+            w *= scaler.ratio;
+            h *= scaler.ratio;
+        }
+        if (resize) {
+            ResizeEvent event = new ResizeEvent();
+            event.begin();
+            plan(w, h, widthOut, heightOut).resize(in, output);
+            commit(event, w, h, widthOut, heightOut, true);
+        }
+    }
+
+    /**
+     * Scale an image one output tile at a time. For each tile, only the pixels of each step that
+     * the tile depends on, plus the one pixel halo the scalers read, are computed into small
+     * buffers, so no full-size intermediate image is ever materialized. The output is identical
+     * to {@link #scale(ImageScaler, int[], int, int, int[], int, int)}
+     *
+     * @param scaler    Scaler to apply
+     * @param input     Input image
+     * @param width     Width in pixels of {@code input}
+     * @param height    Height in pixels of {@code input}
+     * @param output    Array of at least {@code widthOut} x {@code heightOut} pixels to write to
+     * @param widthOut  Target width
+     * @param heightOut Target height
+     */
+    public void scaleFused(ImageScaler scaler,
+                           int[] input,
+                           int width,
+                           int height,
+                           int[] output,
+                           int widthOut,
+                           int heightOut) {
+        int steps = steps(scaler, width, height, widthOut, heightOut);
+        if (steps < 2) {
+            // Nothing to fuse
+            scale(scaler, input, width, height, output, widthOut, heightOut);
+            return;
+        }
+        int r = scaler.ratio;
+        int scale = 1;
+        for (int i = 0; i < steps; i++) {
+            scale *= r;
+        }
+        int lastWidth = width * scale, lastHeight = height * scale;
+        FusedScaleEvent event = new FusedScaleEvent();
+        event.begin();
+        prepare(steps);
+        ResizePlan plan = plan(lastWidth, lastHeight, widthOut, heightOut);
+        for (int ty = 0; ty < heightOut; ty += TILE) {
+            int ty1 = Math.min(ty + TILE, heightOut);
+            for (int tx = 0; tx < widthOut; tx += TILE) {
+                int tx1 = Math.min(tx + TILE, widthOut);
+                // Pixels needed at each level, from the last step down to the input
+                loX[steps] = plan.column(tx);
+                hiX[steps] = plan.column(tx1 - 1);
+                loY[steps] = plan.row(ty);
+                hiY[steps] = plan.row(ty1 - 1);
+                int levelWidth = lastWidth, levelHeight = lastHeight;
+                for (int j = steps; j > 0; j--) {
+                    levelWidth /= r;
+                    levelHeight /= r;
+                    loX[j - 1] = Math.max(loX[j] / r - 1, 0);
+                    hiX[j - 1] = Math.min(hiX[j] / r + 1, levelWidth - 1);
+                    loY[j - 1] = Math.max(loY[j] / r - 1, 0);
+                    hiY[j - 1] = Math.min(hiY[j] / r + 1, levelHeight - 1);
+                }
+                // Compute each level from the one below. A level's buffer holds the whole blocks
+                // of the pixels it was computed from, and is treated as a standalone image by the
+                // scaler. Where the buffer edge is not the image edge, it holds the halo, so
+                // clamping at its edge only happens where the image itself would clamp
+                int[] src = input;
+                int srcX = 0, srcY = 0, srcWidth = width, srcHeight = height;
+                for (int j = 1; j <= steps; j++) {
+                    int px0 = loX[j] / r, px1 = hiX[j] / r + 1;
+                    int py0 = loY[j] / r, py1 = hiY[j] / r + 1;
+                    int dstWidth = (px1 - px0) * r, dstHeight = (py1 - py0) * r;
+                    int[] dst = level(j, dstWidth * dstHeight);
+                    scaler.scale(src,
+                            srcWidth,
+                            srcHeight,
+                            px0 - srcX,
+                            py0 - srcY,
+                            px1 - srcX,
+                            py1 - srcY,
+                            dst,
+                            0,
+                            dstWidth);
+                    src = dst;
+                    srcX = px0 * r;
+                    srcY = py0 * r;
+                    srcWidth = dstWidth;
+                    srcHeight = dstHeight;
+                }
+                for (int y = ty; y < ty1; y++) {
+                    int outRow = y * widthOut;
+                    if (y > ty && plan.row(y) == plan.row(y - 1)) {
+                        System.arraycopy(output, outRow - widthOut + tx, output, outRow + tx, tx1 - tx);
+                        continue;
+                    }
+                    int srcRow = (plan.row(y) - srcY) * srcWidth - srcX;
+                    for (int x = tx; x < tx1; x++) {
+                        output[outRow + x] = src[srcRow + plan.column(x)];
+                    }
+                }
+            }
+        }
+        if (event.shouldCommit()) {
+            event.scaler = scaler.getClass().getSimpleName();
+            event.passes = steps;
+            event.inputWidth = width;
+            event.inputHeight = height;
+            event.outputWidth = widthOut;
+            event.outputHeight = heightOut;
+            event.commit();
+        }
+    }
+
+    /**
+     * Finish timing a scaler pass, recording it if JFR wants it
+     *
+     * @param event   Event begun before the pass
+     * @param scaler  Scaler applied
+     * @param pass    Index of the pass
+     * @param width   Width in pixels of the input of the pass
+     * @param height  Height in pixels of the input of the pass
+     * @param indexed Whether palette indices were scaled
+     */
+    private static void commit(ScalePassEvent event, ImageScaler scaler, int pass, int width, int height, boolean indexed) {
+        if (event.shouldCommit()) {
+            event.scaler = scaler.getClass().getSimpleName();
+            event.pass = pass;
+            event.inputWidth = width;
+            event.inputHeight = height;
+            event.outputWidth = width * scaler.ratio;
+            event.outputHeight = height * scaler.ratio;
+            event.indexed = indexed;
+            event.commit();
+        }
+    }
+
+    /**
+     * Finish timing a resize, recording it if JFR wants it
+     *
+     * @param event     Event begun before the resize
+     * @param widthIn   Width in pixels of the image resized
+     * @param heightIn  Height in pixels of the image resized
+     * @param widthOut  Target width
+     * @param heightOut Target height
+     * @param indexed   Whether palette indices were resized
+     */
+    private static void commit(ResizeEvent event, int widthIn, int heightIn, int widthOut, int heightOut, boolean indexed) {
+        if (event.shouldCommit()) {
+            event.inputWidth = widthIn;
+            event.inputHeight = heightIn;
+            event.outputWidth = widthOut;
+            event.outputHeight = heightOut;
+            event.indexed = indexed;
+            event.commit();
+        }
+    }
+
+    /**
+     * Make sure the per-level bookkeeping fits
+     *
+     * @param steps Number of scaler steps
+     */
+    private void prepare(int steps) {
+        if (levels.length < steps + 1) {
+            int[][] grown = new int[steps + 1][];
+            System.arraycopy(levels, 0, grown, 0, levels.length);
+            levels = grown;
+            loX = new int[steps + 1];
+            hiX = new int[steps + 1];
+            loY = new int[steps + 1];
+            hiY = new int[steps + 1];
+        }
+    }
+
+    /**
+     * @param widthIn   Width in pixels of the image to resize
+     * @param heightIn  Height in pixels of the image to resize
+     * @param widthOut  Target width
+     * @param heightOut Target height
+     * @return The plan for that resize, reusing the last one if it matches
+     */
+    private ResizePlan plan(int widthIn, int heightIn, int widthOut, int heightOut) {
+        if (plan == null || !plan.matches(widthIn, heightIn, widthOut, heightOut)) {
+            plan = ResizePlan.of(widthIn, heightIn, widthOut, heightOut);
+        }
+        return plan;
+    }
+
+    /**
+     * @param level Level index
+     * @param size  Minimum size
+     * @return The tile buffer for that level, grown if needed
+     */
+    private int[] level(int level, int size) {
+        if (levels[level] == null || levels[level].length < size) {
+            levels[level] = new int[size];
+        }
+        return levels[level];
+    }
+
+}
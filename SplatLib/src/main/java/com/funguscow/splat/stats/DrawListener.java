@@ -0,0 +1,58 @@
+package com.funguscow.splat.stats;
+
+/**
+ * Receives timings and counters from each sprite a {@link com.funguscow.splat.data.SpriteGrid}
+ * draws. A grid without a listener does not read the clock at all
+ * <p>
+ * Called on the drawing thread, so one listener shared by many grids must be thread-safe
+ */
+public interface DrawListener {
+
+    /**
+     * Stages of drawing a sprite, in order
+     */
+    enum Stage {
+        /**
+         * Choosing mirrors and generating the palette
+         */
+        PALETTE,
+        /**
+         * Filling cells by density
+         */
+        FILL,
+        /**
+         * Every generation of the cellular automaton
+         */
+        CA,
+        /**
+         * Planting seeds and propagating colors through the frontier
+         */
+        COLORIZE,
+        /**
+         * Mirroring on axes and diagonals
+         */
+        MIRROR,
+        /**
+         * Looking up colors and scaling to the target size
+         */
+        SCALE,
+        /**
+         * Encoding the sprite to a file format. Never reported by the grid itself, but by whatever
+         * encodes its output
+         */
+        ENCODE
+    }
+
+    /**
+     * @param stage Stage that finished
+     * @param nanos Time it took
+     */
+    void stage(Stage stage, long nanos);
+
+    /**
+     * @param iterations Cells taken from the colorize frontier for one sprite, including those
+     *                   put back because a neighbor was not yet colored
+     */
+    void frontier(long iterations);
+
+}
@@ -0,0 +1,139 @@
+package com.funguscow.splat.stats;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+/**
+ * A {@link DrawListener} that keeps a {@link Histogram} of each stage, of colorize frontier
+ * iterations, and of whole sprites, for any number of threads
+ */
+public class DrawStats implements DrawListener {
+
+    private static final double[] PERCENTILES = {50, 99};
+    private static final com.sun.management.ThreadMXBean ALLOCATION = allocationBean();
+
+    private final Histogram[] stages = new Histogram[Stage.values().length];
+    private final Histogram frontier = new Histogram();
+    private final Histogram sprites = new Histogram();
+    private final Histogram allocated = new Histogram();
+
+    public DrawStats() {
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = new Histogram();
+        }
+    }
+
+    @Override
+    public void stage(Stage stage, long nanos) {
+        stages[stage.ordinal()].record(nanos);
+    }
+
+    @Override
+    public void frontier(long iterations) {
+        frontier.record(iterations);
+    }
+
+    /**
+     * Record one finished sprite
+     *
+     * @param nanos          Time to draw and encode it
+     * @param allocatedBytes Bytes the thread allocated meanwhile, or negative if unknown
+     */
+    public void sprite(long nanos, long allocatedBytes) {
+        sprites.record(nanos);
+        if (allocatedBytes >= 0) {
+            allocated.record(allocatedBytes);
+        }
+    }
+
+    /**
+     * @param stage A stage
+     * @return Histogram of its nanoseconds
+     */
+    public Histogram getStage(Stage stage) {
+        return stages[stage.ordinal()];
+    }
+
+    /**
+     * @return Histogram of colorize frontier iterations per sprite
+     */
+    public Histogram getFrontier() {
+        return frontier;
+    }
+
+    /**
+     * @return Histogram of nanoseconds per sprite
+     */
+    public Histogram getSprites() {
+        return sprites;
+    }
+
+    /**
+     * @return Histogram of bytes allocated per sprite
+     */
+    public Histogram getAllocated() {
+        return allocated;
+    }
+
+    /**
+     * @return Bytes allocated by the current thread so far, or -1 if the JVM cannot tell
+     */
+    public static long allocatedBytes() {
+        return ALLOCATION == null ? -1 : ALLOCATION.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * @param wallNanos Time the whole batch took
+     * @return A table of each histogram that recorded anything, then the throughput of the batch
+     */
+    public String report(long wallNanos) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, "%-16s %10s %12s %12s %12s%n", "stage", "count", "mean", "p50", "p99"));
+        for (Stage stage : Stage.values()) {
+            row(out, stage.name().toLowerCase(Locale.ROOT) + " us", stages[stage.ordinal()], 1e3);
+        }
+        row(out, "sprite us", sprites, 1e3);
+        row(out, "frontier iters", frontier, 1);
+        row(out, "allocated KiB", allocated, 1024);
+        double seconds = wallNanos / 1e9;
+        out.append(String.format(Locale.ROOT, "%d sprites in %.3f s, %.1f sprites/s%n",
+                sprites.getCount(), seconds, seconds > 0 ? sprites.getCount() / seconds : 0));
+        return out.toString();
+    }
+
+    private static void row(StringBuilder out, String name, Histogram histogram, double unit) {
+        if (histogram.getCount() == 0) {
+            return;
+        }
+        out.append(String.format(Locale.ROOT, "%-16s %10d %12.1f", name, histogram.getCount(), histogram.getMean() / unit));
+        for (double percentile : PERCENTILES) {
+            out.append(String.format(Locale.ROOT, " %12.1f", histogram.getPercentile(percentile) / unit));
+        }
+        out.append(String.format("%n"));
+    }
+
+    /**
+     * @return The HotSpot thread bean if it can count allocated bytes, enabling it if need be,
+     * otherwise {@code null}
+     */
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+                return null;
+            }
+            com.sun.management.ThreadMXBean hotSpot = (com.sun.management.ThreadMXBean) bean;
+            if (!hotSpot.isThreadAllocatedMemorySupported()) {
+                return null;
+            }
+            if (!hotSpot.isThreadAllocatedMemoryEnabled()) {
+                hotSpot.setThreadAllocatedMemoryEnabled(true);
+            }
+            return hotSpot;
+        } catch (LinkageError | UnsupportedOperationException | SecurityException e) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.funguscow.splat.data;
+
+import com.funguscow.splat.random.RandomSource;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * {@link CellularAutomaton} against the per-cell automaton it replaced
+ */
+public class CellularAutomatonTest {
+
+    // Widths below, at, and across word boundaries
+    private static final int[][] SIZES = {{1, 1}, {1, 9}, {9, 1}, {5, 7}, {16, 16}, {63, 4}, {64, 5}, {65, 6}, {130, 9}};
+    private static final int[] GENERATIONS = {1, 2, 5};
+    private static final float[][] PROBS = {{0.9f, 0.5f, 0, 0}, {0.3f, 0.6f, 0.4f, 0.8f}, {1, 1, 1, 1}};
+
+    /**
+     * The original automaton, drawing one float for each cell with 0, 1, 7, or 8 neighbors in
+     * row-major order
+     */
+    private static int[] reference(int[] cells, int width, int height, float[] probs, int generations,
+                                   Random random) {
+        int[] grid = cells.clone();
+        int[] temp = new int[width * height];
+        for (int i = 0; i < generations; i++) {
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int neighbors = -grid[y * width + x];
+                    for (int dx = -1; dx <= 1; dx++) {
+                        for (int dy = -1; dy <= 1; dy++) {
+                            if (x + dx >= 0 && x + dx < width && y + dy >= 0 && y + dy < height) {
+                                neighbors += grid[(y + dy) * width + x + dx];
+                            }
+                        }
+                    }
+                    if (neighbors <= 1 && random.nextFloat() < probs[neighbors]) {
+                        temp[y * width + x] = 0;
+                    } else if (neighbors >= 7 && random.nextFloat() < probs[neighbors - 7 + 2]) {
+                        temp[y * width + x] = 1;
+                    } else {
+                        temp[y * width + x] = grid[y * width + x];
+                    }
+                }
+            }
+            int[] swap = temp;
+            temp = grid;
+            grid = swap;
+        }
+        return grid;
+    }
+
+    private static int[] cells(int width, int height, Random random) {
+        int[] cells = new int[width * height];
+        double density = random.nextDouble();
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = random.nextDouble() < density ? 1 : 0;
+        }
+        return cells;
+    }
+
+    private static int[] run(int[] cells, int width, int height, float[] probs, int generations,
+                             RandomSource random, CellularAutomaton.Mode mode) {
+        CellularAutomaton automaton = new CellularAutomaton(width, height);
+        automaton.load(cells);
+        for (int i = 0; i < generations; i++) {
+            automaton.step(probs, random, mode);
+        }
+        int[] out = new int[width * height];
+        automaton.store(out);
+        return out;
+    }
+
+    @Test
+    public void exactMatchesPerCellAutomaton() {
+        Random shapes = new Random(1);
+        for (long seed = 0; seed < 4; seed++) {
+            for (int[] size : SIZES) {
+                int[] cells = cells(size[0], size[1], shapes);
+                for (float[] probs : PROBS) {
+                    for (int generations : GENERATIONS) {
+                        int[] expected = reference(cells, size[0], size[1], probs, generations, new Random(seed));
+                        int[] actual = run(cells, size[0], size[1], probs, generations,
+                                RandomSource.Kind.LEGACY.create(seed), CellularAutomaton.Mode.EXACT);
+                        assertArrayEquals(expected, actual, "Seed " + seed + ", " + size[0] + " x " + size[1]
+                                + ", " + generations + " generations");
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void incrementalMatchesFast() {
+        Random shapes = new Random(2);
+        for (RandomSource.Kind kind : RandomSource.Kind.values()) {
+            for (long seed = 0; seed < 3; seed++) {
+                for (int[] size : SIZES) {
+                    int[] cells = cells(size[0], size[1], shapes);
+                    for (float[] probs : PROBS) {
+                        for (int generations : new int[]{1, 3, 12}) {
+                            int[] fast = run(cells, size[0], size[1], probs, generations,
+                                    kind.create(seed), CellularAutomaton.Mode.FAST);
+                            int[] incremental = run(cells, size[0], size[1], probs, generations,
+                                    kind.create(seed), CellularAutomaton.Mode.INCREMENTAL);
+                            assertArrayEquals(fast, incremental, kind + " seed " + seed + ", " + size[0] + " x "
+                                    + size[1] + ", " + generations + " generations");
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.funguscow.splat.data;
+
+import com.funguscow.splat.random.RandomSource;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Every sprite of a batch depends only on the specs and its index, so batches come out the same
+ * however they are split across grids and threads
+ */
+public class SpriteGridSeekTest {
+
+    private static final int SPRITES = 24;
+    private static final int GRIDS = 3;
+
+    private static Specs specs(RandomSource.Kind kind, boolean randomColor) {
+        Specs specs = new Specs();
+        specs.width = 12;
+        specs.height = 10;
+        specs.targetWidth = 24;
+        specs.targetHeight = 20;
+        specs.seed = 7;
+        specs.randomKind = kind;
+        specs.randomColor = randomColor;
+        return specs;
+    }
+
+    private static int[][] inOrder(Specs specs) {
+        SpriteGrid grid = new SpriteGrid(specs.copy());
+        int[][] sprites = new int[SPRITES][];
+        for (int i = 0; i < SPRITES; i++) {
+            sprites[i] = grid.draw(i);
+        }
+        return sprites;
+    }
+
+    private static int[][] shuffled(Specs specs, long shuffleSeed) {
+        SpriteGrid[] grids = new SpriteGrid[GRIDS];
+        for (int g = 0; g < GRIDS; g++) {
+            grids[g] = new SpriteGrid(specs.copy());
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < SPRITES; i++) {
+            order.add(i);
+        }
+        Random random = new Random(shuffleSeed);
+        Collections.shuffle(order, random);
+        int[][] sprites = new int[SPRITES][];
+        for (int index : order) {
+            sprites[index] = grids[random.nextInt(GRIDS)].draw(index);
+        }
+        return sprites;
+    }
+
+    private static void assertSameBatch(Specs specs) {
+        int[][] expected = inOrder(specs);
+        for (long shuffleSeed = 0; shuffleSeed < 3; shuffleSeed++) {
+            int[][] actual = shuffled(specs, shuffleSeed);
+            for (int i = 0; i < SPRITES; i++) {
+                assertArrayEquals(expected[i], actual[i], "Sprite " + i + " with shuffle " + shuffleSeed);
+            }
+        }
+    }
+
+    @Test
+    public void shuffledMatchesInOrder() {
+        assertSameBatch(specs(RandomSource.Kind.LEGACY, false));
+    }
+
+    @Test
+    public void shuffledMatchesInOrderWithRandomColor() {
+        assertSameBatch(specs(RandomSource.Kind.LEGACY, true));
+    }
+
+    @Test
+    public void shuffledMatchesInOrderWithXoroshiro() {
+        Specs specs = specs(RandomSource.Kind.XOROSHIRO, true);
+        specs.caMode = CellularAutomaton.Mode.FAST;
+        assertSameBatch(specs);
+    }
+
+    @Test
+    public void interleavedBatchesMatchInOrder() {
+        // One thread drawing from two batches in turn, so its cursor is replaced on every draw
+        Specs first = specs(RandomSource.Kind.LEGACY, false);
+        Specs second = specs(RandomSource.Kind.LEGACY, true);
+        second.width = 9;
+        second.seed = 11;
+        int[][] expectedFirst = inOrder(first), expectedSecond = inOrder(second);
+        SpriteBatch firstBatch = new SpriteBatch(first, SPRITES), secondBatch = new SpriteBatch(second, SPRITES);
+        for (int i = 0; i < SPRITES; i++) {
+            assertArrayEquals(expectedFirst[i], firstBatch.get(i).pixels, "First batch, sprite " + i);
+            assertArrayEquals(expectedSecond[i], secondBatch.get(i).pixels, "Second batch, sprite " + i);
+            assertArrayEquals(expectedSecond[i], secondBatch.get(i).pixels, "Second batch again, sprite " + i);
+        }
+    }
+
+    @Test
+    public void spritesDiffer() {
+        int[][] sprites = inOrder(specs(RandomSource.Kind.LEGACY, false));
+        assertNotEquals(Arrays.hashCode(sprites[0]), Arrays.hashCode(sprites[1]));
+    }
+
+}
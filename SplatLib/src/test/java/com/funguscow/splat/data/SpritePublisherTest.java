@@ -0,0 +1,175 @@
+package com.funguscow.splat.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link SpritePublisher} on an executor that only runs renders when told to, so how many are in
+ * flight at each point can be checked exactly
+ */
+public class SpritePublisherTest {
+
+    private static final int SPRITES = 10;
+
+    // Renders submitted but not yet run
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+    private static SpriteBatch batch() {
+        Specs specs = new Specs();
+        specs.width = 8;
+        specs.height = 8;
+        specs.targetWidth = 8;
+        specs.targetHeight = 8;
+        specs.seed = 5;
+        return new SpriteBatch(specs, SPRITES);
+    }
+
+    /**
+     * Records every signal
+     */
+    private static final class Recorder implements Flow.Subscriber<Sprite> {
+
+        private final List<Sprite> sprites = new ArrayList<>();
+        private Flow.Subscription subscription;
+        private Throwable error;
+        private int completions;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Sprite sprite) {
+            assertEquals(0, completions, "Sprite after completion");
+            sprites.add(sprite);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completions++;
+        }
+    }
+
+    @Test
+    public void rendersOnlyWhatIsRequestedAndAtMostMaxInFlight() {
+        SpritePublisher publisher = new SpritePublisher(batch(), tasks::add, 3);
+        Recorder recorder = new Recorder();
+        publisher.subscribe(recorder);
+        assertTrue(tasks.isEmpty(), "Rendered before any request");
+        recorder.subscription.request(2);
+        assertEquals(2, tasks.size());
+        while (!tasks.isEmpty()) {
+            tasks.poll().run();
+        }
+        assertEquals(2, recorder.sprites.size());
+        recorder.subscription.request(5);
+        assertEquals(3, tasks.size());
+        while (!tasks.isEmpty()) {
+            tasks.poll().run();
+            // Each delivery makes room for one more render, until the demand is met
+            assertTrue(tasks.size() <= 3, tasks.size() + " sprites in flight");
+        }
+        assertEquals(7, recorder.sprites.size());
+        assertEquals(0, recorder.completions);
+        recorder.subscription.request(Long.MAX_VALUE);
+        while (!tasks.isEmpty()) {
+            assertTrue(tasks.size() <= 3, tasks.size() + " sprites in flight");
+            tasks.poll().run();
+        }
+        assertEquals(SPRITES, recorder.sprites.size());
+        assertEquals(1, recorder.completions);
+        assertNull(recorder.error);
+    }
+
+    @Test
+    public void nonPositiveRequestSignalsError() {
+        for (long n : new long[]{0, -1}) {
+            SpritePublisher publisher = new SpritePublisher(batch(), tasks::add, 2);
+            Recorder recorder = new Recorder();
+            publisher.subscribe(recorder);
+            recorder.subscription.request(n);
+            assertTrue(recorder.error instanceof IllegalArgumentException, "request(" + n + ")");
+            // Nothing more after an error
+            recorder.subscription.request(1);
+            assertTrue(tasks.isEmpty());
+            assertTrue(recorder.sprites.isEmpty());
+            assertEquals(0, recorder.completions);
+        }
+    }
+
+    @Test
+    public void cancelReleasesSpritesInFlight() {
+        SpritePublisher publisher = new SpritePublisher(batch(), tasks::add, 4);
+        Recorder recorder = new Recorder();
+        publisher.subscribe(recorder);
+        // Hold four sprites at once, then hand them back, so the pool is full of four arrays
+        recorder.subscription.request(4);
+        while (!tasks.isEmpty()) {
+            tasks.poll().run();
+        }
+        recorder.sprites.forEach(Sprite::release);
+        assertEquals(4, publisher.idleBuffers());
+        recorder.subscription.request(4);
+        assertEquals(4, tasks.size());
+        tasks.poll().run();
+        assertEquals(5, recorder.sprites.size());
+        recorder.subscription.cancel();
+        // The renders already submitted still run, each borrowing an array that must come back
+        while (!tasks.isEmpty()) {
+            tasks.poll().run();
+        }
+        assertEquals(5, recorder.sprites.size());
+        assertEquals(3, publisher.idleBuffers());
+        recorder.sprites.get(4).release();
+        assertEquals(4, publisher.idleBuffers());
+        assertNull(recorder.error);
+        assertEquals(0, recorder.completions);
+    }
+
+    @Test
+    public void spritesArriveInOrderThenComplete() {
+        SpriteBatch batch = batch();
+        SpritePublisher publisher = new SpritePublisher(batch, 3, 9, tasks::add, 4);
+        Recorder recorder = new Recorder();
+        publisher.subscribe(recorder);
+        recorder.subscription.request(Long.MAX_VALUE);
+        // Finish renders newest first, so they complete out of order
+        while (!tasks.isEmpty()) {
+            tasks.pollLast().run();
+        }
+        assertEquals(6, recorder.sprites.size());
+        for (int i = 0; i < 6; i++) {
+            Sprite sprite = recorder.sprites.get(i);
+            assertEquals(3 + i, sprite.index);
+            assertArrayEquals(batch.get(3 + i).pixels, sprite.pixels, "Sprite " + (3 + i));
+        }
+        assertEquals(1, recorder.completions);
+        assertNull(recorder.error);
+    }
+
+    @Test
+    public void emptyRangeCompletesOnSubscribe() {
+        SpritePublisher publisher = new SpritePublisher(batch(), 4, 4, tasks::add, 2);
+        Recorder recorder = new Recorder();
+        publisher.subscribe(recorder);
+        assertEquals(1, recorder.completions);
+        assertTrue(tasks.isEmpty());
+        assertTrue(recorder.sprites.isEmpty());
+    }
+
+}
@@ -0,0 +1,165 @@
+package com.funguscow.splat.io;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Images written by {@link PngEncoder} decode with ImageIO to the pixels that were encoded, for
+ * every filter and bit depth
+ */
+public class PngEncoderTest {
+
+    // Odd sizes, so rows of sub-byte depths end in a partial byte
+    private static final int WIDTH = 13, HEIGHT = 11;
+    private static final int[] PALETTE_SIZES = {2, 3, 5, 17, 256};
+
+    /**
+     * @return Pixels with runs and repeated rows, as scaled sprites have, and some noise
+     */
+    private static int[] argbPixels(Random random) {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int i = y * WIDTH + x;
+                if (y % 3 == 1) {
+                    pixels[i] = pixels[i - WIDTH];
+                } else if (x % 4 != 0 && x > 0) {
+                    pixels[i] = pixels[i - 1];
+                } else {
+                    pixels[i] = random.nextInt();
+                }
+            }
+        }
+        pixels[0] = 0;
+        pixels[1] = 0xffffffff;
+        return pixels;
+    }
+
+    private static int[] palette(int size, Random random) {
+        int[] palette = new int[size];
+        for (int i = 0; i < size; i++) {
+            palette[i] = random.nextInt() | 0xff000000;
+        }
+        // Transparent and translucent entries, so tRNS is written
+        palette[0] = 0;
+        if (size > 2) {
+            palette[size - 1] = 0x80123456;
+        }
+        return palette;
+    }
+
+    private static byte[] indices(int size, Random random) {
+        byte[] indices = new byte[WIDTH * HEIGHT];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = (byte) (i % 5 == 0 ? random.nextInt(size) : i % size);
+        }
+        return indices;
+    }
+
+    private static BufferedImage decode(byte[] png) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        assertNotNull(image, "ImageIO could not decode the PNG");
+        assertEquals(WIDTH, image.getWidth());
+        assertEquals(HEIGHT, image.getHeight());
+        return image;
+    }
+
+    private static void assertPixels(int[] expected, BufferedImage image, String message) {
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int want = expected[y * WIDTH + x];
+                int got = image.getRGB(x, y);
+                // Fully transparent pixels may decode with any color
+                if ((want >>> 24) == 0) {
+                    assertEquals(0, got >>> 24, message + " at " + x + ", " + y);
+                } else {
+                    assertEquals(want, got, message + " at " + x + ", " + y);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void argbRoundTripsWithEveryFilter() throws IOException {
+        Random random = new Random(1);
+        for (PngEncoder.Filter filter : PngEncoder.Filter.values()) {
+            int[] pixels = argbPixels(random);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (PngEncoder encoder = new PngEncoder(filter, Deflater.DEFAULT_COMPRESSION)) {
+                encoder.writeArgb(pixels, WIDTH, HEIGHT, out);
+            }
+            assertPixels(pixels, decode(out.toByteArray()), filter.name());
+        }
+    }
+
+    @Test
+    public void indexedRoundTripsWithEveryFilterAndDepth() throws IOException {
+        Random random = new Random(2);
+        for (PngEncoder.Filter filter : PngEncoder.Filter.values()) {
+            for (int size : PALETTE_SIZES) {
+                int[] palette = palette(size, random);
+                byte[] indices = indices(size, random);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                try (PngEncoder encoder = new PngEncoder(filter, Deflater.DEFAULT_COMPRESSION)) {
+                    encoder.writeIndexed(indices, WIDTH, HEIGHT, palette, out);
+                }
+                BufferedImage image = decode(out.toByteArray());
+                String message = filter + " with " + size + " colors";
+                assertTrue(image.getColorModel() instanceof IndexColorModel, message);
+                assertEquals(PngEncoder.bitDepth(size), image.getColorModel().getPixelSize(), message);
+                int[] expected = new int[indices.length];
+                for (int i = 0; i < indices.length; i++) {
+                    expected[i] = palette[indices[i] & 0xff];
+                }
+                assertPixels(expected, image, message);
+            }
+        }
+    }
+
+    @Test
+    public void reusedEncoderWritesRowsAndChannels() throws IOException {
+        Random random = new Random(3);
+        int[] pixels = argbPixels(random);
+        int[] palette = palette(17, random);
+        byte[] indices = indices(17, random);
+        PngEncoder.Rows argbRows = (y, row) -> System.arraycopy(pixels, y * WIDTH, row, 0, WIDTH);
+        PngEncoder.Rows indexRows = (y, row) -> {
+            for (int x = 0; x < WIDTH; x++) {
+                row[x] = indices[y * WIDTH + x] & 0xff;
+            }
+        };
+        int[] expectedIndexed = new int[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            expectedIndexed[i] = palette[indices[i] & 0xff];
+        }
+        try (PngEncoder encoder = new PngEncoder()) {
+            for (int round = 0; round < 2; round++) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                encoder.writeArgb(argbRows, WIDTH, HEIGHT, out);
+                assertPixels(pixels, decode(out.toByteArray()), "ARGB rows");
+
+                out = new ByteArrayOutputStream();
+                encoder.writeArgb(pixels, WIDTH, HEIGHT, Channels.newChannel(out));
+                assertPixels(pixels, decode(out.toByteArray()), "ARGB channel");
+
+                out = new ByteArrayOutputStream();
+                encoder.writeIndexed(indexRows, WIDTH, HEIGHT, palette, Channels.newChannel(out));
+                assertPixels(expectedIndexed, decode(out.toByteArray()), "Indexed rows");
+            }
+        }
+    }
+
+}
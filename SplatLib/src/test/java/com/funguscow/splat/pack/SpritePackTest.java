@@ -0,0 +1,188 @@
+package com.funguscow.splat.pack;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Sprites appended by {@link SpritePackWriter} read back the same through {@link SpritePackReader}
+ */
+public class SpritePackTest {
+
+    // Odd sizes, so indexed payloads need padding
+    private static final int WIDTH = 7, HEIGHT = 5;
+    // More than the writer's initial index capacity
+    private static final int SPRITES = 100;
+
+    @TempDir
+    Path dir;
+
+    private static long keyOf(int sprite) {
+        return sprite * 0x9e3779b97f4a7c15L;
+    }
+
+    private static int[] pixels(Random random) {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return pixels;
+    }
+
+    private static int[] palette(int sprite, Random random) {
+        int[] palette = new int[1 + sprite % 17];
+        for (int i = 1; i < palette.length; i++) {
+            palette[i] = random.nextInt();
+        }
+        return palette;
+    }
+
+    private static byte[] indices(int paletteSize, Random random) {
+        byte[] indices = new byte[WIDTH * HEIGHT];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = (byte) random.nextInt(paletteSize);
+        }
+        return indices;
+    }
+
+    @Test
+    public void argbRoundTrips() throws IOException {
+        Path path = dir.resolve("argb.pack");
+        int[][] sprites = new int[SPRITES][];
+        Random random = new Random(1);
+        try (SpritePackWriter writer = new SpritePackWriter(path, SpritePack.Format.ARGB, WIDTH, HEIGHT)) {
+            for (int i = 0; i < SPRITES; i++) {
+                sprites[i] = pixels(random);
+                assertEquals(i, writer.append(keyOf(i), sprites[i]));
+            }
+            assertEquals(SPRITES, writer.getCount());
+        }
+        try (SpritePackReader reader = new SpritePackReader(path)) {
+            assertEquals(SpritePack.Format.ARGB, reader.format);
+            assertEquals(WIDTH, reader.width);
+            assertEquals(HEIGHT, reader.height);
+            assertEquals(SPRITES, reader.count);
+            for (int i = SPRITES - 1; i >= 0; i--) {
+                int sprite = reader.find(keyOf(i));
+                assertEquals(i, sprite);
+                assertEquals(keyOf(i), reader.getKey(sprite));
+                assertEquals(0, reader.getPaletteSize(sprite));
+                IntBuffer pixels = reader.pixels(sprite);
+                assertEquals(WIDTH * HEIGHT, pixels.remaining());
+                for (int p = 0; p < WIDTH * HEIGHT; p++) {
+                    assertEquals(sprites[i][p], pixels.get(p), "Sprite " + i + " pixel " + p);
+                }
+            }
+            assertEquals(-1, reader.find(12345));
+            assertThrows(IllegalStateException.class, () -> reader.indices(0));
+            assertThrows(IllegalStateException.class, () -> reader.palette(0));
+            assertThrows(IndexOutOfBoundsException.class, () -> reader.pixels(SPRITES));
+        }
+    }
+
+    @Test
+    public void indexedRoundTrips() throws IOException {
+        Path path = dir.resolve("indexed.pack");
+        int[][] palettes = new int[SPRITES][];
+        byte[][] sprites = new byte[SPRITES][];
+        Random random = new Random(2);
+        try (SpritePackWriter writer = new SpritePackWriter(path, SpritePack.Format.INDEXED, WIDTH, HEIGHT)) {
+            for (int i = 0; i < SPRITES; i++) {
+                palettes[i] = palette(i, random);
+                sprites[i] = indices(palettes[i].length, random);
+                assertEquals(i, writer.append(keyOf(i), sprites[i], palettes[i]));
+            }
+            assertThrows(IllegalStateException.class, () -> writer.append(0, new int[WIDTH * HEIGHT]));
+        }
+        try (SpritePackReader reader = new SpritePackReader(path)) {
+            assertEquals(SpritePack.Format.INDEXED, reader.format);
+            assertEquals(SPRITES, reader.count);
+            for (int i = 0; i < SPRITES; i++) {
+                int sprite = reader.find(keyOf(i));
+                assertEquals(i, sprite);
+                assertEquals(palettes[i].length, reader.getPaletteSize(sprite));
+                IntBuffer palette = reader.palette(sprite);
+                assertEquals(palettes[i].length, palette.remaining());
+                for (int c = 0; c < palettes[i].length; c++) {
+                    assertEquals(palettes[i][c], palette.get(c), "Sprite " + i + " color " + c);
+                }
+                ByteBuffer indices = reader.indices(sprite);
+                assertEquals(WIDTH * HEIGHT, indices.remaining());
+                for (int p = 0; p < WIDTH * HEIGHT; p++) {
+                    assertEquals(sprites[i][p], indices.get(p), "Sprite " + i + " index " + p);
+                }
+            }
+            assertEquals(-1, reader.find(-1));
+            assertThrows(IllegalStateException.class, () -> reader.pixels(0));
+        }
+    }
+
+    @Test
+    public void findReturnsFirstOfDuplicateKeys() throws IOException {
+        Path path = dir.resolve("duplicates.pack");
+        Random random = new Random(3);
+        try (SpritePackWriter writer = new SpritePackWriter(path, SpritePack.Format.ARGB, WIDTH, HEIGHT)) {
+            writer.append(5, pixels(random));
+            writer.append(9, pixels(random));
+            writer.append(5, pixels(random));
+        }
+        try (SpritePackReader reader = new SpritePackReader(path)) {
+            assertEquals(0, reader.find(5));
+            assertEquals(1, reader.find(9));
+            assertEquals(-1, reader.find(7));
+        }
+    }
+
+    @Test
+    public void unfinishedPackIsRejected() throws IOException {
+        Path path = dir.resolve("unfinished.pack");
+        Random random = new Random(4);
+        SpritePackWriter writer = new SpritePackWriter(path, SpritePack.Format.ARGB, WIDTH, HEIGHT);
+        try {
+            writer.append(1, pixels(random));
+            writer.append(2, pixels(random));
+            // Payloads are on disk, but the header and its magic are only written on close
+            assertThrows(IOException.class, () -> new SpritePackReader(path));
+        } finally {
+            writer.close();
+        }
+        try (SpritePackReader reader = new SpritePackReader(path)) {
+            assertEquals(2, reader.count);
+        }
+    }
+
+    @Test
+    public void abortDeletesThePack() throws IOException {
+        Path path = dir.resolve("aborted.pack");
+        Random random = new Random(5);
+        try (SpritePackWriter writer = new SpritePackWriter(path, SpritePack.Format.ARGB, WIDTH, HEIGHT)) {
+            writer.append(1, pixels(random));
+            writer.abort();
+            assertFalse(Files.exists(path));
+            assertThrows(IllegalStateException.class, () -> writer.append(2, pixels(random)));
+        }
+        // Closing after an abort must not bring the file back
+        assertFalse(Files.exists(path));
+    }
+
+    @Test
+    public void emptyPackRoundTrips() throws IOException {
+        Path path = dir.resolve("empty.pack");
+        new SpritePackWriter(path, SpritePack.Format.INDEXED, WIDTH, HEIGHT).close();
+        try (SpritePackReader reader = new SpritePackReader(path)) {
+            assertEquals(0, reader.count);
+            assertEquals(-1, reader.find(0));
+        }
+    }
+
+}
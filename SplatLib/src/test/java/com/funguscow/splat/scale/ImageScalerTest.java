@@ -0,0 +1,213 @@
+package com.funguscow.splat.scale;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Each {@link ImageScaler}, with its border and interior paths, against a straightforward
+ * bounds-checked version of its algorithm, and the fused {@link ScaleChain} against the
+ * materialized one
+ */
+public class ImageScalerTest {
+
+    private static final String[] SCALERS = {"NearestNeighbor", "Scale2x", "Scale3x", "Eagle2x", "Eagle3x"};
+    // Single pixels, lines, the smallest image with no interior, and larger ones
+    private static final int[][] SIZES = {{1, 1}, {1, 7}, {7, 1}, {2, 2}, {3, 3}, {2, 9}, {9, 2}, {5, 7}, {16, 11}};
+
+    /**
+     * @return The pixel at ({@code x}, {@code y}), with coordinates clamped into the image
+     */
+    private static int at(int[] image, int width, int height, int x, int y) {
+        x = Math.max(0, Math.min(width - 1, x));
+        y = Math.max(0, Math.min(height - 1, y));
+        return image[y * width + x];
+    }
+
+    /**
+     * Scale one pixel from its clamped 3x3 neighborhood, as each algorithm is usually written
+     *
+     * @return The ratio x ratio block, row-major
+     */
+    private static int[] block(String scaler, int[] image, int width, int height, int x, int y) {
+        int A = at(image, width, height, x - 1, y - 1);
+        int B = at(image, width, height, x, y - 1);
+        int C = at(image, width, height, x + 1, y - 1);
+        int D = at(image, width, height, x - 1, y);
+        int E = at(image, width, height, x, y);
+        int F = at(image, width, height, x + 1, y);
+        int G = at(image, width, height, x - 1, y + 1);
+        int H = at(image, width, height, x, y + 1);
+        int I = at(image, width, height, x + 1, y + 1);
+        switch (scaler) {
+            case "NearestNeighbor":
+                return new int[]{E, E, E, E};
+            case "Scale2x":
+                return new int[]{
+                        D == B && B != F && D != H ? D : E,
+                        B == F && B != D && F != H ? F : E,
+                        D == H && D != B && H != F ? D : E,
+                        H == F && D != H && B != F ? F : E};
+            case "Scale3x":
+                if (B == H || D == F) {
+                    return new int[]{E, E, E, E, E, E, E, E, E};
+                }
+                return new int[]{
+                        D == B ? D : E,
+                        (D == B && E != C) || (B == F && E != A) ? B : E,
+                        B == F ? F : E,
+                        (D == B && E != G) || (D == H && E != A) ? D : E,
+                        E,
+                        (B == F && E != I) || (H == F && E != C) ? F : E,
+                        D == H ? D : E,
+                        (D == H && E != I) || (H == F && E != G) ? H : E,
+                        H == F ? F : E};
+            case "Eagle2x":
+                return new int[]{
+                        A == B && B == D ? A : E,
+                        B == C && C == F ? C : E,
+                        D == G && G == H ? G : E,
+                        F == I && I == H ? I : E};
+            case "Eagle3x":
+                return new int[]{
+                        A == B && B == D ? A : E, E, B == C && C == F ? C : E,
+                        E, E, E,
+                        D == G && G == H ? G : E, E, F == I && I == H ? I : E};
+            default:
+                throw new IllegalArgumentException(scaler);
+        }
+    }
+
+    private static int[] reference(String scaler, int ratio, int[] image, int width, int height) {
+        int[] scaled = new int[width * ratio * height * ratio];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int[] block = block(scaler, image, width, height, x, y);
+                for (int i = 0; i < block.length; i++) {
+                    scaled[(y * ratio + i / ratio) * width * ratio + x * ratio + i % ratio] = block[i];
+                }
+            }
+        }
+        return scaled;
+    }
+
+    /**
+     * @return Random pixels drawn from a few colors, so that neighbors often match
+     */
+    private static int[] image(int width, int height, Random random) {
+        int colors = 2 + random.nextInt(3);
+        int[] image = new int[width * height];
+        for (int i = 0; i < image.length; i++) {
+            // Spread the colors so some are negative as bytes, too
+            image[i] = random.nextInt(colors) * 0x4b;
+        }
+        return image;
+    }
+
+    private static byte[] indices(int[] image) {
+        byte[] indices = new byte[image.length];
+        for (int i = 0; i < image.length; i++) {
+            indices[i] = (byte) image[i];
+        }
+        return indices;
+    }
+
+    private static int[] widen(byte[] indices) {
+        int[] image = new int[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            image[i] = indices[i] & 0xff;
+        }
+        return image;
+    }
+
+    @Test
+    public void scalersMatchReference() {
+        Random random = new Random(1);
+        for (String name : SCALERS) {
+            ImageScaler scaler = ImageScaler.forName(name);
+            int r = scaler.ratio;
+            for (int[] size : SIZES) {
+                for (int trial = 0; trial < 20; trial++) {
+                    int width = size[0], height = size[1];
+                    int[] image = image(width, height, random);
+                    int[] expected = reference(name, r, image, width, height);
+                    String message = name + " on " + width + " x " + height + ", trial " + trial;
+                    assertArrayEquals(expected, scaler.scale(image, width, height), message);
+                    assertArrayEquals(expected, widen(scaler.scale(indices(image), width, height)), message);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void rectanglesMatchReference() {
+        Random random = new Random(2);
+        for (String name : SCALERS) {
+            ImageScaler scaler = ImageScaler.forName(name);
+            int r = scaler.ratio;
+            for (int[] size : SIZES) {
+                int width = size[0], height = size[1];
+                for (int trial = 0; trial < 20; trial++) {
+                    int[] image = image(width, height, random);
+                    int[] expected = reference(name, r, image, width, height);
+                    int x0 = random.nextInt(width), x1 = x0 + 1 + random.nextInt(width - x0);
+                    int y0 = random.nextInt(height), y1 = y0 + 1 + random.nextInt(height - y0);
+                    // Write into a wider array at an offset, so the stride and index are exercised
+                    int stride = (x1 - x0) * r + 3, offset = 2 * stride + 1;
+                    int[] output = new int[offset + (y1 - y0) * r * stride];
+                    byte[] indexOutput = new byte[output.length];
+                    scaler.scale(image, width, height, x0, y0, x1, y1, output, offset, stride);
+                    scaler.scale(indices(image), width, height, x0, y0, x1, y1, indexOutput, offset, stride);
+                    for (int y = y0 * r; y < y1 * r; y++) {
+                        for (int x = x0 * r; x < x1 * r; x++) {
+                            int expect = expected[y * width * r + x];
+                            int index = offset + (y - y0 * r) * stride + x - x0 * r;
+                            String message = name + " on " + width + " x " + height + ", rectangle (" + x0 + ", "
+                                    + y0 + ") - (" + x1 + ", " + y1 + "), pixel (" + x + ", " + y + ")";
+                            assertEquals(expect, output[index], message);
+                            assertEquals(expect, indexOutput[index] & 0xff, message);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void fusedChainMatchesMaterialized() {
+        Random random = new Random(3);
+        // Exact multiples, downscales of the last step, and targets spanning several tiles
+        int[][] targets = {{8, 8}, {36, 36}, {50, 70}, {150, 90}, {200, 200}};
+        ScaleChain fusedChain = new ScaleChain(), materializedChain = new ScaleChain();
+        for (String name : SCALERS) {
+            ImageScaler scaler = ImageScaler.forName(name);
+            for (int[] size : SIZES) {
+                int width = size[0], height = size[1];
+                int[] image = image(width, height, random);
+                for (int[] target : targets) {
+                    int widthOut = target[0], heightOut = target[1];
+                    int[] fused = new int[widthOut * heightOut];
+                    int[] materialized = new int[widthOut * heightOut];
+                    fusedChain.scaleFused(scaler, image, width, height, fused, widthOut, heightOut);
+                    materializedChain.scale(scaler, image, width, height, materialized, widthOut, heightOut);
+                    String message = name + " from " + width + " x " + height + " to " + widthOut + " x " + heightOut;
+                    assertArrayEquals(materialized, fused, message);
+                    // And the materialized chain is the reference applied step by step
+                    int[] expected = image;
+                    int w = width, h = height;
+                    for (int i = ScaleChain.steps(scaler, width, height, widthOut, heightOut); i > 0; i--) {
+                        expected = reference(name, scaler.ratio, expected, w, h);
+                        w *= scaler.ratio;
+                        h *= scaler.ratio;
+                    }
+                    expected = ImageScaler.scaleNearestNeighbor(expected, w, h, widthOut, heightOut);
+                    assertArrayEquals(expected, materialized, message);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.funguscow.splat.server;
+
+import com.funguscow.splat.cache.LruCache;
+import com.funguscow.splat.data.Specs;
+import com.funguscow.splat.data.SpriteGrid;
+import com.funguscow.splat.io.PngEncoder;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Idle grids and their scratch state, pooled by grid size so that warm requests do not allocate
+ * grids, scaler buffers, or encoders
+ */
+class GridPool {
+
+    /**
+     * Most grid sizes to keep idle grids for
+     */
+    private static final int SIZE_CAPACITY = 64;
+
+    /**
+     * A grid with its own specs, output buffers, and encoder, used by one request at a time
+     */
+    static class Lease {
+
+        final Specs specs;
+        final SpriteGrid grid;
+        final PngEncoder encoder = new PngEncoder();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int[] pixels = new int[0];
+        byte[] indices = new byte[0];
+
+        private Lease(Specs specs) {
+            this.specs = specs.copy();
+            grid = new SpriteGrid(this.specs);
+        }
+
+        /**
+         * Take on new specs of the same grid size, and make sure the buffers fit them
+         *
+         * @param request Specs to render next
+         */
+        private void reset(Specs request) {
+            specs.set(request);
+            grid.rebatch();
+            int size = specs.targetWidth * specs.targetHeight;
+            if (pixels.length < size) {
+                pixels = new int[size];
+                indices = new byte[size];
+            }
+            bytes.reset();
+        }
+    }
+
+    private final LruCache<Long, ConcurrentLinkedQueue<Lease>> idle = new LruCache<>(SIZE_CAPACITY);
+
+    /**
+     * @param specs Specs to render
+     * @return An idle lease for specs of that grid size, or a new one, set up for {@code specs}
+     */
+    Lease acquire(Specs specs) {
+        Lease lease = queueOf(specs).poll();
+        if (lease == null) {
+            lease = new Lease(specs);
+        }
+        lease.reset(specs);
+        return lease;
+    }
+
+    /**
+     * @param lease Lease that is no longer in use
+     */
+    void release(Lease lease) {
+        queueOf(lease.specs).offer(lease);
+    }
+
+    private ConcurrentLinkedQueue<Lease> queueOf(Specs specs) {
+        long size = (long) specs.width << 32 | (specs.height & 0xffffffffL);
+        return idle.computeIfAbsent(size, key -> new ConcurrentLinkedQueue<>());
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.funguscow.splat.server;
+
+import com.funguscow.splat.cache.SpriteCache;
+import com.funguscow.splat.stats.Histogram;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of a server, all in nanoseconds, reported as plain text
+ */
+class ServerMetrics {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    final LongAdder requests = new LongAdder();
+    final LongAdder served = new LongAdder();
+    final LongAdder rejected = new LongAdder();
+    final LongAdder badRequests = new LongAdder();
+    final LongAdder errors = new LongAdder();
+
+    /**
+     * Requests admitted and waiting for a render permit, and requests rendering
+     */
+    final AtomicInteger queued = new AtomicInteger(), rendering = new AtomicInteger();
+
+    /**
+     * From the request being handled to the response being written
+     */
+    final Histogram latency = new Histogram();
+
+    /**
+     * Waiting for a render permit
+     */
+    final Histogram queueWait = new Histogram();
+
+    /**
+     * Rendering and encoding, while holding a permit
+     */
+    final Histogram render = new Histogram();
+
+    private final long started = System.nanoTime();
+
+    /**
+     * @param cache Sprite cache to report on, or {@code null}
+     * @return Every metric, one {@code name value} pair per line
+     */
+    String report(SpriteCache cache) {
+        StringBuilder out = new StringBuilder();
+        double seconds = (System.nanoTime() - started) / 1e9;
+        line(out, "uptime_seconds", decimal(seconds));
+        line(out, "requests", requests.sum());
+        line(out, "served", served.sum());
+        line(out, "served_per_second", decimal(served.sum() / seconds));
+        line(out, "rejected", rejected.sum());
+        line(out, "bad_requests", badRequests.sum());
+        line(out, "errors", errors.sum());
+        line(out, "queued", queued.get());
+        line(out, "rendering", rendering.get());
+        histogram(out, "latency", latency);
+        histogram(out, "queue_wait", queueWait);
+        histogram(out, "render", render);
+        if (cache != null) {
+            line(out, "cache_hits", cache.getHits());
+            line(out, "cache_misses", cache.getMisses());
+            line(out, "cache_evictions", cache.getEvictions());
+            line(out, "cache_sprites", cache.size());
+            line(out, "cache_bytes", cache.getBytes());
+        }
+        return out.toString();
+    }
+
+    private static void histogram(StringBuilder out, String name, Histogram histogram) {
+        line(out, name + "_count", histogram.getCount());
+        line(out, name + "_mean_us", decimal(histogram.getMean() / 1e3));
+        for (double percentile : PERCENTILES) {
+            String label = percentile == Math.rint(percentile) ? String.valueOf((int) percentile) : String.valueOf(percentile).replace(".", "");
+            line(out, name + "_p" + label + "_us", decimal(histogram.getPercentile(percentile) / 1e3));
+        }
+        line(out, name + "_max_us", decimal(histogram.getMax() / 1e3));
+    }
+
+    private static String decimal(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+
+    private static void line(StringBuilder out, String name, Object value) {
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+}
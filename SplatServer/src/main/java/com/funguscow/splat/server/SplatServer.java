@@ -0,0 +1,137 @@
+package com.funguscow.splat.server;
+
+import com.funguscow.clim.CliParser;
+import com.funguscow.clim.Option;
+import com.funguscow.splat.cache.SpriteCache;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An HTTP server that renders sprites on request, so that many sprites can be served from one
+ * warm process
+ * <p>
+ * {@code GET /sprite?...} renders a PNG from the same options as SplatCli, given as query
+ * parameters, and {@code GET /metrics} reports counters and latencies as plain text. Requests are
+ * handled on virtual threads when the JVM has them, and on a cached thread pool otherwise, while a
+ * fixed number of permits limits how many render at once
+ */
+public class SplatServer {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ServerMetrics metrics = new ServerMetrics();
+    private final SpriteCache cache;
+
+    /**
+     * @param port          Port to listen on, 0 for any free port
+     * @param renderThreads Most requests to render at once
+     * @param queueCapacity Most requests to hold waiting to render before turning them away
+     * @param timeoutMillis Longest a request may wait to render before being turned away
+     * @param cacheBytes    Bytes of seeded sprites to cache, 0 to cache none
+     * @throws IOException If the port cannot be bound
+     */
+    public SplatServer(int port, int renderThreads, int queueCapacity, long timeoutMillis, long cacheBytes)
+            throws IOException {
+        if (renderThreads < 1) {
+            throw new IllegalArgumentException("Render thread count must be positive, got " + renderThreads);
+        }
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("Queue capacity must not be negative, got " + queueCapacity);
+        }
+        cache = cacheBytes > 0 ? new SpriteCache(cacheBytes) : null;
+        server = HttpServer.create(new InetSocketAddress(port), queueCapacity + renderThreads);
+        executor = newHandlerExecutor();
+        server.setExecutor(executor);
+        server.createContext("/sprite",
+                new SpriteHandler(renderThreads, queueCapacity, timeoutMillis, cache, metrics));
+        server.createContext("/metrics", exchange -> {
+            try {
+                SpriteHandler.send(exchange, 200, metrics.report(cache));
+            } finally {
+                exchange.close();
+            }
+        });
+    }
+
+    /**
+     * Start serving on a background thread
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stop accepting requests, and wait up to a number of seconds for those in progress
+     *
+     * @param seconds Seconds to wait
+     */
+    public void stop(int seconds) {
+        server.stop(seconds);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(seconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return Port being listened on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return A virtual-thread-per-task executor if this JVM has them, otherwise a cached pool
+     */
+    static ExecutorService newHandlerExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        CliParser parser = new CliParser();
+        parser.addArgument(new Option(null, "port", null, null,
+                "Port to listen on, default 8080", Option.ArgumentType.REQUIRED, Option.ArgumentAction.SET));
+        parser.addArgument(new Option(null, "render_threads", null, null,
+                "Most sprites to render at once, default the number of processors",
+                Option.ArgumentType.REQUIRED, Option.ArgumentAction.SET));
+        parser.addArgument(new Option(null, "queue", null, null,
+                "Most requests to hold waiting to render, default 1024",
+                Option.ArgumentType.REQUIRED, Option.ArgumentAction.SET));
+        parser.addArgument(new Option(null, "timeout_ms", null, null,
+                "Longest a request may wait to render, default 1000",
+                Option.ArgumentType.REQUIRED, Option.ArgumentAction.SET));
+        parser.addArgument(new Option(null, "cache_mb", null, null,
+                "Megabytes of seeded sprites to cache, default 64",
+                Option.ArgumentType.REQUIRED, Option.ArgumentAction.SET));
+        parser.addArgument(new Option('?', "help", null, "set",
+                "Display help", Option.ArgumentType.NONE, Option.ArgumentAction.SET));
+        parser.parse(args);
+        if (parser.wasSet("help")) {
+            parser.help();
+            return;
+        }
+        SplatServer server = new SplatServer(
+                parser.getInt("port", 8080),
+                parser.getInt("render_threads", Runtime.getRuntime().availableProcessors()),
+                parser.getInt("queue", 1024),
+                parser.getInt("timeout_ms", 1000),
+                parser.getInt("cache_mb", 64) * (1L << 20));
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(1)));
+        System.err.println("Serving sprites on port " + server.getPort());
+    }
+
+}
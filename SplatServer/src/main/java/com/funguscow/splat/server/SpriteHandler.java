@@ -0,0 +1,285 @@
+package com.funguscow.splat.server;
+
+import com.funguscow.splat.cache.SpriteCache;
+import com.funguscow.splat.cli.SplatParser;
+import com.funguscow.splat.data.Specs;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders one sprite per request as a PNG, taking the same options as {@link SplatParser} from
+ * the query string
+ * <p>
+ * Each query parameter {@code key=value} becomes {@code -kvalue} if the key is one character and
+ * {@code --key=value} otherwise, and a parameter without a value becomes a flag, so
+ * {@code /sprite?z=42&scaled_width=64&scaled_height=64&p} is {@code -z42 --scaled_width=64
+ * --scaled_height=64 -p}. Options about files and batches are rejected.
+ * <p>
+ * Requests beyond the render permits wait in a bounded queue, and are turned away with 503 when
+ * the queue is full or the wait times out
+ */
+class SpriteHandler implements HttpHandler {
+
+    /**
+     * Largest grid and output, in pixels, a request may ask for
+     */
+    static final int MAX_GRID_PIXELS = 1 << 20, MAX_TARGET_PIXELS = 1 << 24;
+
+    /**
+     * Most colors a request may ask for, as many as fit beside transparency in one-byte indices
+     */
+    static final int MAX_COLORS = 255;
+
+    /**
+     * Most cellular automaton generations a request may ask for
+     */
+    static final int MAX_CA_GENERATIONS = 64;
+
+    /**
+     * Options that do not apply to serving one sprite. Seeds and colors are only varied per index
+     * of a batch, so {@code random_seed} and {@code random_color} would be ignored rather than
+     * honored
+     */
+    private static final String[] REJECTED = {"output", "num_images", "threads", "grid", "pack", "help",
+            "random_seed", "random_color", "dedup", "stats"};
+
+    private final GridPool pool = new GridPool();
+    private final Semaphore permits;
+    private final int queueCapacity;
+    private final long timeoutNanos;
+    private final SpriteCache cache;
+    private final ServerMetrics metrics;
+
+    /**
+     * @param renderThreads Most requests to render at once
+     * @param queueCapacity Most requests to hold waiting to render
+     * @param timeoutMillis Longest a request may wait to render
+     * @param cache         Cache for seeded ARGB sprites, or {@code null} to render every request
+     * @param metrics       Metrics to record to
+     */
+    SpriteHandler(int renderThreads, int queueCapacity, long timeoutMillis, SpriteCache cache, ServerMetrics metrics) {
+        permits = new Semaphore(renderThreads);
+        this.queueCapacity = queueCapacity;
+        timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.cache = cache;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        metrics.requests.increment();
+        try {
+            String method = exchange.getRequestMethod();
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                send(exchange, 405, "Only GET and HEAD are supported\n");
+                metrics.badRequests.increment();
+                return;
+            }
+            RequestParser parser = new RequestParser();
+            Specs specs;
+            try {
+                specs = parse(parser, exchange.getRequestURI().getRawQuery());
+            } catch (RuntimeException e) {
+                send(exchange, 400, e.getMessage() + "\n");
+                metrics.badRequests.increment();
+                return;
+            }
+            byte[] png = renderQueued(specs, parser.getBits() != -1, parser.wasSet("seed"));
+            if (png == null) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, 503, "Server busy\n");
+                metrics.rejected.increment();
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "image/png");
+            exchange.getResponseHeaders().set("X-Splat-Seed", Long.toString(specs.seed));
+            exchange.sendResponseHeaders(200, "HEAD".equals(method) ? -1 : png.length);
+            if (!"HEAD".equals(method)) {
+                try (OutputStream body = exchange.getResponseBody()) {
+                    body.write(png);
+                }
+            }
+            metrics.served.increment();
+            metrics.latency.record(System.nanoTime() - start);
+        } catch (IOException e) {
+            metrics.errors.increment();
+            throw e;
+        } catch (RuntimeException e) {
+            metrics.errors.increment();
+            e.printStackTrace();
+            send(exchange, 500, "Failed to render sprite\n");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Wait in the queue for a render permit, and render
+     *
+     * @param specs    Specs to render
+     * @param indexed  Whether to write a paletted PNG
+     * @param cachable Whether the specs name a seed, so the sprite is worth caching
+     * @return The PNG, or {@code null} if the queue was full or the wait timed out
+     */
+    private byte[] renderQueued(Specs specs, boolean indexed, boolean cachable) throws IOException {
+        if (metrics.queued.incrementAndGet() > queueCapacity) {
+            metrics.queued.decrementAndGet();
+            return null;
+        }
+        long queuedAt = System.nanoTime();
+        boolean permitted = false;
+        try {
+            permitted = permits.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            metrics.queued.decrementAndGet();
+        }
+        if (!permitted) {
+            return null;
+        }
+        long renderAt = System.nanoTime();
+        metrics.queueWait.record(renderAt - queuedAt);
+        metrics.rendering.incrementAndGet();
+        GridPool.Lease lease = pool.acquire(specs);
+        try {
+            return render(lease, indexed, cachable);
+        } finally {
+            pool.release(lease);
+            metrics.rendering.decrementAndGet();
+            permits.release();
+            metrics.render.record(System.nanoTime() - renderAt);
+        }
+    }
+
+    private byte[] render(GridPool.Lease lease, boolean indexed, boolean cachable) throws IOException {
+        Specs specs = lease.specs;
+        int width = specs.targetWidth, height = specs.targetHeight;
+        if (indexed) {
+            lease.grid.drawIndexed(lease.indices);
+            lease.encoder.writeIndexed(lease.indices, width, height, lease.grid.getPalette(), lease.bytes);
+        } else if (cache != null && cachable) {
+            // Cached pixels are kept, so they get an array of their own
+            return cache.getPng(specs, key -> lease.grid.draw(), lease.encoder);
+        } else {
+            lease.grid.draw(lease.pixels);
+            lease.encoder.writeArgb(lease.pixels, width, height, lease.bytes);
+        }
+        return lease.bytes.toByteArray();
+    }
+
+    /**
+     * @param parser Fresh parser to parse with
+     * @param query  Raw query string, may be {@code null}
+     * @return Specs of the requested sprite
+     * @throws IllegalArgumentException If the query has unknown, rejected, or invalid options
+     */
+    static Specs parse(RequestParser parser, String query) {
+        parser.parse(toArgs(query));
+        for (String option : REJECTED) {
+            if (parser.wasSet(option)) {
+                throw new IllegalArgumentException("Option \"" + option + "\" is not supported by the server");
+            }
+        }
+        if (parser.wasSet("format") && !"png".equalsIgnoreCase(parser.getFormat())) {
+            throw new IllegalArgumentException("Only PNG is served");
+        }
+        Specs specs = parser.toSpecs();
+        if (specs.width <= 0 || specs.height <= 0 || (long) specs.width * specs.height > MAX_GRID_PIXELS) {
+            throw new IllegalArgumentException("Grid must be positive and at most " + MAX_GRID_PIXELS + " pixels");
+        }
+        if (specs.targetWidth <= 0 || specs.targetHeight <= 0
+                || (long) specs.targetWidth * specs.targetHeight > MAX_TARGET_PIXELS) {
+            throw new IllegalArgumentException("Output must be positive and at most " + MAX_TARGET_PIXELS + " pixels");
+        }
+        // Integer scale steps enlarge both axes until the more enlarged one is reached, so a
+        // lopsided output needs a much larger intermediate image
+        double scale = Math.max((double) specs.targetWidth / specs.width, (double) specs.targetHeight / specs.height);
+        if (specs.width * scale * specs.height * scale > MAX_TARGET_PIXELS) {
+            throw new IllegalArgumentException("Output aspect ratio is too far from the grid's");
+        }
+        if (specs.colors < 1 || specs.colors > MAX_COLORS) {
+            throw new IllegalArgumentException("Colors must be in [1, " + MAX_COLORS + "], got " + specs.colors);
+        }
+        if (specs.seeds < 1 || specs.seeds > specs.width * specs.height) {
+            throw new IllegalArgumentException("Seeds must be in [1, " + specs.width * specs.height
+                    + "] for this grid, got " + specs.seeds);
+        }
+        if (specs.caGenerations > MAX_CA_GENERATIONS) {
+            throw new IllegalArgumentException("At most " + MAX_CA_GENERATIONS + " CA generations are run, got "
+                    + specs.caGenerations);
+        }
+        return specs;
+    }
+
+    /**
+     * @param query Raw query string, may be {@code null}
+     * @return The equivalent command line arguments
+     */
+    static String[] toArgs(String query) {
+        List<String> args = new ArrayList<>();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (parameter.isEmpty()) {
+                    continue;
+                }
+                int eq = parameter.indexOf('=');
+                String key = decode(eq < 0 ? parameter : parameter.substring(0, eq));
+                String value = eq < 0 ? "" : decode(parameter.substring(eq + 1));
+                if (key.isEmpty()) {
+                    throw new IllegalArgumentException("Empty parameter name");
+                }
+                if (key.length() == 1) {
+                    args.add("-" + key + value);
+                } else {
+                    args.add("--" + key + (value.isEmpty() ? "" : "=" + value));
+                }
+            }
+        }
+        return args.toArray(new String[0]);
+    }
+
+    private static String decode(String encoded) {
+        try {
+            return URLDecoder.decode(encoded, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Send a plain text response
+     */
+    static void send(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Parses request options. Help is rejected like any other batch option, so it must not be
+     * printed to the server's console first
+     */
+    static class RequestParser extends SplatParser {
+
+        @Override
+        public void help() {
+        }
+
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.funguscow.splat.server;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SpriteHandlerTest {
+
+    @Test
+    public void toArgsMapsShortLongAndFlagParameters() {
+        assertArrayEquals(new String[]{"-z42", "--scaled_width=64", "--scaled_height=64", "-p"},
+                SpriteHandler.toArgs("z=42&scaled_width=64&scaled_height=64&p"));
+        assertArrayEquals(new String[]{"--fast_ca", "-p4"}, SpriteHandler.toArgs("fast_ca&p=4"));
+    }
+
+    @Test
+    public void toArgsDecodesAndSkipsEmptyParameters() {
+        assertArrayEquals(new String[]{"--scale=Eagle 2x", "-z-7"}, SpriteHandler.toArgs("&scale=Eagle+2x&&z=%2D7&"));
+        assertArrayEquals(new String[0], SpriteHandler.toArgs(null));
+        assertArrayEquals(new String[0], SpriteHandler.toArgs(""));
+        assertThrows(IllegalArgumentException.class, () -> SpriteHandler.toArgs("=5"));
+    }
+
+    @Test
+    public void parseRejectsBatchOptions() {
+        for (String query : new String[]{"random_color", "random_seed", "dedup=2", "n=4", "grid", "o=out"}) {
+            assertThrows(RuntimeException.class, () -> SpriteHandler.parse(new SpriteHandler.RequestParser(), query), query);
+        }
+        assertEquals(42, SpriteHandler.parse(new SpriteHandler.RequestParser(), "z=42").seed);
+    }
+
+    @Test
+    public void helpIsRejectedWithoutPrinting() {
+        PrintStream out = System.out;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(printed));
+        try {
+            for (String query : new String[]{"help", "%3F", "z=1&help"}) {
+                assertThrows(IllegalArgumentException.class,
+                        () -> SpriteHandler.parse(new SpriteHandler.RequestParser(), query), query);
+            }
+        } finally {
+            System.setOut(out);
+        }
+        assertEquals(0, printed.size());
+    }
+
+    @Test
+    public void parseBoundsColors() {
+        assertEquals(SpriteHandler.MAX_COLORS,
+                SpriteHandler.parse(new SpriteHandler.RequestParser(), "colors=" + SpriteHandler.MAX_COLORS).colors);
+        for (String query : new String[]{"colors=0", "colors=-3", "colors=" + (SpriteHandler.MAX_COLORS + 1)}) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> SpriteHandler.parse(new SpriteHandler.RequestParser(), query), query);
+        }
+    }
+
+    @Test
+    public void parseBoundsSeedsByGridCells() {
+        assertEquals(64, SpriteHandler.parse(new SpriteHandler.RequestParser(), "width=8&height=8&seeds=64").seeds);
+        for (String query : new String[]{"seeds=0", "width=8&height=8&seeds=65", "seeds=2000000000"}) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> SpriteHandler.parse(new SpriteHandler.RequestParser(), query), query);
+        }
+    }
+
+    @Test
+    public void parseBoundsCaGenerations() {
+        assertEquals(SpriteHandler.MAX_CA_GENERATIONS, SpriteHandler.parse(new SpriteHandler.RequestParser(),
+                "ca_generations=" + SpriteHandler.MAX_CA_GENERATIONS).caGenerations);
+        for (String query : new String[]{"ca_generations=-1", "ca_generations=" + (SpriteHandler.MAX_CA_GENERATIONS + 1)}) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> SpriteHandler.parse(new SpriteHandler.RequestParser(), query), query);
+        }
+    }
+
+    /**
+     * Serve one handler on a loopback port, and GET a query from it
+     */
+    private static HttpResponse<byte[]> get(SpriteHandler handler, String query) throws IOException, InterruptedException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/sprite", handler);
+        server.start();
+        try {
+            URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/sprite?" + query);
+            return HttpClient.newHttpClient().send(HttpRequest.newBuilder(uri).build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void fullQueueAnswers503() throws IOException, InterruptedException {
+        ServerMetrics metrics = new ServerMetrics();
+        // No room to wait, so every request is turned away before rendering
+        HttpResponse<byte[]> response = get(new SpriteHandler(1, 0, 1000, null, metrics), "z=1");
+        assertEquals(503, response.statusCode());
+        assertEquals("1", response.headers().firstValue("Retry-After").orElse(null));
+        assertEquals(1, metrics.rejected.sum());
+        assertEquals(0, metrics.served.sum());
+        assertEquals(0, metrics.queued.get());
+    }
+
+    @Test
+    public void servesPngAndRejectsBadQueries() throws IOException, InterruptedException {
+        ServerMetrics metrics = new ServerMetrics();
+        SpriteHandler handler = new SpriteHandler(1, 1, 1000, null, metrics);
+        HttpResponse<byte[]> response = get(handler, "z=1&width=8&height=8");
+        assertEquals(200, response.statusCode());
+        assertEquals("image/png", response.headers().firstValue("Content-Type").orElse(null));
+        assertEquals("1", response.headers().firstValue("X-Splat-Seed").orElse(null));
+        assertTrue(response.body().length > 8 && response.body()[1] == 'P');
+        assertEquals(400, get(handler, "random_color").statusCode());
+        assertEquals(1, metrics.served.sum());
+        assertEquals(1, metrics.badRequests.sum());
+    }
+
+}